@@ -0,0 +1,94 @@
+package com.example.algo_huffman;
+
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.lang.management.ManagementFactory;
+import java.util.Random;
+
+/**
+ * Command line benchmark measuring the heap allocated per compress + decompress of a small payload, first with a
+ * new CodecContext for every job (what the scenes did before the pool existed) and then with contexts taken from
+ * a CodecContextPool. Allocation is read from the per thread counter of com.sun.management.ThreadMXBean.
+ *
+ * Usage: AllocationBenchmark [iterations]
+ */
+public class AllocationBenchmark {
+    static final int[] PAYLOAD_SIZES = {256, 1024, 16 * 1024}; // Payload sizes to measure
+
+    // ByteArrayOutputStream giving access to its array, so reading the result does not copy it
+    static class Sink extends ByteArrayOutputStream {
+        Sink(int size) {
+            super(size);
+        }
+
+        byte[] array() {
+            return buf;
+        }
+    }
+
+    interface Job {
+        void run(byte[] payload, Sink compressed, Sink restored) throws IOException;
+    }
+
+    public static void main(String[] args) throws IOException {
+        int iterations = args.length > 0 ? Integer.parseInt(args[0]) : 20000;
+        CodecContextPool pool = new CodecContextPool(4);
+
+        Job fresh = (payload, compressed, restored) -> {
+            HuffmanEncoder.compress(payload, 0, payload.length, compressed, new CodecContext());
+            HuffmanDecoder.decompress(compressed.array(), 0, compressed.size(), restored, new CodecContext());
+        };
+        Job pooled = (payload, compressed, restored) -> {
+            CodecContext context = pool.acquire();
+            try {
+                HuffmanEncoder.compress(payload, 0, payload.length, compressed, context);
+                HuffmanDecoder.decompress(compressed.array(), 0, compressed.size(), restored, context);
+            } finally {
+                pool.release(context);
+            }
+        };
+
+        System.out.printf("%-8s %-8s %14s %12s%n", "payload", "mode", "bytes/op", "ops/s");
+        for (int size : PAYLOAD_SIZES) {
+            byte[] payload = payload(size);
+            measure(size, "fresh", fresh, payload, iterations);
+            measure(size, "pooled", pooled, payload, iterations);
+        }
+    }
+
+    static void measure(int size, String mode, Job job, byte[] payload, int iterations) throws IOException {
+        Sink compressed = new Sink(2 * payload.length + 1024);
+        Sink restored = new Sink(payload.length);
+
+        for (int i = 0; i < iterations / 4; i++) // Warm up
+            runOnce(job, payload, compressed, restored);
+
+        com.sun.management.ThreadMXBean threads = (com.sun.management.ThreadMXBean) ManagementFactory.getThreadMXBean();
+        long allocatedBefore = threads.getCurrentThreadAllocatedBytes();
+        long start = System.nanoTime();
+        for (int i = 0; i < iterations; i++)
+            runOnce(job, payload, compressed, restored);
+        long nanos = System.nanoTime() - start;
+        long allocated = threads.getCurrentThreadAllocatedBytes() - allocatedBefore;
+
+        System.out.printf("%-8d %-8s %,14d %,12.0f%n", size, mode, allocated / iterations, iterations / (nanos / 1e9));
+    }
+
+    static void runOnce(Job job, byte[] payload, Sink compressed, Sink restored) throws IOException {
+        compressed.reset();
+        restored.reset();
+        job.run(payload, compressed, restored);
+        if (restored.size() != payload.length)
+            throw new IllegalStateException("Round trip failed");
+    }
+
+    // JSON like text, the kind of payload an RPC service sends
+    static byte[] payload(int size) {
+        Random random = new Random(size);
+        String[] words = {"{\"id\":", "\"name\":", "\"value\":", "true", "false", "null", ",", "}", "\"status\":\"ok\"", " "};
+        StringBuilder builder = new StringBuilder();
+        while (builder.length() < size)
+            builder.append(words[random.nextInt(words.length)]).append(random.nextInt(1000));
+        return builder.substring(0, size).getBytes();
+    }
+}
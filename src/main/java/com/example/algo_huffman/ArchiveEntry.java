@@ -0,0 +1,57 @@
+package com.example.algo_huffman;
+
+/**
+ * One file of a Huffman archive, as listed in its central directory. In a deduplicating archive the entry is made
+ * of chunks shared with other entries: offset is that of its first chunk and compressedSize counts all its chunks,
+ * shared or not.
+ */
+public class ArchiveEntry {
+    private final String name; // Path inside the archive, with '/' separators
+    private final long offset; // Position of the compressed entry in the archive file
+    private final long compressedSize; // Bytes of the compressed entry
+    private final long size; // Bytes of the original file
+    private final int crc; // CRC32 of the original file
+    private final int[] chunks; // Numbers of the chunks of the entry in order, null outside a deduplicating archive
+
+    public ArchiveEntry(String name, long offset, long compressedSize, long size, int crc) {
+        this(name, offset, compressedSize, size, crc, null);
+    }
+
+    public ArchiveEntry(String name, long offset, long compressedSize, long size, int crc, int[] chunks) {
+        this.chunks = chunks;
+        this.name = name;
+        this.offset = offset;
+        this.compressedSize = compressedSize;
+        this.size = size;
+        this.crc = crc;
+    }
+
+    public String getName() {
+        return name;
+    }
+
+    public long getOffset() {
+        return offset;
+    }
+
+    public long getCompressedSize() {
+        return compressedSize;
+    }
+
+    public long getSize() {
+        return size;
+    }
+
+    public int getCrc() {
+        return crc;
+    }
+
+    public int[] getChunks() {
+        return chunks;
+    }
+
+    @Override
+    public String toString() {
+        return String.format("%12d %12d %08x %s", size, compressedSize, crc, name);
+    }
+}
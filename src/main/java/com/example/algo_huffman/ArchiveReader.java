@@ -0,0 +1,261 @@
+package com.example.algo_huffman;
+
+import java.io.BufferedInputStream;
+import java.io.ByteArrayInputStream;
+import java.io.Closeable;
+import java.io.DataInputStream;
+import java.io.File;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.zip.CRC32;
+import java.util.zip.CheckedOutputStream;
+
+/**
+ * Reads a Huffman archive written by ArchiveWriter. Opening reads only the trailer and the central directory, so
+ * listing costs the same whatever the size of the entries, and an entry is found by name in a hash map and
+ * decoded alone from its offset, or from its chunks in a deduplicating archive. Entries are read with positional
+ * reads, so several threads can extract from one reader at the same time.
+ */
+public class ArchiveReader implements Closeable {
+    private final FileChannel channel; // The archive file
+    private final List<ArchiveEntry> entries; // Directory, in the order of the entries
+    private final Map<String, ArchiveEntry> byName; // Directory, by name
+    private final boolean deduplicated; // VERSION_DEDUP archive
+    private long[] chunkOffsets = new long[0]; // Position of each chunk, in a deduplicating archive
+    private int[] chunkLengths = new int[0]; // Compressed bytes of each chunk
+    private int[] chunkSizes = new int[0]; // Decoded bytes of each chunk
+
+    /**
+     * Opens an archive and reads its central directory.
+     *
+     * @param file The archive to read
+     */
+    public ArchiveReader(File file) throws IOException {
+        this.channel = FileChannel.open(file.toPath(), StandardOpenOption.READ);
+        try {
+            long fileSize = channel.size();
+            if (fileSize < ArchiveWriter.HEADER_SIZE + ArchiveWriter.TRAILER_SIZE)
+                throw new IOException("Not a Huffman archive");
+            ByteBuffer header = readAt(0, ArchiveWriter.HEADER_SIZE);
+            if (header.getInt() != ArchiveWriter.MAGIC)
+                throw new IOException("Not a Huffman archive");
+            int version = header.get();
+            if (version != ArchiveWriter.VERSION && version != ArchiveWriter.VERSION_DEDUP)
+                throw new IOException("Unsupported archive version");
+            this.deduplicated = version == ArchiveWriter.VERSION_DEDUP;
+
+            long trailerOffset = fileSize - ArchiveWriter.TRAILER_SIZE;
+            ByteBuffer trailer = readAt(trailerOffset, ArchiveWriter.TRAILER_SIZE);
+            long directoryOffset = trailer.getLong();
+            int entryCount = trailer.getInt();
+            if (trailer.getInt() != ArchiveWriter.END_MAGIC)
+                throw new IOException("Archive trailer not found, the archive is incomplete");
+            if (directoryOffset < ArchiveWriter.HEADER_SIZE || directoryOffset > trailerOffset
+                    || trailerOffset - directoryOffset > Integer.MAX_VALUE || entryCount < 0)
+                throw new IOException("Invalid archive directory");
+
+            ByteBuffer directory = readAt(directoryOffset, (int) (trailerOffset - directoryOffset));
+            DataInputStream data = new DataInputStream(new ByteArrayInputStream(directory.array()));
+            List<ArchiveEntry> list = new ArrayList<>();
+            Map<String, ArchiveEntry> map = new HashMap<>();
+            if (deduplicated)
+                readChunkTable(data, directoryOffset);
+            for (int i = 0; i < entryCount; i++) {
+                byte[] name = new byte[data.readUnsignedShort()];
+                data.readFully(name);
+                ArchiveEntry entry = deduplicated ? readChunkedEntry(new String(name, StandardCharsets.UTF_8), data)
+                        : new ArchiveEntry(new String(name, StandardCharsets.UTF_8),
+                        data.readLong(), data.readLong(), data.readLong(), data.readInt());
+                if (!deduplicated && (entry.getOffset() < ArchiveWriter.HEADER_SIZE || entry.getCompressedSize() < 0
+                        || entry.getOffset() + entry.getCompressedSize() > directoryOffset))
+                    throw new IOException("Invalid archive entry: " + entry.getName());
+                list.add(entry);
+                map.put(entry.getName(), entry);
+            }
+            this.entries = Collections.unmodifiableList(list);
+            this.byName = map;
+        } catch (IOException e) {
+            channel.close();
+            throw e;
+        }
+    }
+
+    // Reads the chunk table at the start of a deduplicating directory
+    private void readChunkTable(DataInputStream data, long directoryOffset) throws IOException {
+        int count = data.readInt();
+        if (count < 0 || count > data.available() / 16)
+            throw new IOException("Invalid archive chunk table");
+        chunkOffsets = new long[count];
+        chunkLengths = new int[count];
+        chunkSizes = new int[count];
+        for (int i = 0; i < count; i++) {
+            chunkOffsets[i] = data.readLong();
+            chunkLengths[i] = data.readInt();
+            chunkSizes[i] = data.readInt();
+            if (chunkOffsets[i] < ArchiveWriter.HEADER_SIZE || chunkLengths[i] < 0 || chunkSizes[i] <= 0
+                    || chunkSizes[i] > BlockCodec.MAX_BLOCK_SIZE || chunkOffsets[i] + chunkLengths[i] > directoryOffset)
+                throw new IOException("Invalid archive chunk " + i);
+        }
+    }
+
+    // Reads the part of a deduplicating directory record after the name
+    private ArchiveEntry readChunkedEntry(String name, DataInputStream data) throws IOException {
+        long size = data.readLong();
+        int crc = data.readInt();
+        int count = data.readInt();
+        if (count < 0 || count > data.available() / 4)
+            throw new IOException("Invalid archive entry: " + name);
+        int[] chunks = new int[count];
+        long compressedSize = 0;
+        long total = 0;
+        for (int i = 0; i < count; i++) {
+            chunks[i] = data.readInt();
+            if (chunks[i] < 0 || chunks[i] >= chunkOffsets.length)
+                throw new IOException("Invalid archive entry: " + name);
+            compressedSize += chunkLengths[chunks[i]];
+            total += chunkSizes[chunks[i]];
+        }
+        if (total != size)
+            throw new IOException("Invalid archive entry: " + name);
+        long offset = count == 0 ? ArchiveWriter.HEADER_SIZE : chunkOffsets[chunks[0]];
+        return new ArchiveEntry(name, offset, compressedSize, size, crc, chunks);
+    }
+
+    public boolean isDeduplicated() {
+        return deduplicated;
+    }
+
+    public List<ArchiveEntry> getEntries() {
+        return entries;
+    }
+
+    /**
+     * Returns the entry with the given name.
+     *
+     * @param name The name of the entry
+     * @return The entry, or null if the archive has none with this name
+     */
+    public ArchiveEntry getEntry(String name) {
+        return byName.get(name);
+    }
+
+    /**
+     * Decodes one entry and checks its CRC32.
+     *
+     * @param entry An entry of this archive
+     * @param out   The stream receiving the content, not closed by this method
+     */
+    public void extract(ArchiveEntry entry, OutputStream out) throws IOException {
+        CRC32 crc = new CRC32();
+        CodecContext context = CodecContextPool.SHARED.acquire();
+        try {
+            long size = 0;
+            if (entry.getChunks() == null) {
+                try (InputStream in = new BufferedInputStream(
+                        new ChannelInputStream(channel, entry.getOffset(), entry.getCompressedSize()), 1 << 16)) {
+                    size = BlockCodec.decompress(in, new CheckedOutputStream(out, crc), context);
+                }
+            } else {
+                for (int chunk : entry.getChunks()) {
+                    InputStream in = new ChannelInputStream(channel, chunkOffsets[chunk], chunkLengths[chunk]);
+                    int length = BlockCodec.readBlock(in, context);
+                    if (length != chunkSizes[chunk])
+                        throw new IOException("Invalid chunk in entry " + entry.getName());
+                    crc.update(context.rawBuffer, 0, length);
+                    out.write(context.rawBuffer, 0, length);
+                    size += length;
+                }
+            }
+            if (size != entry.getSize() || (int) crc.getValue() != entry.getCrc())
+                throw new IOException("Checksum mismatch in entry " + entry.getName());
+        } finally {
+            CodecContextPool.SHARED.release(context);
+        }
+    }
+
+    /**
+     * Extracts every entry below a directory. Names that would leave the directory are refused.
+     *
+     * @param dir The directory receiving the files
+     */
+    public void extractAll(Path dir) throws IOException {
+        for (ArchiveEntry entry : entries)
+            extractTo(entry, dir);
+    }
+
+    /**
+     * Extracts one entry below a directory, creating the missing parent directories.
+     *
+     * @param entry An entry of this archive
+     * @param dir   The directory receiving the file
+     * @return The path of the extracted file
+     */
+    public Path extractTo(ArchiveEntry entry, Path dir) throws IOException {
+        Path root = dir.toAbsolutePath().normalize();
+        Path target = root.resolve(entry.getName()).normalize();
+        if (!target.startsWith(root) || target.equals(root))
+            throw new IOException("Entry outside the target directory: " + entry.getName());
+        Files.createDirectories(target.getParent());
+        try (OutputStream out = Files.newOutputStream(target)) {
+            extract(entry, out);
+        }
+        return target;
+    }
+
+    @Override
+    public void close() throws IOException {
+        channel.close();
+    }
+
+    private ByteBuffer readAt(long position, int length) throws IOException {
+        ByteBuffer buffer = ByteBuffer.allocate(length);
+        while (buffer.hasRemaining()) {
+            if (channel.read(buffer, position + buffer.position()) == -1)
+                throw new IOException("Truncated Huffman archive");
+        }
+        return buffer.flip();
+    }
+
+    // Input stream over a range of the channel, reading at its own position so that streams can be used concurrently
+    static class ChannelInputStream extends InputStream {
+        private final FileChannel channel;
+        private long position;
+        private final long end;
+
+        ChannelInputStream(FileChannel channel, long position, long length) {
+            this.channel = channel;
+            this.position = position;
+            this.end = position + length;
+        }
+
+        @Override
+        public int read() throws IOException {
+            byte[] b = new byte[1];
+            return read(b, 0, 1) == -1 ? -1 : b[0] & 0xFF;
+        }
+
+        @Override
+        public int read(byte[] b, int off, int len) throws IOException {
+            if (position >= end)
+                return -1;
+            int count = (int) Math.min(len, end - position);
+            int read = channel.read(ByteBuffer.wrap(b, off, count), position);
+            if (read == -1)
+                return -1;
+            position += read;
+            return read;
+        }
+    }
+}
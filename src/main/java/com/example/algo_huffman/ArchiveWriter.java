@@ -0,0 +1,361 @@
+package com.example.algo_huffman;
+
+import java.io.BufferedOutputStream;
+import java.io.Closeable;
+import java.io.DataOutputStream;
+import java.io.File;
+import java.io.FilterOutputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.InterruptedIOException;
+import java.io.OutputStream;
+import java.nio.ByteBuffer;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.security.MessageDigest;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.stream.Stream;
+import java.util.zip.CRC32;
+import java.util.zip.CheckedInputStream;
+
+/**
+ * Writes a Huffman archive: many files in one container, each compressed on its own so any of them can be read
+ * without the others. The layout is
+ *
+ * <pre>
+ * int  MAGIC "HUFA", byte VERSION
+ * the entries, each a complete BlockCodec stream
+ * the central directory, for each entry:
+ *     short nameLength, byte[nameLength] name in UTF-8, long offset, long compressedSize, long size, int crc
+ * long directoryOffset, int entryCount, int END_MAGIC "HUFZ"
+ * </pre>
+ *
+ * The fixed size trailer lets a reader find the directory with one seek from the end of the file.
+ *
+ * A deduplicating archive (VERSION_DEDUP) splits the files with ContentChunker and stores every distinct chunk
+ * once, as one BlockCodec block; identical chunks are recognised by their SHA-256. Its directory starts with the
+ * chunk table and lists the chunks of each entry instead of its position:
+ *
+ * <pre>
+ * int chunkCount, for each chunk: long offset, int compressedLength, int rawLength
+ * for each entry: short nameLength, byte[nameLength] name, long size, int crc, int refCount, int[refCount] chunks
+ * </pre>
+ *
+ * Chunking and hashing run on a thread of their own, ahead of the encoder.
+ */
+public class ArchiveWriter implements Closeable {
+    public static final int MAGIC = 0x48554641; // "HUFA"
+    public static final int END_MAGIC = 0x4855465A; // "HUFZ"
+    public static final int VERSION = 1; // Each entry compressed as one stream
+    public static final int VERSION_DEDUP = 2; // Entries made of shared chunks
+    public static final int HEADER_SIZE = 5; // MAGIC and VERSION
+    public static final int TRAILER_SIZE = 16; // directoryOffset, entryCount and END_MAGIC
+    static final int MAX_NAME_LENGTH = 0xFFFF; // Bytes of a name in UTF-8
+    static final int QUEUE_SIZE = 16; // Chunks hashed ahead of the encoder
+
+    private final CountingOutputStream out; // The archive file, counting the bytes written
+    private final List<ArchiveEntry> entries = new ArrayList<>(); // Directory, in the order of the entries
+    private final Set<String> names = new HashSet<>(); // Names already used
+    private final CodecContext context = CodecContextPool.SHARED.acquire();
+    private final boolean deduplicate; // Write a VERSION_DEDUP archive
+    private boolean closed;
+
+    // Deduplication state, unused in a VERSION archive
+    private final Map<ByteBuffer, Integer> chunkIndex = new HashMap<>(); // Chunk number by SHA-256
+    private final List<long[]> chunks = new ArrayList<>(); // offset, compressedLength and rawLength of each chunk
+    private final ContentChunker chunker = new ContentChunker();
+    private ExecutorService hasher; // Thread chunking and hashing the entries, started on first use
+
+    // Statistics
+    private long logicalBytes; // Bytes of all the entries
+    private long storedBytes; // Bytes of the distinct chunks, or of all the entries without deduplication
+    private long chunkCount; // Chunks of all the entries
+    private long nanos; // Time spent in addEntry
+
+    /**
+     * Creates the archive file, replacing an existing one, and writes its header.
+     *
+     * @param file The archive to create
+     */
+    public ArchiveWriter(File file) throws IOException {
+        this(file, false);
+    }
+
+    /**
+     * Creates the archive file, replacing an existing one, and writes its header.
+     *
+     * @param file        The archive to create
+     * @param deduplicate True to store identical chunks of the entries only once
+     */
+    public ArchiveWriter(File file, boolean deduplicate) throws IOException {
+        this.deduplicate = deduplicate;
+        this.out = new CountingOutputStream(new BufferedOutputStream(Files.newOutputStream(file.toPath()), 1 << 16));
+        DataOutputStream header = new DataOutputStream(out);
+        header.writeInt(MAGIC);
+        header.writeByte(deduplicate ? VERSION_DEDUP : VERSION);
+    }
+
+    /**
+     * Compresses the input stream up to its end as a new entry.
+     *
+     * @param name The name of the entry, unique in the archive
+     * @param in   The content of the entry, not closed by this method
+     * @return The directory entry
+     */
+    public ArchiveEntry addEntry(String name, InputStream in) throws IOException {
+        if (closed)
+            throw new IOException("Archive closed");
+        byte[] nameBytes = name.getBytes(StandardCharsets.UTF_8);
+        if (name.isEmpty() || nameBytes.length > MAX_NAME_LENGTH)
+            throw new IllegalArgumentException("Invalid entry name: " + name);
+        if (!names.add(name))
+            throw new IllegalArgumentException("Duplicate entry name: " + name);
+
+        long start = System.nanoTime();
+        ArchiveEntry entry = deduplicate ? addChunks(name, in) : addStream(name, in);
+        entries.add(entry);
+        logicalBytes += entry.getSize();
+        nanos += System.nanoTime() - start;
+        return entry;
+    }
+
+    private ArchiveEntry addStream(String name, InputStream in) throws IOException {
+        CRC32 crc = new CRC32();
+        long offset = out.count;
+        long size = BlockCodec.compress(new CheckedInputStream(in, crc), out, context);
+        storedBytes += size;
+        return new ArchiveEntry(name, offset, out.count - offset, size, (int) crc.getValue());
+    }
+
+    // The hashing thread splits and hashes the entry while this thread encodes the new chunks
+    private ArchiveEntry addChunks(String name, InputStream in) throws IOException {
+        if (hasher == null)
+            hasher = Executors.newSingleThreadExecutor(Thread.ofPlatform().name("archive-hasher").daemon().factory());
+        ArrayBlockingQueue<HashedChunk> queue = new ArrayBlockingQueue<>(QUEUE_SIZE);
+        CRC32 crc = new CRC32();
+        Future<Long> hashing = hasher.submit(() -> {
+            try {
+                MessageDigest digest = MessageDigest.getInstance("SHA-256");
+                return chunker.split(in, (data, offset, length) -> {
+                    crc.update(data, offset, length);
+                    digest.update(data, offset, length);
+                    put(queue, new HashedChunk(Arrays.copyOfRange(data, offset, offset + length), digest.digest()));
+                });
+            } finally {
+                put(queue, HashedChunk.END);
+            }
+        });
+
+        List<Integer> refs = new ArrayList<>();
+        long compressedSize = 0;
+        try {
+            HashedChunk chunk;
+            while ((chunk = take(queue)) != HashedChunk.END) {
+                Integer number = chunkIndex.get(chunk.hash);
+                if (number == null) {
+                    long offset = out.count;
+                    BlockCodec.writeBlock(chunk.data, 0, chunk.data.length, out, context);
+                    number = chunks.size();
+                    chunks.add(new long[]{offset, out.count - offset, chunk.data.length});
+                    chunkIndex.put(chunk.hash, number);
+                    storedBytes += chunk.data.length;
+                }
+                refs.add(number);
+                compressedSize += chunks.get(number)[1];
+                chunkCount++;
+            }
+        } catch (IOException | RuntimeException e) {
+            hashing.cancel(true);
+            throw e;
+        }
+        long size = await(hashing);
+        int[] numbers = refs.stream().mapToInt(Integer::intValue).toArray();
+        long offset = numbers.length == 0 ? out.count : chunks.get(numbers[0])[0];
+        return new ArchiveEntry(name, offset, compressedSize, size, (int) crc.getValue(), numbers);
+    }
+
+    /**
+     * Adds a file, or every regular file below a directory, named by their path relative to base.
+     *
+     * @param path A file or a directory
+     * @param base The directory the names are relative to
+     */
+    public void addPath(Path path, Path base) throws IOException {
+        List<Path> files;
+        try (Stream<Path> walk = Files.walk(path)) {
+            files = walk.filter(Files::isRegularFile).sorted().toList();
+        }
+        for (Path file : files) {
+            String name = base.relativize(file).toString().replace(File.separatorChar, '/');
+            try (InputStream in = Files.newInputStream(file)) {
+                addEntry(name, in);
+            }
+        }
+    }
+
+    public List<ArchiveEntry> getEntries() {
+        return List.copyOf(entries);
+    }
+
+    public long getLogicalBytes() {
+        return logicalBytes;
+    }
+
+    public long getStoredBytes() {
+        return storedBytes;
+    }
+
+    public long getChunkCount() {
+        return chunkCount;
+    }
+
+    public int getDistinctChunkCount() {
+        return chunks.size();
+    }
+
+    /**
+     * Returns how many times smaller the data is after deduplication, before compression.
+     *
+     * @return The bytes of the entries divided by the bytes stored, 1 without deduplication
+     */
+    public double getDedupRatio() {
+        return storedBytes == 0 ? 1.0 : (double) logicalBytes / storedBytes;
+    }
+
+    /**
+     * Returns the throughput of addEntry over all the entries so far.
+     *
+     * @return Bytes of the entries per second
+     */
+    public double getThroughput() {
+        return nanos == 0 ? 0.0 : logicalBytes * 1e9 / nanos;
+    }
+
+    /**
+     * Writes the central directory and the trailer, then closes the file.
+     */
+    @Override
+    public void close() throws IOException {
+        if (closed)
+            return;
+        closed = true;
+        if (hasher != null)
+            hasher.shutdownNow();
+        try (out) {
+            DataOutputStream data = new DataOutputStream(out);
+            long directoryOffset = out.count;
+            if (deduplicate) {
+                data.writeInt(chunks.size());
+                for (long[] chunk : chunks) {
+                    data.writeLong(chunk[0]);
+                    data.writeInt((int) chunk[1]);
+                    data.writeInt((int) chunk[2]);
+                }
+            }
+            for (ArchiveEntry entry : entries) {
+                byte[] name = entry.getName().getBytes(StandardCharsets.UTF_8);
+                data.writeShort(name.length);
+                data.write(name);
+                if (deduplicate) {
+                    data.writeLong(entry.getSize());
+                    data.writeInt(entry.getCrc());
+                    data.writeInt(entry.getChunks().length);
+                    for (int chunk : entry.getChunks())
+                        data.writeInt(chunk);
+                    continue;
+                }
+                data.writeLong(entry.getOffset());
+                data.writeLong(entry.getCompressedSize());
+                data.writeLong(entry.getSize());
+                data.writeInt(entry.getCrc());
+            }
+            data.writeLong(directoryOffset);
+            data.writeInt(entries.size());
+            data.writeInt(END_MAGIC);
+            data.flush();
+        } finally {
+            CodecContextPool.SHARED.release(context);
+        }
+    }
+
+    // A chunk and its SHA-256, passed from the hashing thread to the encoder
+    static class HashedChunk {
+        static final HashedChunk END = new HashedChunk(new byte[0], new byte[0]); // Marks the end of an entry
+
+        final byte[] data;
+        final ByteBuffer hash; // Compared by content, so it can be a map key
+
+        HashedChunk(byte[] data, byte[] hash) {
+            this.data = data;
+            this.hash = ByteBuffer.wrap(hash);
+        }
+    }
+
+    private static void put(ArrayBlockingQueue<HashedChunk> queue, HashedChunk chunk) throws InterruptedIOException {
+        try {
+            queue.put(chunk);
+        } catch (InterruptedException e) {
+            throw interrupted(e);
+        }
+    }
+
+    private static HashedChunk take(ArrayBlockingQueue<HashedChunk> queue) throws InterruptedIOException {
+        try {
+            return queue.take();
+        } catch (InterruptedException e) {
+            throw interrupted(e);
+        }
+    }
+
+    private static long await(Future<Long> task) throws IOException {
+        try {
+            return task.get();
+        } catch (InterruptedException e) {
+            throw interrupted(e);
+        } catch (ExecutionException e) {
+            if (e.getCause() instanceof IOException)
+                throw (IOException) e.getCause();
+            throw new IOException(e.getCause());
+        }
+    }
+
+    private static InterruptedIOException interrupted(InterruptedException e) {
+        Thread.currentThread().interrupt();
+        InterruptedIOException exception = new InterruptedIOException("Archive hashing interrupted");
+        exception.initCause(e);
+        return exception;
+    }
+
+    // Output stream keeping the number of bytes written, which is the offset of the next entry
+    static class CountingOutputStream extends FilterOutputStream {
+        long count;
+
+        CountingOutputStream(OutputStream out) {
+            super(out);
+        }
+
+        @Override
+        public void write(int b) throws IOException {
+            out.write(b);
+            count++;
+        }
+
+        @Override
+        public void write(byte[] b, int off, int len) throws IOException {
+            out.write(b, off, len);
+            count += len;
+        }
+    }
+}
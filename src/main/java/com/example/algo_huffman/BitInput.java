@@ -0,0 +1,150 @@
+package com.example.algo_huffman;
+
+import java.io.IOException;
+import java.io.InputStream;
+
+/**
+ * Reads bits, most significant bit first, from an input stream through a large buffer and a 64-bit accumulator.
+ * Past the end of the stream it reads zero bits, so a decoder can always look ahead a fixed number of bits.
+ */
+public class BitInput {
+    static final int BUFFER_SIZE = 1 << 16; // Default size of the byte buffer
+
+    private InputStream in; // Stream providing the bytes, null when reading from an array
+    private final byte[] ownBuffer; // Buffer used when reading from a stream
+    private byte[] buffer; // Bytes read but not yet moved to the accumulator
+    private int position; // Next byte to use in the buffer
+    private int limit; // Number of valid bytes in the buffer
+    private boolean endOfStream; // Set once the stream returned -1
+    private long bitBuffer; // Bits not yet consumed, right aligned
+    private int bitCount; // Number of valid bits in bitBuffer
+
+    public BitInput(InputStream in) {
+        this(in, BUFFER_SIZE);
+    }
+
+    public BitInput(InputStream in, int bufferSize) {
+        this.in = in;
+        this.ownBuffer = new byte[bufferSize];
+        this.buffer = ownBuffer;
+    }
+
+    /**
+     * Points this bit input to another stream and drops any state left by the previous one, so the buffer can
+     * be reused from job to job.
+     *
+     * @param in The stream providing the bytes
+     * @return This bit input
+     */
+    public BitInput reset(InputStream in) {
+        this.in = in;
+        this.buffer = ownBuffer;
+        this.position = 0;
+        this.limit = 0;
+        this.endOfStream = false;
+        this.bitBuffer = 0;
+        this.bitCount = 0;
+        return this;
+    }
+
+    /**
+     * Reads the bits of a byte array directly, without copying it.
+     *
+     * @param bytes  The array holding the bits
+     * @param offset First byte to read
+     * @param length Number of bytes to read
+     * @return This bit input
+     */
+    public BitInput reset(byte[] bytes, int offset, int length) {
+        this.in = null;
+        this.buffer = bytes;
+        this.position = offset;
+        this.limit = offset + length;
+        this.endOfStream = true;
+        this.bitBuffer = 0;
+        this.bitCount = 0;
+        return this;
+    }
+
+    // Moves whole bytes into the accumulator until it holds more than 56 bits or the stream ends
+    private void refill() throws IOException {
+        while (bitCount <= 56) {
+            if (position == limit) {
+                if (endOfStream)
+                    return;
+                limit = in.read(buffer);
+                position = 0;
+                if (limit <= 0) {
+                    limit = 0;
+                    endOfStream = true;
+                    return;
+                }
+            }
+            bitBuffer = (bitBuffer << 8) | (buffer[position++] & 0xFF);
+            bitCount += 8;
+        }
+    }
+
+    /**
+     * Returns the next n bits without consuming them.
+     *
+     * @param n Number of bits, between 1 and 32
+     * @return The bits, right aligned, padded with zeros past the end of the stream
+     */
+    public int peekBits(int n) throws IOException {
+        if (bitCount < n)
+            refill();
+        long mask = (1L << n) - 1;
+        if (bitCount >= n)
+            return (int) ((bitBuffer >>> (bitCount - n)) & mask);
+        return (int) ((bitBuffer << (n - bitCount)) & mask);
+    }
+
+    /**
+     * Consumes n bits previously looked at with peekBits.
+     *
+     * @param n Number of bits to drop
+     */
+    public void skipBits(int n) {
+        bitCount = Math.max(0, bitCount - n);
+    }
+
+    /**
+     * Reads n bits.
+     *
+     * @param n Number of bits, between 1 and 32
+     * @return The bits, right aligned
+     */
+    public int readBits(int n) throws IOException {
+        int bits = peekBits(n);
+        skipBits(n);
+        return bits;
+    }
+
+    /**
+     * Reads a single bit.
+     *
+     * @return 0 or 1
+     */
+    public int readBit() throws IOException {
+        return readBits(1);
+    }
+
+    /**
+     * Drops the bits left in the current byte.
+     */
+    public void alignToByte() {
+        bitCount -= bitCount & 7;
+    }
+
+    /**
+     * Returns true once all bits of the stream have been consumed.
+     *
+     * @return Whether the end of the stream was reached
+     */
+    public boolean isAtEnd() throws IOException {
+        if (bitCount == 0)
+            refill();
+        return bitCount == 0;
+    }
+}
@@ -0,0 +1,123 @@
+package com.example.algo_huffman;
+
+import java.io.IOException;
+import java.io.OutputStream;
+
+/**
+ * Writes variable length bit codes, most significant bit first, to an output stream. Bits are collected in a
+ * 64-bit accumulator and whole bytes go to a large buffer, so no string is built per code.
+ */
+public class BitOutput {
+    static final int BUFFER_SIZE = 1 << 16; // Default size of the byte buffer
+
+    private OutputStream out; // Stream receiving the bytes
+    private final byte[] buffer; // Whole bytes waiting to be written
+    private int position; // Number of bytes in the buffer
+    private long bitBuffer; // Bits not yet written, right aligned
+    private int bitCount; // Number of valid bits in bitBuffer (always less than 8 between calls)
+    private long bytesWritten; // Bytes already handed to the stream
+
+    public BitOutput(OutputStream out) {
+        this(out, BUFFER_SIZE);
+    }
+
+    public BitOutput(OutputStream out, int bufferSize) {
+        this.out = out;
+        this.buffer = new byte[bufferSize];
+    }
+
+    /**
+     * Points this bit output to another stream and drops any state left by the previous one, so the buffer can
+     * be reused from job to job.
+     *
+     * @param out The stream receiving the bytes
+     * @return This bit output
+     */
+    public BitOutput reset(OutputStream out) {
+        this.out = out;
+        this.position = 0;
+        this.bitBuffer = 0;
+        this.bitCount = 0;
+        this.bytesWritten = 0;
+        return this;
+    }
+
+    /**
+     * Appends the lowest length bits of code.
+     *
+     * @param code   The bits to write, right aligned
+     * @param length Number of bits, between 1 and 32
+     */
+    public void writeBits(int code, int length) throws IOException {
+        bitBuffer = (bitBuffer << length) | (code & 0xFFFFFFFFL);
+        bitCount += length;
+        while (bitCount >= 8) {
+            bitCount -= 8;
+            buffer[position++] = (byte) (bitBuffer >>> bitCount);
+            if (position == buffer.length)
+                flushBuffer();
+        }
+    }
+
+    /**
+     * Appends a whole byte.
+     *
+     * @param b The byte to write
+     */
+    public void writeByte(int b) throws IOException {
+        writeBits(b & 0xFF, 8);
+    }
+
+    /**
+     * Appends an int as 4 bytes, high byte first.
+     *
+     * @param v The value to write
+     */
+    public void writeInt(int v) throws IOException {
+        writeBits(v, 32);
+    }
+
+    /**
+     * Returns the number of bits waiting for the current byte to be completed.
+     *
+     * @return A value between 0 and 7
+     */
+    public int getPendingBits() {
+        return bitCount;
+    }
+
+    /**
+     * Completes the current byte with zero bits.
+     *
+     * @return The number of padding bits added
+     */
+    public int alignToByte() throws IOException {
+        int padding = (8 - bitCount) & 7;
+        if (padding != 0)
+            writeBits(0, padding);
+        return padding;
+    }
+
+    /**
+     * Returns the number of whole bytes produced so far, including those still in the buffer.
+     *
+     * @return The byte count
+     */
+    public long getBytesWritten() {
+        return bytesWritten + position;
+    }
+
+    private void flushBuffer() throws IOException {
+        out.write(buffer, 0, position);
+        bytesWritten += position;
+        position = 0;
+    }
+
+    /**
+     * Writes the buffered whole bytes to the stream. Pending bits of an incomplete byte stay in the accumulator.
+     */
+    public void flush() throws IOException {
+        flushBuffer();
+        out.flush();
+    }
+}
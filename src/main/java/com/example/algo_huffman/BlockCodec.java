@@ -0,0 +1,322 @@
+package com.example.algo_huffman;
+
+import java.io.EOFException;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.util.Arrays;
+import java.util.zip.CRC32C;
+
+/**
+ * The BlockCodec class reads and writes the block format used for streams, where the input length is not known
+ * in advance. A stream starts with the 4 byte magic "HUFS" followed by blocks, each compressed with its own tree:
+ *
+ * <pre>
+ * int   rawLength    bytes the block decodes to, 0 ends the stream
+ * int   dataLength   bytes of encoded data after the tree
+ * short treeLength   tree length in bits, 0 for a block stored without compression, ORed with CHECKSUM_FLAG
+ * int   checksum     CRC32C of the decoded bytes, only when treeLength has CHECKSUM_FLAG
+ * byte[(treeLength + 7) / 8] tree, in the post order layout of HuffmanTree.writeTree
+ * byte[dataLength]  data, padded with zero bits to a whole byte
+ * </pre>
+ *
+ * Blocks are always written with a checksum, computed in the pass counting the frequencies: one segment at a time,
+ * each right after its count, so the bytes are read from memory once. Blocks written before checksums existed are
+ * still read, without the check.
+ * A block that would not shrink is stored, so a stream is never more than BLOCK_HEADER_SIZE + CHECKSUM_SIZE bytes
+ * per block larger than its input.
+ */
+public class BlockCodec {
+    public static final int MAGIC = 0x48554653; // "HUFS"
+    public static final int BLOCK_SIZE = 1 << 20; // Default number of input bytes per block
+    public static final int MAX_BLOCK_SIZE = 1 << 26; // Largest block a reader accepts
+    public static final int BLOCK_HEADER_SIZE = 10; // rawLength, dataLength and treeLength
+    public static final int CHECKSUM_SIZE = 4; // CRC32C after the header of a checked block
+    static final int CHECKSUM_FLAG = 0x8000; // Set in treeLength when a checksum follows the header
+    static final int MAX_TREE_LENGTH = 256 * 9 + 255; // Tree bits of a tree with 256 leaves
+
+    /**
+     * Writes the magic starting a stream.
+     *
+     * @param out The stream to write to
+     */
+    public static void writeStreamHeader(OutputStream out) throws IOException {
+        out.write(new byte[]{'H', 'U', 'F', 'S'});
+    }
+
+    /**
+     * Reads and checks the magic starting a stream.
+     *
+     * @param in The stream to read from
+     */
+    public static void readStreamHeader(InputStream in) throws IOException {
+        byte[] magic = in.readNBytes(4);
+        if (magic.length != 4 || readInt(magic, 0) != MAGIC)
+            throw new IOException("Not a Huffman block stream");
+    }
+
+    /**
+     * Writes the block ending a stream.
+     *
+     * @param out The stream to write to
+     */
+    public static void writeEnd(OutputStream out) throws IOException {
+        out.write(new byte[BLOCK_HEADER_SIZE]);
+    }
+
+    /**
+     * Compresses a range of bytes as one block with its own tree.
+     *
+     * @param src     The bytes to compress
+     * @param offset  First byte of the block
+     * @param length  Number of bytes, between 1 and MAX_BLOCK_SIZE
+     * @param out     The stream receiving the block
+     * @param context A context used only by this call
+     * @return The number of bytes written
+     */
+    public static long writeBlock(byte[] src, int offset, int length, OutputStream out, CodecContext context) throws IOException {
+        Arrays.fill(context.freq, 0);
+        context.checksum.reset();
+        for (int i = offset; i < offset + length; i += BlockSplitter.SEGMENT_SIZE) {
+            int n = Math.min(BlockSplitter.SEGMENT_SIZE, offset + length - i);
+            HuffmanEncoder.countFrequencies(src, i, n, context.freq);
+            context.checksum.update(src, i, n);
+        }
+        return writeCounted(src, offset, length, out, context);
+    }
+
+    /**
+     * Compresses a range of bytes as one or more blocks, starting a new block with a new tree where BlockSplitter
+     * finds that the symbol statistics change enough to pay for it.
+     *
+     * @param src     The bytes to compress
+     * @param offset  First byte of the range
+     * @param length  Number of bytes, between 1 and MAX_BLOCK_SIZE
+     * @param out     The stream receiving the blocks
+     * @param context A context used only by this call
+     * @return The number of bytes written
+     */
+    public static long writeBlocks(byte[] src, int offset, int length, OutputStream out, CodecContext context) throws IOException {
+        long written = 0;
+        int end = offset + length;
+        while (offset < end) {
+            int blockLength = context.splitter.nextBlock(src, offset, end - offset, context.freq,
+                    context.checksum);
+            written += writeCounted(src, offset, blockLength, out, context);
+            offset += blockLength;
+        }
+        return written;
+    }
+
+    /**
+     * Compresses a range of bytes as one block, context.freq already holding their frequencies and
+     * context.checksum their CRC32C.
+     */
+    static long writeCounted(byte[] src, int offset, int length, OutputStream out, CodecContext context) throws IOException {
+        long[] freq = context.freq;
+        HuffmanTree tree = context.tree.rebuild(freq);
+
+        int treeLength = tree.getTreeLength();
+        long dataLength = (tree.getEncodedLength(freq) + 7) / 8;
+        int checksum = (int) context.checksum.getValue();
+
+        BitOutput bitOut = context.bitOutput.reset(out);
+        bitOut.writeInt(length);
+        if ((treeLength + 7) / 8 + dataLength >= length) {
+            // Stored block: the tree and the codes would take more room than the bytes themselves
+            bitOut.writeInt(length);
+            bitOut.writeBits(CHECKSUM_FLAG, 16);
+            bitOut.writeInt(checksum);
+            bitOut.flush();
+            out.write(src, offset, length);
+            return BLOCK_HEADER_SIZE + CHECKSUM_SIZE + length;
+        }
+
+        bitOut.writeInt((int) dataLength);
+        bitOut.writeBits(treeLength | CHECKSUM_FLAG, 16);
+        bitOut.writeInt(checksum);
+        tree.writeTree(bitOut);
+        bitOut.alignToByte();
+        HuffmanEncoder.encode(src, offset, length, tree, bitOut);
+        bitOut.alignToByte();
+        bitOut.flush();
+        return bitOut.getBytesWritten();
+    }
+
+    /**
+     * Compresses a whole stream: the magic, blocks of at most BLOCK_SIZE bytes split where the statistics change,
+     * and the end block. Memory use is one block whatever the length of the stream. out is not flushed.
+     *
+     * @param in      The stream to compress until its end
+     * @param out     The stream receiving the compressed stream
+     * @param context A context used only by this call
+     * @return The number of input bytes
+     */
+    public static long compress(InputStream in, OutputStream out, CodecContext context) throws IOException {
+        byte[] raw = context.rawBuffer(BLOCK_SIZE);
+        long total = 0;
+        writeStreamHeader(out);
+        int length;
+        while ((length = in.readNBytes(raw, 0, BLOCK_SIZE)) > 0) {
+            writeBlocks(raw, 0, length, out, context);
+            total += length;
+        }
+        writeEnd(out);
+        return total;
+    }
+
+    /**
+     * Decompresses a whole stream written by compress or by a HuffmanOutputStream. out is not flushed.
+     *
+     * @param in      The stream to decompress
+     * @param out     The stream receiving the decoded bytes
+     * @param context A context used only by this call
+     * @return The number of decoded bytes
+     */
+    public static long decompress(InputStream in, OutputStream out, CodecContext context) throws IOException {
+        return decompress(in, out, context, null);
+    }
+
+    /**
+     * Same as the other decompress, refusing the first block that would go past the limits of budget, before it
+     * is decoded.
+     *
+     * @param budget The budget of this decompression, or null for no limits
+     */
+    public static long decompress(InputStream in, OutputStream out, CodecContext context, DecodeLimits.Budget budget)
+            throws IOException {
+        readStreamHeader(in);
+        long total = 0;
+        int length;
+        while ((length = readBlock(in, context, budget)) != -1) {
+            out.write(context.rawBuffer, 0, length);
+            total += length;
+        }
+        return total;
+    }
+
+    /**
+     * Reads the next block and decodes it into the raw buffer of the context, checking its checksum if it has one.
+     *
+     * @param in      The stream positioned at a block
+     * @param context A context used only by this call, whose rawBuffer receives the decoded bytes
+     * @return The number of decoded bytes, or -1 if this is the block ending the stream
+     */
+    public static int readBlock(InputStream in, CodecContext context) throws IOException {
+        return readBlock(in, context, null);
+    }
+
+    /**
+     * Same as the other readBlock, charging the block to budget from its header, before its data is read.
+     *
+     * @param budget The budget of this decompression, or null for no limits
+     */
+    public static int readBlock(InputStream in, CodecContext context, DecodeLimits.Budget budget) throws IOException {
+        byte[] header = context.blockBuffer(BLOCK_HEADER_SIZE);
+        readFully(in, header, 0, BLOCK_HEADER_SIZE);
+        int rawLength = readInt(header, 0);
+        int dataLength = readInt(header, 4);
+        int treeLength = (header[8] & 0xFF) << 8 | (header[9] & 0xFF);
+        boolean checked = (treeLength & CHECKSUM_FLAG) != 0;
+        treeLength &= ~CHECKSUM_FLAG;
+
+        if (rawLength == 0)
+            return -1;
+        if (rawLength < 0 || rawLength > MAX_BLOCK_SIZE)
+            throw new IOException("Invalid block length: " + rawLength);
+        int checksum = 0;
+        if (checked) {
+            readFully(in, header, 0, CHECKSUM_SIZE);
+            checksum = readInt(header, 0);
+        }
+        if (treeLength == 0 ? dataLength != rawLength
+                : treeLength > MAX_TREE_LENGTH || dataLength <= 0 || dataLength > rawLength
+                || (long) dataLength * 8 < rawLength) // Every code takes at least one bit
+            throw new IOException(treeLength == 0 ? "Invalid stored block" : "Invalid block header");
+        int treeBytes = (treeLength + 7) / 8;
+        if (budget != null) {
+            if (treeLength != 0)
+                budget.checkTree(treeLength);
+            budget.add(BLOCK_HEADER_SIZE + (checked ? CHECKSUM_SIZE : 0) + treeBytes + dataLength, rawLength);
+        }
+        byte[] dst = context.rawBuffer(rawLength);
+
+        if (treeLength == 0) {
+            readFully(in, dst, 0, rawLength);
+            if (checked)
+                verify(dst, rawLength, checksum, context);
+            return rawLength;
+        }
+        byte[] encoded = context.blockBuffer(treeBytes + dataLength);
+        readFully(in, encoded, 0, treeBytes + dataLength);
+
+        HuffmanTree tree = context.tree.readTree(encoded, 0, treeLength);
+        if (tree.getRootNode() == null)
+            throw new IOException("Invalid block tree");
+        BitInput bitIn = context.bitInput.reset(encoded, treeBytes, dataLength);
+        HuffmanDecoder.decode(bitIn, tree, dst, 0, rawLength);
+        if (checked)
+            verify(dst, rawLength, checksum, context);
+        return rawLength;
+    }
+
+    /**
+     * Returns the number of bytes from the start of a block written by this class that hold its first n decoded
+     * bytes: the header, the checksum, the largest tree and n codes of at most HuffmanTree.MAX_CODE_LENGTH bits.
+     *
+     * @param n Number of decoded bytes
+     * @return The bytes to read for readHead, or fewer if the block is shorter
+     */
+    static int headLength(int n) {
+        return BLOCK_HEADER_SIZE + CHECKSUM_SIZE + (MAX_TREE_LENGTH + 7) / 8
+                + (n * HuffmanTree.MAX_CODE_LENGTH + 7) / 8;
+    }
+
+    /**
+     * Decodes the first bytes of a block from the start of its encoding, without reading or decoding the rest.
+     *
+     * @param block   The start of the block, from its header, at least headLength(n) bytes unless the block is
+     *                shorter
+     * @param length  Number of valid bytes in block
+     * @param head    Receives the decoded bytes
+     * @param n       Number of bytes to decode, at most the length of the block
+     * @param context A context used only by this call
+     */
+    static void readHead(byte[] block, int length, byte[] head, int n, CodecContext context) throws IOException {
+        if (length < BLOCK_HEADER_SIZE)
+            throw new IOException("Truncated block");
+        int treeLength = (block[8] & 0xFF) << 8 | (block[9] & 0xFF);
+        int start = BLOCK_HEADER_SIZE + ((treeLength & CHECKSUM_FLAG) != 0 ? CHECKSUM_SIZE : 0);
+        treeLength &= ~CHECKSUM_FLAG;
+        if (treeLength == 0) {
+            if (start + n > length)
+                throw new IOException("Truncated block");
+            System.arraycopy(block, start, head, 0, n);
+            return;
+        }
+        int treeBytes = (treeLength + 7) / 8;
+        if (treeLength > MAX_TREE_LENGTH || start + treeBytes > length)
+            throw new IOException("Invalid block header");
+        HuffmanTree tree = context.tree.readTree(block, start, treeLength);
+        BitInput bitIn = context.bitInput.reset(block, start + treeBytes, length - start - treeBytes);
+        HuffmanDecoder.decode(bitIn, tree, head, 0, n);
+    }
+
+    // Compares the CRC32C of the decoded bytes with the one stored in the block
+    private static void verify(byte[] dst, int length, int expected, CodecContext context) throws IOException {
+        CRC32C checksum = context.checksum;
+        checksum.reset();
+        checksum.update(dst, 0, length);
+        if ((int) checksum.getValue() != expected)
+            throw new IOException("Block checksum mismatch: the stream is corrupt");
+    }
+
+    static void readFully(InputStream in, byte[] b, int offset, int length) throws IOException {
+        if (in.readNBytes(b, offset, length) != length)
+            throw new EOFException("Truncated Huffman block stream");
+    }
+
+    static int readInt(byte[] b, int offset) {
+        return (b[offset] & 0xFF) << 24 | (b[offset + 1] & 0xFF) << 16 | (b[offset + 2] & 0xFF) << 8 | (b[offset + 3] & 0xFF);
+    }
+}
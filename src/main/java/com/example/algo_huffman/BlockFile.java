@@ -0,0 +1,662 @@
+package com.example.algo_huffman;
+
+import java.io.BufferedOutputStream;
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.Closeable;
+import java.io.DataOutputStream;
+import java.io.File;
+import java.io.FileInputStream;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.nio.ByteBuffer;
+import java.nio.channels.Channels;
+import java.nio.channels.FileChannel;
+import java.nio.channels.FileLock;
+import java.nio.file.StandardOpenOption;
+import java.security.MessageDigest;
+import java.security.NoSuchAlgorithmException;
+import java.util.Arrays;
+import java.util.zip.CRC32C;
+
+/**
+ * A compressed file made of independent BlockCodec blocks, which can grow without being recompressed:
+ *
+ * <pre>
+ * superblock   int MAGIC "HUFB", byte VERSION, 3 reserved bytes, long indexOffset
+ * blocks       each in the block layout of BlockCodec
+ * index        int blockCount, for each block: long offset, int compressedLength, int rawLength,
+ *              byte[32] SHA-256 of the decoded bytes (VERSION_DIGESTS only),
+ *              then long rawLength of the file and int INDEX_MAGIC "HUFI"
+ * </pre>
+ *
+ * New files are written as VERSION_DIGESTS; VERSION files, whose index has no digests, are still read and
+ * written in their own version.
+ *
+ * append writes the new blocks after the current index, then a new index, forces both to disk and only then
+ * overwrites the 8 byte indexOffset of the superblock. Until that single write the superblock points to the old,
+ * untouched index, so a reader opening the file at any time, or after a crash, sees either the old or the new
+ * content, never a mix. The old index stays behind as a few unused bytes. Appending costs the new bytes plus one
+ * index, whatever the size of the file.
+ *
+ * update replaces the content with a new version of it the same way: the blocks whose bytes are unchanged are kept
+ * in place and only the changed regions are encoded and written after the index.
+ *
+ * Usage: BlockFile append file input...   BlockFile update file input   BlockFile extract file output
+ *        BlockFile info file
+ */
+public class BlockFile implements Closeable {
+    public static final int MAGIC = 0x48554642; // "HUFB"
+    public static final int INDEX_MAGIC = 0x48554649; // "HUFI"
+    public static final int VERSION = 1; // Index without digests
+    public static final int VERSION_DIGESTS = 2; // Index with the SHA-256 of every block
+    static final int SUPERBLOCK_SIZE = 16; // MAGIC, VERSION, reserved bytes and indexOffset
+    static final int INDEX_OFFSET_POSITION = 8; // Position of indexOffset in the superblock
+    static final int INDEX_ENTRY_SIZE = 16; // offset, compressedLength and rawLength
+    static final int DIGEST_SIZE = 32; // SHA-256 after an index entry of a VERSION_DIGESTS file
+    static final int HEAD_SIZE = 256; // Bytes at the start of a block by which update finds it anywhere
+    static final int SCAN_SIZE = 1 << 16; // Positions of the input hashed per read while update scans
+    static final int SCAN_CREDIT = 2; // Bytes a scan may read for failed confirmations per position scanned
+    static final long HASH_MULTIPLIER = 0x9E3779B97F4A7C15L; // Odd, of the polynomial rolling hash of HEAD_SIZE bytes
+    static final long HASH_POWER; // HASH_MULTIPLIER to the power HEAD_SIZE - 1, weight of the byte leaving the hash
+
+    static {
+        long power = 1;
+        for (int i = 1; i < HEAD_SIZE; i++)
+            power *= HASH_MULTIPLIER;
+        HASH_POWER = power;
+    }
+
+    private final FileChannel channel; // The file, opened for reading, and for writing unless readOnly
+    private final boolean readOnly; // Opened by openReadOnly, append and update refuse to run
+    private final MessageDigest sha256 = sha256();
+    private int version; // VERSION or VERSION_DIGESTS
+    private long indexOffset; // Position of the current index
+    private long[] offsets = new long[0]; // Position of each block
+    private int[] compressedLengths = new int[0]; // Bytes of each block in the file
+    private int[] rawLengths = new int[0]; // Decoded bytes of each block
+    private byte[] digests = new byte[0]; // SHA-256 of each block, DIGEST_SIZE bytes per block, VERSION_DIGESTS only
+    private int blockCount;
+    private long rawLength; // Decoded bytes of the whole file
+
+    private BlockFile(FileChannel channel, boolean readOnly) {
+        this.channel = channel;
+        this.readOnly = readOnly;
+    }
+
+    /**
+     * Opens a block file, creating an empty one if it does not exist.
+     *
+     * @param file The file to open
+     * @return The open file, to be closed by the caller
+     */
+    public static BlockFile open(File file) throws IOException {
+        FileChannel channel = FileChannel.open(file.toPath(), StandardOpenOption.CREATE, StandardOpenOption.READ,
+                StandardOpenOption.WRITE);
+        return open(new BlockFile(channel, false));
+    }
+
+    /**
+     * Opens an existing block file for reading only, so it can be read from a read-only file or mount.
+     *
+     * @param file The file to open
+     * @return The open file, to be closed by the caller
+     */
+    public static BlockFile openReadOnly(File file) throws IOException {
+        return open(new BlockFile(FileChannel.open(file.toPath(), StandardOpenOption.READ), true));
+    }
+
+    // Reads the index of a new BlockFile, or writes an empty one, closing the channel on failure
+    private static BlockFile open(BlockFile blockFile) throws IOException {
+        FileChannel channel = blockFile.channel;
+        try {
+            if (channel.size() == 0 && !blockFile.readOnly)
+                blockFile.initialize();
+            else
+                blockFile.readIndex();
+        } catch (IOException e) {
+            channel.close();
+            throw e;
+        }
+        return blockFile;
+    }
+
+    // Writes the superblock and an empty index to a new file
+    private void initialize() throws IOException {
+        ByteBuffer superblock = ByteBuffer.allocate(SUPERBLOCK_SIZE);
+        superblock.putInt(MAGIC).put((byte) VERSION_DIGESTS).put(new byte[3]).putLong(SUPERBLOCK_SIZE).flip();
+        writeAt(superblock, 0);
+        version = VERSION_DIGESTS;
+        indexOffset = SUPERBLOCK_SIZE;
+        writeAt(ByteBuffer.wrap(indexBytes()), indexOffset);
+        channel.force(false);
+    }
+
+    // Reads the superblock and the index it points to
+    private void readIndex() throws IOException {
+        ByteBuffer superblock = readAt(0, SUPERBLOCK_SIZE);
+        if (superblock.getInt() != MAGIC)
+            throw new IOException("Not a Huffman block file");
+        version = superblock.get();
+        if (version != VERSION && version != VERSION_DIGESTS)
+            throw new IOException("Unsupported block file version");
+        indexOffset = superblock.getLong(INDEX_OFFSET_POSITION);
+        if (indexOffset < SUPERBLOCK_SIZE || indexOffset > channel.size() - 16)
+            throw new IOException("Invalid block file index offset");
+
+        int count = readAt(indexOffset, 4).getInt();
+        int entrySize = entrySize();
+        if (count < 0 || (long) count * entrySize > channel.size() - indexOffset - 16)
+            throw new IOException("Invalid block file index");
+        ByteBuffer index = readAt(indexOffset + 4, count * entrySize + 12);
+        offsets = new long[count];
+        compressedLengths = new int[count];
+        rawLengths = new int[count];
+        digests = new byte[version == VERSION_DIGESTS ? count * DIGEST_SIZE : 0];
+        long total = 0;
+        for (int i = 0; i < count; i++) {
+            offsets[i] = index.getLong();
+            compressedLengths[i] = index.getInt();
+            rawLengths[i] = index.getInt();
+            if (version == VERSION_DIGESTS)
+                index.get(digests, i * DIGEST_SIZE, DIGEST_SIZE);
+            if (offsets[i] < SUPERBLOCK_SIZE || compressedLengths[i] < BlockCodec.BLOCK_HEADER_SIZE
+                    || offsets[i] + compressedLengths[i] > indexOffset
+                    || rawLengths[i] <= 0 || rawLengths[i] > BlockCodec.MAX_BLOCK_SIZE)
+                throw new IOException("Invalid block file index entry " + i);
+            total += rawLengths[i];
+        }
+        long storedLength = index.getLong();
+        if (index.getInt() != INDEX_MAGIC || storedLength != total)
+            throw new IOException("Invalid block file index");
+        blockCount = count;
+        rawLength = total;
+    }
+
+    /**
+     * Compresses the stream up to its end as new blocks at the end of the file. The new content becomes visible
+     * to readers all at once, when this method returns.
+     *
+     * @param in The bytes to append, not closed by this method
+     * @return The number of bytes appended
+     */
+    public long append(InputStream in) throws IOException {
+        checkWritable();
+        FileLock lock = channel.lock();
+        try {
+            // Another process may have appended since this file was opened
+            readIndex();
+            long position = Math.max(channel.size(), indexOffset);
+            long previousLength = rawLength;
+            CodecContext context = CodecContextPool.SHARED.acquire();
+            try {
+                position = writeBlocks(in, Long.MAX_VALUE, position, context);
+            } catch (IOException | RuntimeException e) {
+                readIndex(); // Forget the blocks written, the file still points to the old index
+                throw e;
+            } finally {
+                CodecContextPool.SHARED.release(context);
+            }
+            long appended = rawLength - previousLength;
+            if (appended == 0)
+                return 0;
+            commit(position);
+            return appended;
+        } finally {
+            lock.release();
+        }
+    }
+
+    /**
+     * Replaces the content of the file with the content of input, encoding only the parts that changed. A block
+     * of the current content is kept wherever the input holds its bytes. The block following the last one kept is
+     * tried first, right after it, so unchanged runs cost one check per block. Where that fails, the input is
+     * scanned with a rolling hash of HEAD_SIZE bytes for the start of any block of the current content, so
+     * insertions, deletions and moved parts only cost the blocks they touch and the bytes scanned up to the next
+     * block found, however many edits there are and however far apart.
+     *
+     * The CRC32C in the header of every block is a cheap first filter, read without decoding the block. It is
+     * linear and only 32 bits, so a candidate passing it is then confirmed against the SHA-256 of the index, or,
+     * in a VERSION file without digests, by decoding the block and comparing its bytes. Blocks written before
+     * checksums existed are never kept. The start of a block is decoded from the first bytes of its encoding,
+     * which are read only when a scan is needed.
+     *
+     * Kept blocks stay where they are and are only listed in the new index; the bytes between them are encoded as
+     * new blocks after the current index, like append, and the new content becomes visible all at once. Blocks no
+     * longer listed stay behind as unused bytes, see getLiveLength.
+     *
+     * @param input The new content
+     * @return The number of bytes of input encoded, the others being kept from the current content
+     */
+    public long update(File input) throws IOException {
+        checkWritable();
+        FileLock lock = channel.lock();
+        try (FileChannel in = FileChannel.open(input.toPath())) {
+            readIndex();
+            OldContent old = new OldContent(in);
+            long newLength = in.size();
+            offsets = new long[0];
+            compressedLengths = new int[0];
+            rawLengths = new int[0];
+            digests = new byte[0];
+            blockCount = 0;
+            rawLength = 0;
+
+            long position = Math.max(channel.size(), indexOffset);
+            long encoded = 0;
+            CodecContext context = CodecContextPool.SHARED.acquire();
+            try {
+                long next = 0; // First byte of input not yet in the new index
+                int expected = 0; // Block of the current content expected at next
+                while (next < newLength) {
+                    long start = next;
+                    int block = expected;
+                    if (expected >= old.count || !old.matches(expected, start, newLength, context)) {
+                        start = old.find(next, expected, newLength, context);
+                        if (start < 0)
+                            break;
+                        block = old.found;
+                    }
+                    if (start > next) {
+                        position = writeBlocks(Channels.newInputStream(in.position(next)), start - next, position,
+                                context);
+                        encoded += start - next;
+                    }
+                    addBlock(old.offsets[block], old.compressedLengths[block], old.rawLengths[block],
+                            version == VERSION_DIGESTS ? Arrays.copyOfRange(old.digests, block * DIGEST_SIZE,
+                                    (block + 1) * DIGEST_SIZE) : null);
+                    next = start + old.rawLengths[block];
+                    expected = block + 1;
+                }
+                if (next < newLength) {
+                    position = writeBlocks(Channels.newInputStream(in.position(next)), newLength - next, position,
+                            context);
+                    encoded += newLength - next;
+                }
+                if (rawLength != newLength)
+                    throw new IOException(input + " changed while updating");
+            } catch (IOException | RuntimeException e) {
+                readIndex(); // Forget the new index, the file still points to the old one
+                throw e;
+            } finally {
+                CodecContextPool.SHARED.release(context);
+            }
+            commit(position);
+            return encoded;
+        } finally {
+            lock.release();
+        }
+    }
+
+    // The blocks of the content being replaced by update, and the search for them in the new content
+    private class OldContent {
+        final int count; // Blocks of the current content
+        final long[] offsets; // Index of the current content, as readIndex left it
+        final int[] compressedLengths;
+        final int[] rawLengths;
+        final byte[] digests; // SHA-256 of each block, VERSION_DIGESTS only
+        final long[] checksums; // CRC32C of each block, or -1 for a block written without one
+        final FileChannel in; // The new content
+        final ByteBuffer buffer; // Bytes of the new content compared with a block
+        final CRC32C checksum = new CRC32C();
+        long[] heads; // Rolling hash of the first HEAD_SIZE bytes of each block, by slot; null until a scan
+        int[] headBlocks; // Block number + 1 of each slot of heads, 0 for a free slot
+        int found; // Block at the position returned by find
+
+        OldContent(FileChannel in) throws IOException {
+            this.count = blockCount;
+            this.offsets = BlockFile.this.offsets;
+            this.compressedLengths = BlockFile.this.compressedLengths;
+            this.rawLengths = BlockFile.this.rawLengths;
+            this.digests = BlockFile.this.digests;
+            this.checksums = readChecksums();
+            this.in = in;
+            int largest = 0;
+            for (int i = 0; i < count; i++)
+                largest = Math.max(largest, rawLengths[i]);
+            this.buffer = ByteBuffer.allocate(largest);
+        }
+
+        // True if the input holds the bytes of block from start
+        boolean matches(int block, long start, long newLength, CodecContext context) throws IOException {
+            if (checksums[block] < 0 || start + rawLengths[block] > newLength)
+                return false;
+            buffer.clear().limit(rawLengths[block]);
+            readFully(in, buffer, start);
+            buffer.flip();
+            checksum.reset();
+            checksum.update(buffer.duplicate());
+            if (checksum.getValue() != checksums[block])
+                return false;
+            if (version == VERSION_DIGESTS)
+                return Arrays.equals(digest(buffer.duplicate()), 0, DIGEST_SIZE, digests, block * DIGEST_SIZE,
+                        (block + 1) * DIGEST_SIZE);
+            return sameBytes(offsets[block], compressedLengths[block], buffer, context);
+        }
+
+        /**
+         * Scans the input from a position for the first place holding a whole block of the current content. On
+         * repetitive data many places share the start of a block without holding all of it, so the bytes read by
+         * failed confirmations are limited to SCAN_CREDIT per position scanned, plus two blocks, and candidates
+         * beyond that are passed over: the scan costs a fixed multiple of the bytes it covers.
+         *
+         * @param from  The first position to look at
+         * @param tried A block already known not to match at from
+         * @return The position found, the block being left in found, or -1 if none is found
+         */
+        long find(long from, int tried, long newLength, CodecContext context) throws IOException {
+            if (heads == null)
+                readHeads(context);
+            int mask = heads.length - 1;
+            int shift = 64 - Integer.numberOfTrailingZeros(heads.length);
+            byte[] window = new byte[SCAN_SIZE + HEAD_SIZE - 1];
+            long credit = 2L * buffer.capacity(); // Bytes failed confirmations may still read
+            for (long base = from; base + HEAD_SIZE <= newLength; base += SCAN_SIZE) {
+                int length = (int) Math.min(window.length, newLength - base);
+                readFully(in, ByteBuffer.wrap(window, 0, length), base);
+                long hash = 0;
+                for (int i = 0; i < HEAD_SIZE; i++)
+                    hash = hash * HASH_MULTIPLIER + (window[i] & 0xFF);
+                for (int i = 0; i < SCAN_SIZE && i + HEAD_SIZE <= length; i++) {
+                    if (i > 0)
+                        hash = (hash - (window[i - 1] & 0xFF) * HASH_POWER) * HASH_MULTIPLIER
+                                + (window[i + HEAD_SIZE - 1] & 0xFF);
+                    credit += SCAN_CREDIT;
+                    for (int slot = (int) (hash >>> shift); headBlocks[slot] != 0; slot = (slot + 1) & mask) {
+                        int block = headBlocks[slot] - 1;
+                        if (heads[slot] != hash || rawLengths[block] > credit || base + i == from && block == tried)
+                            continue;
+                        if (matches(block, base + i, newLength, context)) {
+                            found = block;
+                            return base + i;
+                        }
+                        credit -= rawLengths[block];
+                    }
+                }
+            }
+            return -1;
+        }
+
+        // Decodes the first HEAD_SIZE bytes of every block that has a checksum and hashes them into heads
+        private void readHeads(CodecContext context) throws IOException {
+            // At most one slot in 16 is used, so the probe at a position starting no block is almost always empty
+            int slots = Integer.highestOneBit(Math.max(1, count) * 16) * 2;
+            heads = new long[slots];
+            headBlocks = new int[slots];
+            int shift = 64 - Integer.numberOfTrailingZeros(slots);
+            byte[] head = new byte[HEAD_SIZE];
+            for (int i = 0; i < count; i++) {
+                if (checksums[i] < 0 || rawLengths[i] < HEAD_SIZE)
+                    continue;
+                ByteBuffer encoded = readAt(offsets[i], Math.min(compressedLengths[i],
+                        BlockCodec.headLength(HEAD_SIZE)));
+                BlockCodec.readHead(encoded.array(), encoded.limit(), head, HEAD_SIZE, context);
+                long hash = 0;
+                for (byte b : head)
+                    hash = hash * HASH_MULTIPLIER + (b & 0xFF);
+                int slot = (int) (hash >>> shift);
+                while (headBlocks[slot] != 0)
+                    slot = (slot + 1) & (slots - 1);
+                heads[slot] = hash;
+                headBlocks[slot] = i + 1;
+            }
+        }
+    }
+
+    /**
+     * Compresses up to limit bytes of the stream as blocks written from position and adds them to the index.
+     *
+     * @return The position after the blocks
+     */
+    private long writeBlocks(InputStream in, long limit, long position, CodecContext context) throws IOException {
+        byte[] raw = context.rawBuffer(BlockCodec.BLOCK_SIZE);
+        BlockBuffer block = new BlockBuffer();
+        int length;
+        while (limit > 0 && (length = in.readNBytes(raw, 0, (int) Math.min(BlockCodec.BLOCK_SIZE, limit))) > 0) {
+            for (int start = 0; start < length; ) {
+                int blockLength = context.splitter.nextBlock(raw, start, length - start, context.freq,
+                        context.checksum);
+                block.reset();
+                BlockCodec.writeCounted(raw, start, blockLength, block, context);
+                writeAt(block.view(), position);
+                byte[] digest = null;
+                if (version == VERSION_DIGESTS) {
+                    sha256.update(raw, start, blockLength);
+                    digest = sha256.digest();
+                }
+                addBlock(position, block.size(), blockLength, digest);
+                position += block.size();
+                start += blockLength;
+            }
+            limit -= length;
+        }
+        return position;
+    }
+
+    // Writes the index at position and forces it to disk, then points the superblock to it
+    private void commit(long position) throws IOException {
+        writeAt(ByteBuffer.wrap(indexBytes()), position);
+        channel.force(false);
+        ByteBuffer pointer = ByteBuffer.allocate(8).putLong(0, position);
+        writeAt(pointer, INDEX_OFFSET_POSITION);
+        channel.force(false);
+        indexOffset = position;
+    }
+
+    // Returns the SHA-256 of the remaining bytes of the buffer
+    private byte[] digest(ByteBuffer buffer) {
+        sha256.update(buffer);
+        return sha256.digest();
+    }
+
+    // Decodes the block at offset and compares it with the remaining bytes of the buffer
+    private boolean sameBytes(long offset, int compressedLength, ByteBuffer buffer, CodecContext context)
+            throws IOException {
+        int length = decodeAt(offset, compressedLength, context);
+        return length == buffer.remaining()
+                && Arrays.equals(context.rawBuffer, 0, length, buffer.array(), 0, buffer.remaining());
+    }
+
+    private static MessageDigest sha256() {
+        try {
+            return MessageDigest.getInstance("SHA-256");
+        } catch (NoSuchAlgorithmException e) {
+            throw new IllegalStateException(e); // Every Java platform provides SHA-256
+        }
+    }
+
+    // Reads the CRC32C in the header of every block, or -1 for a block written without one
+    private long[] readChecksums() throws IOException {
+        long[] checksums = new long[blockCount];
+        for (int i = 0; i < blockCount; i++) {
+            ByteBuffer header = readAt(offsets[i], Math.min(compressedLengths[i],
+                    BlockCodec.BLOCK_HEADER_SIZE + BlockCodec.CHECKSUM_SIZE));
+            boolean checked = header.limit() == BlockCodec.BLOCK_HEADER_SIZE + BlockCodec.CHECKSUM_SIZE
+                    && (header.getShort(8) & BlockCodec.CHECKSUM_FLAG) != 0;
+            checksums[i] = checked ? header.getInt(BlockCodec.BLOCK_HEADER_SIZE) & 0xFFFFFFFFL : -1;
+        }
+        return checksums;
+    }
+
+    /**
+     * Decodes the whole file.
+     *
+     * @param out The stream receiving the decoded bytes, not closed by this method
+     */
+    public void extract(OutputStream out) throws IOException {
+        CodecContext context = CodecContextPool.SHARED.acquire();
+        try {
+            for (int i = 0; i < blockCount; i++) {
+                int length = readBlock(i, context);
+                out.write(context.rawBuffer, 0, length);
+            }
+        } finally {
+            CodecContextPool.SHARED.release(context);
+        }
+    }
+
+    /**
+     * Decodes one block into the raw buffer of the context.
+     *
+     * @param block   The block number
+     * @param context A context used only by this call
+     * @return The number of decoded bytes
+     */
+    int readBlock(int block, CodecContext context) throws IOException {
+        int length = decodeAt(offsets[block], compressedLengths[block], context);
+        if (length != rawLengths[block])
+            throw new IOException("Block " + block + " does not match the index");
+        return length;
+    }
+
+    // Decodes the block at offset into the raw buffer of the context and returns its length
+    private int decodeAt(long offset, int compressedLength, CodecContext context) throws IOException {
+        ByteBuffer encoded = readAt(offset, compressedLength);
+        return BlockCodec.readBlock(new ByteArrayInputStream(encoded.array()), context);
+    }
+
+    public int getBlockCount() {
+        return blockCount;
+    }
+
+    public long getRawLength() {
+        return rawLength;
+    }
+
+    /**
+     * Returns the number of bytes of the file holding blocks and the current index, without the old indexes.
+     *
+     * @return The live bytes of the file
+     */
+    public long getLiveLength() {
+        long total = SUPERBLOCK_SIZE + 4 + (long) blockCount * entrySize() + 12;
+        for (int i = 0; i < blockCount; i++)
+            total += compressedLengths[i];
+        return total;
+    }
+
+    @Override
+    public void close() throws IOException {
+        channel.close();
+    }
+
+    private void checkWritable() throws IOException {
+        if (readOnly)
+            throw new IOException("Block file opened read-only");
+    }
+
+    private int entrySize() {
+        return version == VERSION_DIGESTS ? INDEX_ENTRY_SIZE + DIGEST_SIZE : INDEX_ENTRY_SIZE;
+    }
+
+    // Adds a block to the index; digest is its SHA-256 in a VERSION_DIGESTS file, ignored otherwise
+    private void addBlock(long offset, int compressedLength, int length, byte[] digest) {
+        if (blockCount == offsets.length) {
+            int capacity = Math.max(16, 2 * blockCount);
+            offsets = Arrays.copyOf(offsets, capacity);
+            compressedLengths = Arrays.copyOf(compressedLengths, capacity);
+            rawLengths = Arrays.copyOf(rawLengths, capacity);
+            if (version == VERSION_DIGESTS)
+                digests = Arrays.copyOf(digests, capacity * DIGEST_SIZE);
+        }
+        offsets[blockCount] = offset;
+        compressedLengths[blockCount] = compressedLength;
+        rawLengths[blockCount] = length;
+        if (version == VERSION_DIGESTS)
+            System.arraycopy(digest, 0, digests, blockCount * DIGEST_SIZE, DIGEST_SIZE);
+        blockCount++;
+        rawLength += length;
+    }
+
+    private byte[] indexBytes() throws IOException {
+        ByteArrayOutputStream bytes = new ByteArrayOutputStream(4 + blockCount * entrySize() + 12);
+        DataOutputStream data = new DataOutputStream(bytes);
+        data.writeInt(blockCount);
+        for (int i = 0; i < blockCount; i++) {
+            data.writeLong(offsets[i]);
+            data.writeInt(compressedLengths[i]);
+            data.writeInt(rawLengths[i]);
+            if (version == VERSION_DIGESTS)
+                data.write(digests, i * DIGEST_SIZE, DIGEST_SIZE);
+        }
+        data.writeLong(rawLength);
+        data.writeInt(INDEX_MAGIC);
+        return bytes.toByteArray();
+    }
+
+    private ByteBuffer readAt(long position, int length) throws IOException {
+        ByteBuffer buffer = ByteBuffer.allocate(length);
+        while (buffer.hasRemaining()) {
+            if (channel.read(buffer, position + buffer.position()) == -1)
+                throw new IOException("Truncated Huffman block file");
+        }
+        return buffer.flip();
+    }
+
+    private static void readFully(FileChannel in, ByteBuffer buffer, long position) throws IOException {
+        long start = position - buffer.position();
+        while (buffer.hasRemaining()) {
+            if (in.read(buffer, start + buffer.position()) == -1)
+                throw new IOException("File shrank while updating");
+        }
+    }
+
+    private void writeAt(ByteBuffer buffer, long position) throws IOException {
+        while (buffer.hasRemaining())
+            channel.write(buffer, position + buffer.position());
+    }
+
+    // Holds one encoded block, written to the channel without a copy
+    static class BlockBuffer extends ByteArrayOutputStream {
+        BlockBuffer() {
+            super(BlockCodec.BLOCK_SIZE + BlockCodec.BLOCK_HEADER_SIZE);
+        }
+
+        ByteBuffer view() {
+            return ByteBuffer.wrap(buf, 0, count);
+        }
+    }
+
+    public static void main(String[] args) throws IOException {
+        if (args.length < 2) {
+            System.err.println("Usage: BlockFile append|update|extract|info file [input... | output]");
+            System.exit(2);
+        }
+        File file = new File(args[1]);
+        boolean write = args[0].equals("append") || args[0].equals("update");
+        try (BlockFile blockFile = write ? open(file) : openReadOnly(file)) {
+            switch (args[0]) {
+                case "append" -> {
+                    for (int i = 2; i < args.length; i++) {
+                        long start = System.nanoTime();
+                        long appended;
+                        try (InputStream in = new FileInputStream(args[i])) {
+                            appended = blockFile.append(in);
+                        }
+                        System.out.printf("%s: %d bytes appended in %.1f ms%n", args[i], appended,
+                                (System.nanoTime() - start) / 1e6);
+                    }
+                }
+                case "update" -> {
+                    long start = System.nanoTime();
+                    long encoded = blockFile.update(new File(args[2]));
+                    System.out.printf("%s: %d of %d bytes encoded, %d blocks, in %.1f ms%n", args[2], encoded,
+                            blockFile.getRawLength(), blockFile.getBlockCount(), (System.nanoTime() - start) / 1e6);
+                }
+                case "extract" -> {
+                    try (OutputStream out = new BufferedOutputStream(new FileOutputStream(args[2]), 1 << 16)) {
+                        blockFile.extract(out);
+                    }
+                }
+                case "info" -> System.out.printf("%d blocks, %d bytes, %d live bytes of %d%n", blockFile.getBlockCount(),
+                        blockFile.getRawLength(), blockFile.getLiveLength(), file.length());
+                default -> {
+                    System.err.println("Unknown command: " + args[0]);
+                    System.exit(2);
+                }
+            }
+        }
+    }
+}
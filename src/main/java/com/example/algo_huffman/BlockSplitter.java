@@ -0,0 +1,81 @@
+package com.example.algo_huffman;
+
+import java.util.Arrays;
+import java.util.zip.CRC32C;
+
+/**
+ * Decides where blocks end so that each block gets a tree fitting its own symbol statistics. A range is scanned in
+ * segments of SEGMENT_SIZE bytes; each segment is either added to the current block or starts a new one,
+ * depending on an estimate of the encoded size in both cases:
+ *
+ * <pre>
+ * merged  cost(block + segment)
+ * split   cost(block) + cost(segment) + the tree and block header of the new block
+ * </pre>
+ *
+ * where cost(h) = N log2 N - sum(c log2 c) is the entropy in bits of a histogram h of N bytes, close to what its
+ * Huffman code takes. A block only ends when splitting saves more than MIN_GAIN_BITS, so stationary data, whose
+ * segments differ by sampling noise alone, stays in blocks of the maximum size. Every byte is counted once and the
+ * costs take a few hundred logarithms per segment, so the decision runs within the encoding pass. The CRC32C of
+ * the block is updated with each segment it takes, right after the segment is counted and while it is still in
+ * the L1 cache, so the checksum costs no pass of its own over the block.
+ */
+public class BlockSplitter {
+    static final int SEGMENT_SIZE = 16 << 10; // Granularity of the split points
+    static final double MIN_GAIN_BITS = 4096; // Saving needed to start a new block
+    static final double LOG2 = Math.log(2);
+
+    private final long[] segment = new long[256]; // Frequencies of the segment being considered
+    private final long[] merged = new long[256]; // Frequencies of the block with the segment
+
+    /**
+     * Returns the length of the block starting at offset.
+     *
+     * @param src      The bytes to split
+     * @param offset   First byte of the block
+     * @param length   Bytes available from offset; the block is never longer
+     * @param freq     Receives the frequencies of the block
+     * @param checksum Reset, then receives the bytes of the block
+     * @return The block length, between 1 and length
+     */
+    public int nextBlock(byte[] src, int offset, int length, long[] freq, CRC32C checksum) {
+        Arrays.fill(freq, 0);
+        checksum.reset();
+        int blockLength = Math.min(length, SEGMENT_SIZE);
+        HuffmanEncoder.countFrequencies(src, offset, blockLength, freq);
+        checksum.update(src, offset, blockLength);
+        double blockCost = cost(freq, blockLength);
+
+        while (blockLength < length) {
+            int n = Math.min(SEGMENT_SIZE, length - blockLength);
+            Arrays.fill(segment, 0);
+            HuffmanEncoder.countFrequencies(src, offset + blockLength, n, segment);
+            int leaves = 0;
+            for (int i = 0; i < 256; i++) {
+                merged[i] = freq[i] + segment[i];
+                if (segment[i] != 0)
+                    leaves++;
+            }
+            double mergedCost = cost(merged, blockLength + n);
+            double splitCost = blockCost + cost(segment, n) + 10 * leaves
+                    + 8 * (BlockCodec.BLOCK_HEADER_SIZE + BlockCodec.CHECKSUM_SIZE);
+            if (splitCost + MIN_GAIN_BITS < mergedCost)
+                break;
+            System.arraycopy(merged, 0, freq, 0, 256);
+            checksum.update(src, offset + blockLength, n);
+            blockCost = mergedCost;
+            blockLength += n;
+        }
+        return blockLength;
+    }
+
+    // Entropy in bits of total bytes with the given frequencies
+    static double cost(long[] freq, long total) {
+        double sum = 0;
+        for (long c : freq) {
+            if (c > 1)
+                sum += c * Math.log(c);
+        }
+        return (total * Math.log(total) - sum) / LOG2;
+    }
+}
@@ -0,0 +1,252 @@
+package com.example.algo_huffman;
+
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.File;
+import java.io.IOException;
+import java.io.OutputStream;
+import java.io.Writer;
+import java.lang.management.ManagementFactory;
+import java.lang.management.MemoryPoolMXBean;
+import java.lang.management.MemoryType;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.time.Instant;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Locale;
+import java.util.Map;
+import java.util.Random;
+import java.util.zip.DataFormatException;
+import java.util.zip.Deflater;
+import java.util.zip.Inflater;
+
+/**
+ * Command line benchmark comparing the Huffman codec with what the JDK ships: Deflater with HUFFMAN_ONLY (the same
+ * entropy coding without LZ77), BEST_SPEED and the default level, each read back with Inflater. Every codec runs
+ * over the same corpora, in memory, so only the coding is measured. For each pair it reports the ratio, compress
+ * and decompress MB/s and the peak heap during the runs, as a table and as a JSON file meant to be kept and
+ * compared across versions.
+ *
+ * Without files, three generated corpora are used: skewed text, small-valued binary and random bytes.
+ *
+ * Usage: CodecComparison [--json out.json] [--seconds s] [file...]
+ */
+public class CodecComparison {
+
+    interface Codec {
+        byte[] compress(byte[] data) throws IOException;
+
+        byte[] decompress(byte[] compressed, int originalLength) throws IOException;
+    }
+
+    static class Result {
+        String corpus;
+        String codec;
+        long size;
+        long compressedSize;
+        double compressMBps;
+        double decompressMBps;
+        long peakHeap;
+    }
+
+    public static void main(String[] args) throws IOException {
+        File json = new File("codec-comparison.json");
+        double seconds = 1.0;
+        Map<String, byte[]> corpora = new LinkedHashMap<>();
+        for (int i = 0; i < args.length; i++) {
+            switch (args[i]) {
+                case "--json" -> json = new File(args[++i]);
+                case "--seconds" -> seconds = Double.parseDouble(args[++i]);
+                default -> corpora.put(new File(args[i]).getName(), Files.readAllBytes(Path.of(args[i])));
+            }
+        }
+        if (corpora.isEmpty())
+            corpora.putAll(generatedCorpora(8 << 20));
+
+        Map<String, Codec> codecs = new LinkedHashMap<>();
+        codecs.put("huffman", huffman());
+        codecs.put("huffman-blocks", huffmanBlocks());
+        codecs.put("deflate-huffman-only", deflate(Deflater.DEFAULT_COMPRESSION, Deflater.HUFFMAN_ONLY));
+        codecs.put("deflate-best-speed", deflate(Deflater.BEST_SPEED, Deflater.DEFAULT_STRATEGY));
+        codecs.put("deflate-default", deflate(Deflater.DEFAULT_COMPRESSION, Deflater.DEFAULT_STRATEGY));
+
+        List<Result> results = new ArrayList<>();
+        System.out.printf("%-16s %-22s %12s %8s %12s %12s %12s%n", "corpus", "codec", "compressed", "ratio",
+                "comp MB/s", "decomp MB/s", "peak heap MB");
+        for (Map.Entry<String, byte[]> corpus : corpora.entrySet()) {
+            for (Map.Entry<String, Codec> codec : codecs.entrySet()) {
+                Result result = measure(corpus.getKey(), corpus.getValue(), codec.getKey(), codec.getValue(), seconds);
+                results.add(result);
+                System.out.printf("%-16s %-22s %12d %8.4f %12.1f %12.1f %12.1f%n", result.corpus, result.codec,
+                        result.compressedSize, (double) result.compressedSize / result.size, result.compressMBps,
+                        result.decompressMBps, result.peakHeap / 1048576.0);
+            }
+        }
+        writeJson(json, results);
+        System.out.println("Results written to " + json);
+    }
+
+    static Result measure(String corpus, byte[] data, String name, Codec codec, double seconds) throws IOException {
+        // Warm up, and check the round trip once
+        byte[] compressed = codec.compress(data);
+        if (!Arrays.equals(data, codec.decompress(compressed, data.length)))
+            throw new IOException(name + " does not give back " + corpus);
+
+        System.gc();
+        resetPeakHeap();
+        Result result = new Result();
+        result.corpus = corpus;
+        result.codec = name;
+        result.size = data.length;
+        result.compressedSize = compressed.length;
+
+        long deadline = System.nanoTime() + (long) (seconds * 1e9);
+        long start = System.nanoTime();
+        int runs = 0;
+        do {
+            codec.compress(data);
+            runs++;
+        } while (System.nanoTime() < deadline);
+        result.compressMBps = (double) data.length * runs / 1048576.0 / ((System.nanoTime() - start) / 1e9);
+
+        deadline = System.nanoTime() + (long) (seconds * 1e9);
+        start = System.nanoTime();
+        runs = 0;
+        do {
+            codec.decompress(compressed, data.length);
+            runs++;
+        } while (System.nanoTime() < deadline);
+        result.decompressMBps = (double) data.length * runs / 1048576.0 / ((System.nanoTime() - start) / 1e9);
+        result.peakHeap = peakHeap();
+        return result;
+    }
+
+    static Codec huffman() {
+        return new Codec() {
+            public byte[] compress(byte[] data) throws IOException {
+                ByteArrayOutputStream out = new ByteArrayOutputStream(data.length / 2 + 1024);
+                HuffmanEncoder.compress(data, 0, data.length, out);
+                return out.toByteArray();
+            }
+
+            public byte[] decompress(byte[] compressed, int originalLength) throws IOException {
+                ByteArrayOutputStream out = new ByteArrayOutputStream(originalLength);
+                HuffmanDecoder.decompress(compressed, 0, compressed.length, out);
+                return out.toByteArray();
+            }
+        };
+    }
+
+    static Codec huffmanBlocks() {
+        return new Codec() {
+            public byte[] compress(byte[] data) throws IOException {
+                ByteArrayOutputStream out = new ByteArrayOutputStream(data.length / 2 + 1024);
+                try (OutputStream huffman = new HuffmanOutputStream(out)) {
+                    huffman.write(data);
+                }
+                return out.toByteArray();
+            }
+
+            public byte[] decompress(byte[] compressed, int originalLength) throws IOException {
+                try (HuffmanInputStream in = new HuffmanInputStream(new ByteArrayInputStream(compressed))) {
+                    return in.readNBytes(originalLength);
+                }
+            }
+        };
+    }
+
+    static Codec deflate(int level, int strategy) {
+        return new Codec() {
+            public byte[] compress(byte[] data) {
+                Deflater deflater = new Deflater(level, true);
+                deflater.setStrategy(strategy);
+                deflater.setInput(data);
+                deflater.finish();
+                ByteArrayOutputStream out = new ByteArrayOutputStream(data.length / 2 + 1024);
+                byte[] buffer = new byte[1 << 16];
+                while (!deflater.finished())
+                    out.write(buffer, 0, deflater.deflate(buffer));
+                deflater.end();
+                return out.toByteArray();
+            }
+
+            public byte[] decompress(byte[] compressed, int originalLength) throws IOException {
+                Inflater inflater = new Inflater(true);
+                inflater.setInput(compressed);
+                byte[] result = new byte[originalLength];
+                try {
+                    int length = 0;
+                    while (length < originalLength && !inflater.finished())
+                        length += inflater.inflate(result, length, originalLength - length);
+                } catch (DataFormatException e) {
+                    throw new IOException(e);
+                } finally {
+                    inflater.end();
+                }
+                return result;
+            }
+        };
+    }
+
+    static Map<String, byte[]> generatedCorpora(int size) {
+        Random random = new Random(42);
+        Map<String, byte[]> corpora = new LinkedHashMap<>();
+
+        byte[] alphabet = " etaoinshrdlcumwfgypbvkjxqz\n.,ETAOINSHRDLU0123456789".getBytes(StandardCharsets.US_ASCII);
+        byte[] text = new byte[size];
+        for (int i = 0; i < size; i++)
+            text[i] = alphabet[(int) Math.min(alphabet.length - 1, -Math.log(1 - random.nextDouble()) * 6)];
+        corpora.put("text", text);
+
+        byte[] binary = new byte[size];
+        for (int i = 0; i < size; i++)
+            binary[i] = (byte) (random.nextGaussian() * 12);
+        corpora.put("binary", binary);
+
+        byte[] noise = new byte[size];
+        random.nextBytes(noise);
+        corpora.put("random", noise);
+        return corpora;
+    }
+
+    static void resetPeakHeap() {
+        for (MemoryPoolMXBean pool : ManagementFactory.getMemoryPoolMXBeans()) {
+            if (pool.getType() == MemoryType.HEAP)
+                pool.resetPeakUsage();
+        }
+    }
+
+    // Sum of the peaks of the heap pools since resetPeakHeap; an upper bound, the pools may peak at different times
+    static long peakHeap() {
+        long total = 0;
+        for (MemoryPoolMXBean pool : ManagementFactory.getMemoryPoolMXBeans()) {
+            if (pool.getType() == MemoryType.HEAP)
+                total += pool.getPeakUsage().getUsed();
+        }
+        return total;
+    }
+
+    static void writeJson(File file, List<Result> results) throws IOException {
+        try (Writer out = Files.newBufferedWriter(file.toPath(), StandardCharsets.UTF_8)) {
+            out.write(String.format("{\n  \"timestamp\": \"%s\",\n  \"java\": \"%s\",\n  \"processors\": %d,\n  \"results\": [\n",
+                    Instant.now(), System.getProperty("java.version"), Runtime.getRuntime().availableProcessors()));
+            for (int i = 0; i < results.size(); i++) {
+                Result r = results.get(i);
+                out.write(String.format(Locale.ROOT,
+                        "    {\"corpus\": \"%s\", \"codec\": \"%s\", \"size\": %d, \"compressedSize\": %d, \"ratio\": %.5f, "
+                                + "\"compressMBps\": %.2f, \"decompressMBps\": %.2f, \"peakHeapBytes\": %d}%s\n",
+                        escape(r.corpus), r.codec, r.size, r.compressedSize, (double) r.compressedSize / r.size,
+                        r.compressMBps, r.decompressMBps, r.peakHeap, i + 1 < results.size() ? "," : ""));
+            }
+            out.write("  ]\n}\n");
+        }
+    }
+
+    static String escape(String s) {
+        return s.replace("\\", "\\\\").replace("\"", "\\\"");
+    }
+}
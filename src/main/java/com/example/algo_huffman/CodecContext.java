@@ -0,0 +1,69 @@
+package com.example.algo_huffman;
+
+import java.nio.ByteBuffer;
+import java.util.Arrays;
+import java.util.zip.CRC32C;
+
+/**
+ * Holds the reusable state of a compression or decompression job: the frequency array, the Huffman tree with
+ * its nodes and code tables, the bit buffers and the I/O buffers. A context is used by one thread at a time;
+ * CodecContextPool hands them out so that consecutive jobs reuse the same memory instead of allocating it.
+ */
+public class CodecContext {
+    static final int BUFFER_SIZE = 1 << 16; // Size of every buffer of the context
+
+    final long[] freq = new long[256]; // Frequency array for each byte value (0-255)
+    final HuffmanTree tree = new HuffmanTree(); // Tree rebuilt for every job
+    final BitOutput bitOutput = new BitOutput(null, BUFFER_SIZE); // Bit writer of the encoder
+    final BitInput bitInput = new BitInput(null, BUFFER_SIZE); // Bit reader of the decoder
+    final byte[] buffer = new byte[BUFFER_SIZE]; // Decoded bytes waiting to be written
+    final ByteBuffer ioBuffer = ByteBuffer.allocateDirect(BUFFER_SIZE); // Buffer for file channel reads
+    final BlockSplitter splitter = new BlockSplitter(); // Block boundaries of the block format
+    final CRC32C checksum = new CRC32C(); // Checksum of the blocks of the block format
+    byte[] blockBuffer = new byte[0]; // Encoded bytes of one block, grown on demand
+    byte[] rawBuffer = new byte[0]; // Decoded bytes of one block, grown on demand
+    LargeHuffmanCode pairCode; // Code of the byte pair mode, created on first use
+
+    /**
+     * Clears what the previous job left in the context.
+     */
+    public void reset() {
+        Arrays.fill(freq, 0);
+        ioBuffer.clear();
+    }
+
+    /**
+     * Returns the block buffer, grown to at least size bytes.
+     *
+     * @param size Number of bytes needed
+     * @return The block buffer
+     */
+    byte[] blockBuffer(int size) {
+        if (blockBuffer.length < size)
+            blockBuffer = new byte[Math.max(size, 2 * blockBuffer.length)];
+        return blockBuffer;
+    }
+
+    /**
+     * Returns the code of the byte pair mode. It takes a few MB, so contexts that never use the mode never create it.
+     *
+     * @return The code over the 65536 byte pairs
+     */
+    LargeHuffmanCode pairCode() {
+        if (pairCode == null)
+            pairCode = new LargeHuffmanCode(PairCodec.ALPHABET_SIZE);
+        return pairCode;
+    }
+
+    /**
+     * Returns the raw buffer, grown to at least size bytes.
+     *
+     * @param size Number of bytes needed
+     * @return The raw buffer
+     */
+    byte[] rawBuffer(int size) {
+        if (rawBuffer.length < size)
+            rawBuffer = new byte[Math.max(size, 2 * rawBuffer.length)];
+        return rawBuffer;
+    }
+}
@@ -0,0 +1,55 @@
+package com.example.algo_huffman;
+
+import java.util.concurrent.ArrayBlockingQueue;
+
+/**
+ * A bounded pool of CodecContext objects. acquire never blocks: when the pool is empty a new context is created.
+ * release keeps at most maxIdle contexts and lets the others be garbage collected, so the memory held by the
+ * pool stays bounded whatever the number of threads.
+ */
+public class CodecContextPool {
+    // Pool shared by the codec entry points that are not given a context
+    public static final CodecContextPool SHARED = new CodecContextPool(2 * Runtime.getRuntime().availableProcessors());
+
+    private final ArrayBlockingQueue<CodecContext> idle; // Contexts waiting to be reused
+
+    /**
+     * Creates a pool keeping at most maxIdle contexts.
+     *
+     * @param maxIdle Maximum number of contexts kept between jobs
+     */
+    public CodecContextPool(int maxIdle) {
+        this.idle = new ArrayBlockingQueue<>(maxIdle);
+    }
+
+    /**
+     * Returns a cleared context, reused if one is available.
+     *
+     * @return A context owned by the caller until it is released
+     */
+    public CodecContext acquire() {
+        CodecContext context = idle.poll();
+        if (context == null)
+            context = new CodecContext();
+        context.reset();
+        return context;
+    }
+
+    /**
+     * Gives a context back to the pool. It is dropped if the pool is already full.
+     *
+     * @param context A context obtained from acquire, no longer used by the caller
+     */
+    public void release(CodecContext context) {
+        idle.offer(context);
+    }
+
+    /**
+     * Returns the number of contexts currently waiting to be reused.
+     *
+     * @return The idle count
+     */
+    public int getIdleCount() {
+        return idle.size();
+    }
+}
@@ -0,0 +1,418 @@
+package com.example.algo_huffman;
+
+import java.io.BufferedInputStream;
+import java.io.BufferedOutputStream;
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.EOFException;
+import java.io.File;
+import java.io.FileInputStream;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+
+/**
+ * The columnar mode for delimited records such as CSV. The columns of a table often have very different byte
+ * distributions (digits, names, dates, codes), which a single frequency table over the whole input blurs. This
+ * mode cuts the input into row groups of about GROUP_SIZE bytes and splits every group into streams:
+ *
+ * <pre>
+ * stream 0         for every row, fieldCount << 1 | 1 if the row ends with a line break, as varints
+ * stream 1 + 2c    lengths of the fields of column c, as varints
+ * stream 2 + 2c    bytes of the fields of column c, one after the other
+ * </pre>
+ *
+ * Each stream is compressed on its own, in parallel, as blocks of BlockCodec, so every column gets its own trees.
+ * Fields are kept byte for byte, quotes included, and a delimiter or line break inside double quotes does not end a
+ * field, so decoding gives back the exact input, including rows with fewer or more fields than the others. As in
+ * RFC 4180, a quote opens a quoted field only at the start of the field and a doubled quote inside one stands for a
+ * quote, so a stray quote such as 5" screen is an ordinary byte. A row longer than MAX_GROUP_SIZE is cut across
+ * groups; decoding the whole file joins it back, a column selection sees it as two rows. A group
+ * lists the raw and compressed length of each stream before the streams, so decoding a few columns skips the
+ * others without decompressing them. The file layout is
+ *
+ * <pre>
+ * int   magic "HUFC", byte delimiter
+ * per row group: int rowCount (0 ends the file), int streamCount, int[streamCount] rawLength,
+ *                int[streamCount] compressedLength, the streams
+ * </pre>
+ *
+ * Usage: ColumnarCodec c [--delimiter d] [--threads n] input output
+ *        ColumnarCodec d [--columns 0,2,...] input output
+ */
+public class ColumnarCodec {
+    public static final int MAGIC = 0x48554643; // "HUFC"
+    static final int GROUP_SIZE = 8 << 20; // Raw bytes of a row group, more if a single row is longer
+    static final int MAX_GROUP_SIZE = 64 << 20; // Largest row group, a longer row is cut
+    // Quote states of the scan of a row
+    static final int FIELD_START = 1; // No byte of the field read yet
+    static final int QUOTED = 2; // Inside a quoted field
+    static final int CLOSED = 4; // Just after the closing quote of a quoted field, a quote reopens it
+
+    // A growable byte array
+    static class Buffer {
+        byte[] data = new byte[1024];
+        int length;
+
+        void ensure(int extra) {
+            if (length + extra > data.length)
+                data = Arrays.copyOf(data, Math.max(length + extra, 2 * data.length));
+        }
+
+        void add(byte[] src, int offset, int count) {
+            ensure(count);
+            System.arraycopy(src, offset, data, length, count);
+            length += count;
+        }
+
+        void addVarint(int value) {
+            ensure(5);
+            while ((value & ~0x7F) != 0) {
+                data[length++] = (byte) (value & 0x7F | 0x80);
+                value >>>= 7;
+            }
+            data[length++] = (byte) value;
+        }
+    }
+
+    /**
+     * Compresses delimited records.
+     *
+     * @param in        The records to compress, until the end of the stream
+     * @param out       The stream receiving the columnar file; not flushed
+     * @param delimiter The field delimiter, such as ',' or '\t'
+     * @param threads   Number of threads compressing the streams of a group
+     * @return The number of input bytes
+     */
+    public static long compress(InputStream in, OutputStream out, byte delimiter, int threads) throws IOException {
+        ExecutorService executor = Executors.newFixedThreadPool(threads);
+        try {
+            DataOutputStream data = new DataOutputStream(out);
+            data.writeInt(MAGIC);
+            data.writeByte(delimiter);
+            byte[] buffer = new byte[GROUP_SIZE];
+            int buffered = 0;
+            long total = 0;
+            boolean end = false;
+            while (!end || buffered > 0) {
+                if (!end) {
+                    int n = in.readNBytes(buffer, buffered, buffer.length - buffered);
+                    buffered += n;
+                    total += n;
+                    end = buffered < buffer.length;
+                }
+                int rowsEnd = end ? buffered : lastRowEnd(buffer, buffered, delimiter);
+                if (rowsEnd == 0) {
+                    if (buffer.length < MAX_GROUP_SIZE) {
+                        buffer = Arrays.copyOf(buffer, 2 * buffer.length); // A row longer than the buffer
+                        continue;
+                    }
+                    rowsEnd = buffered; // Cut the row, decoding the whole file joins the groups back
+                }
+                writeGroup(buffer, rowsEnd, delimiter, data, executor);
+                System.arraycopy(buffer, rowsEnd, buffer, 0, buffered - rowsEnd);
+                buffered -= rowsEnd;
+            }
+            data.writeInt(0);
+            return total;
+        } finally {
+            executor.shutdown();
+        }
+    }
+
+    // Returns the index after the last line break outside quotes, or 0 if the buffer holds no whole row
+    private static int lastRowEnd(byte[] buffer, int length, byte delimiter) {
+        int state = FIELD_START;
+        int end = 0;
+        for (int i = 0; i < length; i++) {
+            byte b = buffer[i];
+            if ((state & QUOTED) == 0 && (b == delimiter || b == '\n')) {
+                state = FIELD_START;
+                if (b == '\n')
+                    end = i + 1;
+            } else {
+                state = quoteState(state, b);
+            }
+        }
+        return end;
+    }
+
+    // Returns the quote state after a byte that does not end a field
+    private static int quoteState(int state, byte b) {
+        if (b != '"')
+            return state & QUOTED;
+        if ((state & QUOTED) != 0)
+            return CLOSED;
+        return (state & (FIELD_START | CLOSED)) != 0 ? QUOTED : 0;
+    }
+
+    private static void writeGroup(byte[] src, int length, byte delimiter, DataOutputStream out,
+                                   ExecutorService executor) throws IOException {
+        Buffer rows = new Buffer();
+        List<Buffer> lengths = new ArrayList<>();
+        List<Buffer> fields = new ArrayList<>();
+        int rowCount = 0;
+        int position = 0;
+        while (position < length) {
+            int column = 0;
+            int start = position;
+            int state = FIELD_START;
+            boolean lineBreak = false;
+            while (position < length) {
+                byte b = src[position];
+                if ((state & QUOTED) == 0 && (b == delimiter || b == '\n')) {
+                    addField(src, start, position - start, column++, lengths, fields);
+                    position++;
+                    start = position;
+                    state = FIELD_START;
+                    if (b == '\n') {
+                        lineBreak = true;
+                        break;
+                    }
+                    continue;
+                }
+                state = quoteState(state, b);
+                position++;
+            }
+            if (!lineBreak)
+                addField(src, start, position - start, column++, lengths, fields); // Last row without line break
+            rows.addVarint(column << 1 | (lineBreak ? 1 : 0));
+            rowCount++;
+        }
+
+        List<Buffer> streams = new ArrayList<>();
+        streams.add(rows);
+        for (int c = 0; c < fields.size(); c++) {
+            streams.add(lengths.get(c));
+            streams.add(fields.get(c));
+        }
+        List<Future<byte[]>> compressed = new ArrayList<>();
+        for (Buffer stream : streams)
+            compressed.add(executor.submit(() -> compressStream(stream)));
+
+        out.writeInt(rowCount);
+        out.writeInt(streams.size());
+        for (Buffer stream : streams)
+            out.writeInt(stream.length);
+        List<byte[]> results = new ArrayList<>();
+        for (Future<byte[]> future : compressed)
+            results.add(get(future));
+        for (byte[] result : results)
+            out.writeInt(result.length);
+        for (byte[] result : results)
+            out.write(result);
+    }
+
+    private static void addField(byte[] src, int offset, int length, int column, List<Buffer> lengths, List<Buffer> fields) {
+        while (fields.size() <= column) {
+            lengths.add(new Buffer());
+            fields.add(new Buffer());
+        }
+        lengths.get(column).addVarint(length);
+        fields.get(column).add(src, offset, length);
+    }
+
+    // Compresses a stream as blocks without the stream magic, ending with the end block
+    private static byte[] compressStream(Buffer stream) throws IOException {
+        ByteArrayOutputStream out = new ByteArrayOutputStream(stream.length / 2 + 64);
+        CodecContext context = CodecContextPool.SHARED.acquire();
+        try {
+            for (int offset = 0; offset < stream.length; offset += BlockCodec.BLOCK_SIZE)
+                BlockCodec.writeBlocks(stream.data, offset, Math.min(BlockCodec.BLOCK_SIZE, stream.length - offset), out, context);
+            BlockCodec.writeEnd(out);
+        } finally {
+            CodecContextPool.SHARED.release(context);
+        }
+        return out.toByteArray();
+    }
+
+    private static <T> T get(Future<T> future) throws IOException {
+        try {
+            return future.get();
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            throw new IOException("Interrupted", e);
+        } catch (ExecutionException e) {
+            if (e.getCause() instanceof IOException cause)
+                throw cause;
+            throw new IOException(e.getCause());
+        }
+    }
+
+    /**
+     * Decompresses a columnar file.
+     *
+     * @param in      The columnar file
+     * @param out     The stream receiving the records; not flushed
+     * @param columns The columns to output, in this order, or null for the whole input byte for byte. A row
+     *                without a selected column gets an empty field.
+     * @return The number of rows
+     */
+    public static long decompress(InputStream in, OutputStream out, int[] columns) throws IOException {
+        DataInputStream data = new DataInputStream(in);
+        if (data.readInt() != MAGIC)
+            throw new IOException("Not a columnar Huffman file");
+        byte delimiter = data.readByte();
+        long rows = 0;
+        CodecContext context = CodecContextPool.SHARED.acquire();
+        try {
+            int rowCount;
+            while ((rowCount = data.readInt()) != 0) {
+                readGroup(data, rowCount, delimiter, columns, out, context);
+                rows += rowCount;
+            }
+        } finally {
+            CodecContextPool.SHARED.release(context);
+        }
+        return rows;
+    }
+
+    private static void readGroup(DataInputStream in, int rowCount, byte delimiter, int[] columns, OutputStream out,
+                                  CodecContext context) throws IOException {
+        int streamCount = in.readInt();
+        if (rowCount < 0 || streamCount < 1 || streamCount % 2 != 1 || streamCount > 1 << 20)
+            throw new IOException("Invalid row group header");
+        int[] rawLengths = new int[streamCount];
+        int[] compressedLengths = new int[streamCount];
+        for (int i = 0; i < streamCount; i++)
+            rawLengths[i] = in.readInt();
+        for (int i = 0; i < streamCount; i++)
+            compressedLengths[i] = in.readInt();
+
+        int columnCount = (streamCount - 1) / 2;
+        boolean[] needed = new boolean[streamCount];
+        needed[0] = true;
+        for (int c = 0; c < columnCount; c++) {
+            boolean selected = columns == null;
+            if (columns != null) {
+                for (int column : columns)
+                    selected |= column == c;
+            }
+            needed[1 + 2 * c] = selected;
+            needed[2 + 2 * c] = selected;
+        }
+        byte[][] streams = new byte[streamCount][];
+        for (int i = 0; i < streamCount; i++) {
+            if (compressedLengths[i] < 0 || rawLengths[i] < 0)
+                throw new IOException("Invalid row group header");
+            if (!needed[i]) {
+                in.skipNBytes(compressedLengths[i]);
+                continue;
+            }
+            byte[] compressed = new byte[compressedLengths[i]];
+            in.readFully(compressed);
+            streams[i] = decompressStream(compressed, rawLengths[i], context);
+        }
+
+        int[] positions = new int[streamCount];
+        int[] fieldStarts = new int[columnCount];
+        int[] fieldLengths = new int[columnCount];
+        for (int row = 0; row < rowCount; row++) {
+            int header = readVarint(streams[0], positions, 0);
+            int fieldCount = header >>> 1;
+            if (fieldCount > columnCount)
+                throw new IOException("Invalid row");
+            for (int c = 0; c < fieldCount; c++) {
+                if (streams[2 + 2 * c] == null)
+                    continue;
+                fieldLengths[c] = readVarint(streams[1 + 2 * c], positions, 1 + 2 * c);
+                fieldStarts[c] = positions[2 + 2 * c];
+                positions[2 + 2 * c] += fieldLengths[c];
+                if (positions[2 + 2 * c] > streams[2 + 2 * c].length)
+                    throw new IOException("Truncated column " + c);
+            }
+            if (columns == null) {
+                for (int c = 0; c < fieldCount; c++) {
+                    if (c > 0)
+                        out.write(delimiter);
+                    out.write(streams[2 + 2 * c], fieldStarts[c], fieldLengths[c]);
+                }
+            } else {
+                for (int i = 0; i < columns.length; i++) {
+                    if (i > 0)
+                        out.write(delimiter);
+                    int c = columns[i];
+                    if (c < fieldCount)
+                        out.write(streams[2 + 2 * c], fieldStarts[c], fieldLengths[c]);
+                }
+            }
+            if ((header & 1) != 0 || columns != null)
+                out.write('\n');
+        }
+    }
+
+    private static byte[] decompressStream(byte[] compressed, int rawLength, CodecContext context) throws IOException {
+        byte[] raw = new byte[rawLength];
+        InputStream in = new ByteArrayInputStream(compressed);
+        int position = 0;
+        int length;
+        while ((length = BlockCodec.readBlock(in, context)) != -1) {
+            if (position + length > rawLength)
+                throw new IOException("Column stream longer than its header says");
+            System.arraycopy(context.rawBuffer, 0, raw, position, length);
+            position += length;
+        }
+        if (position != rawLength)
+            throw new EOFException("Truncated column stream");
+        return raw;
+    }
+
+    // Reads a varint of streams[stream] at positions[stream] and moves the position past it
+    private static int readVarint(byte[] stream, int[] positions, int index) throws IOException {
+        int value = 0;
+        for (int shift = 0; shift < 32; shift += 7) {
+            if (positions[index] >= stream.length)
+                throw new EOFException("Truncated row group");
+            int b = stream[positions[index]++];
+            value |= (b & 0x7F) << shift;
+            if ((b & 0x80) == 0)
+                return value;
+        }
+        throw new IOException("Invalid varint");
+    }
+
+    public static void main(String[] args) throws IOException {
+        if (args.length < 3) {
+            System.err.println("Usage: ColumnarCodec c [--delimiter d] [--threads n] input output | "
+                    + "d [--columns 0,2,...] input output");
+            System.exit(2);
+        }
+        byte delimiter = ',';
+        int threads = Runtime.getRuntime().availableProcessors();
+        int[] columns = null;
+        List<String> files = new ArrayList<>();
+        for (int i = 1; i < args.length; i++) {
+            switch (args[i]) {
+                case "--delimiter" -> delimiter = (byte) (args[++i].equals("\\t") ? '\t' : args[i].charAt(0));
+                case "--threads" -> threads = Integer.parseInt(args[++i]);
+                case "--columns" -> columns = Arrays.stream(args[++i].split(",")).mapToInt(Integer::parseInt).toArray();
+                default -> files.add(args[i]);
+            }
+        }
+        File input = new File(files.get(0));
+        File output = new File(files.get(1));
+        long start = System.nanoTime();
+        try (InputStream in = new FileInputStream(input);
+             OutputStream out = new BufferedOutputStream(new FileOutputStream(output), 1 << 16)) {
+            if (args[0].equals("c")) {
+                long size = compress(in, out, delimiter, threads);
+                out.flush();
+                System.out.printf("%d bytes -> %d bytes (%.4f) in %.2f s%n", size, output.length(),
+                        size == 0 ? 0.0 : (double) output.length() / size, (System.nanoTime() - start) / 1e9);
+            } else {
+                long rows = decompress(new BufferedInputStream(in, 1 << 16), out, columns);
+                System.out.printf("%d rows in %.2f s%n", rows, (System.nanoTime() - start) / 1e9);
+            }
+        }
+    }
+}
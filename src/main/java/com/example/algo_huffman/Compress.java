@@ -2,8 +2,6 @@ package com.example.algo_huffman;
 
 import java.awt.Desktop;
 import java.io.File;
-import java.io.FileInputStream;
-import java.io.FileOutputStream;
 import java.io.IOException;
 
 import javafx.collections.FXCollections;
@@ -39,13 +37,12 @@ import javafx.stage.Stage;
  * tree construction, and visual display of compression statistics and settings.
  */
 public class Compress extends Scene {
-    int[] freq = new int[256]; // Frequency array for each byte value (0-255)
+    long[] freq; // Frequency array for each byte value (0-255)
     File file; // File object for the file to be compressed
     String fileName; // Name of the file without extension
-    MinHeap heap; // Min-heap for building the Huffman tree
-    byte numberOfLeafs; // Number of leaf nodes in the Huffman tree
-    String fullHeader; // Complete header information as a binary string
-    Node[] nodes = new Node[256]; // Array to store nodes corresponding to byte values
+    HuffmanEncoder encoder; // Encoder writing the .huff file
+    int numberOfLeafs; // Number of leaf nodes in the Huffman tree
+    Node[] nodes; // Array to store nodes corresponding to byte values
     Node rootNode; // Root node of the Huffman tree
     BorderPane borderPane = new BorderPane(); // Main layout pane for the scene
     long sizeBefore; // File size before compression
@@ -74,25 +71,14 @@ public class Compress extends Scene {
         this.borderPane = ((BorderPane) this.getRoot());
 
         this.file = file;
+        this.encoder = new HuffmanEncoder(file);
 
-        this.sizeBefore = this.file.length();
+        this.sizeBefore = encoder.getSizeBefore();
 
         getFreq();
         initializeHeap();
-        rootNode = heap.remove();
-        if (rootNode.getLeft() == null && rootNode.getRight() == null) {
-            rootNode.setHuffCode("1");
-            rootNode.setHuffLength((byte) 1);
-            Byte charCode = rootNode.getCharCode();
-            if (charCode < 0)
-                nodes[rootNode.getCharCode() + 256] = rootNode;
-            else
-                nodes[rootNode.getCharCode()] = rootNode;
 
-        } else
-            generateHuffmanCodes(rootNode, "", (byte) 0);
-
-        this.fullHeader = generateHeader();
+        generateHeader();
 
         writeToFile();
 
@@ -103,106 +89,35 @@ public class Compress extends Scene {
      * Reads the file and calculates the frequency of each byte.
      */
     private void getFreq() {
-        try (FileInputStream inputStream = new FileInputStream(file)) {
-            byte[] buffer = new byte[8]; // Buffer to read chunks of the file
-
-            int bytesRead;
-            while ((bytesRead = inputStream.read(buffer)) != -1) {
-                for (int i = 0; i < bytesRead; i++) {
-                    if (buffer[i] < 0)
-                        freq[buffer[i] + 256]++;
-                    else
-                        freq[buffer[i]]++;
-                }
-            }
-
+        try {
+            encoder.getFreq();
         } catch (Exception e) {
             e.printStackTrace();
         }
+        this.freq = encoder.getFrequencies();
     }
 
     /**
-     * Initializes the heap with nodes for each unique byte and builds the Huffman
-     * tree.
+     * Builds the Huffman tree and the codes of each byte. The frequencies are
+     * rescaled if a code would be longer than HuffmanTree.MAX_CODE_LENGTH bits.
      */
     private void initializeHeap() {
-        heap = new MinHeap(256);
-        for (int i = 0; i < freq.length; i++) {
-            if (freq[i] != 0) {
-                Node node = new Node((byte) i, freq[i]);
-                heap.insert(node);
-            }
-        }
-
-        numberOfLeafs = (byte) heap.getSize();
-
-        if (numberOfLeafs == 1)
-            return;
-
-        while (heap.getSize() != 1) {
-            Node node1 = heap.remove();
-            Node node2 = heap.remove();
-
-            Node node = new Node(node1.getFreq() + node2.getFreq());
-            node.setLeft(node1);
-            node.setRight(node2);
-
-            heap.insert(node);
-        }
-
-    }
-
-    /**
-     * Recursively generates Huffman codes for each node in the tree starting from
-     * the root.
-     *
-     * @param node   Current node in the tree
-     * @param code   Accumulated Huffman code for the current node
-     * @param length Length of the Huffman code
-     */
-    public void generateHuffmanCodes(Node node, String code, byte length) {
-        if (node != null) {
-            if (node.getLeft() == null && node.getRight() == null) {
-                node.setHuffCode(code);
-                node.setHuffLength(length);
-
-                Byte charCode = node.getCharCode();
-                if (charCode < 0)
-                    nodes[node.getCharCode() + 256] = node;
-                else
-                    nodes[node.getCharCode()] = node;
-
-            } else {
-                generateHuffmanCodes(node.getLeft(), code + "0", (byte) (length + 1));
-                generateHuffmanCodes(node.getRight(), code + "1", (byte) (length + 1));
-            }
-        }
+        HuffmanTree tree = encoder.buildTree();
+        this.rootNode = tree.getRootNode();
+        this.nodes = tree.getNodes();
+        this.numberOfLeafs = tree.getNumberOfLeafs();
     }
 
     /**
-     * Generates the header for the compressed file, containing metadata like file
-     * extension and tree structure.
-     *
-     * @return A string representing the binary form of the header.
+     * Collects the header information shown in the header scene: the file
+     * extension and the tree structure.
      */
-    private String generateHeader() {
-        StringBuilder headInfo = new StringBuilder();
-
-        String[] nameInfo = file.getName().split("\\.");
+    private void generateHeader() {
+        this.extString = encoder.getExtString();
+        this.extLength = encoder.getExtLength();
+        this.fileName = encoder.getFileName();
 
-        String ext = nameInfo[1];
-        this.extString = ext;
-        byte extLength = (byte) ext.length();
-        this.extLength = extLength;
-        String fileName = nameInfo[0];
-        this.fileName = fileName;
-
-        // appending the length and the extension of the original file to the header
-        headInfo.append(byteToBinaryString(extLength));
-        for (int i = 0; i < extLength; i++)
-            headInfo.append(byteToBinaryString((byte) ext.charAt(i)));
-
-        StringBuilder treeBuilder = getTree(rootNode);
+        StringBuilder treeBuilder = encoder.getTree().getTreeBits();
 
         this.headerLength = treeBuilder.length();
 
@@ -211,49 +126,6 @@ public class Compress extends Scene {
                 treeBuilder.append("0");
 
         this.header = treeBuilder.toString();
-
-        headInfo.append(byteToBinaryString((byte) (headerLength >> 24)));
-        headInfo.append(byteToBinaryString((byte) (headerLength >> 16)));
-        headInfo.append(byteToBinaryString((byte) (headerLength >> 8)));
-        headInfo.append(byteToBinaryString((byte) (headerLength)));
-        headInfo.append(this.header);
-
-        return headInfo.toString();
-    }
-
-    public StringBuilder getTree(Node root) { // post order
-        StringBuilder builder = new StringBuilder();
-        getTree(root, builder);
-        return builder;
-    }
-
-    private void getTree(Node node, StringBuilder builder) {
-        if (node == null)
-            return;
-        getTree(node.getLeft(), builder);
-        getTree(node.getRight(), builder);
-
-        if (node.getLeft() == null && node.getRight() == null) {
-            byte charCode = node.getCharCode();
-            builder.append("1" + byteToBinaryString(charCode));
-        } else {
-            builder.append("0");
-        }
-    }
-
-    /**
-     * Converts a byte into a binary string of 8 bits.
-     *
-     * @param b Byte to convert.
-     * @return Binary string representation of the byte.
-     */
-    public static String byteToBinaryString(byte b) {
-        StringBuilder binaryString = new StringBuilder();
-        for (int i = 7; i >= 0; i--) {
-            int bit = (b >> i) & 1;
-            binaryString.append(bit);
-        }
-        return binaryString.toString();
     }
 
     /**
@@ -268,96 +140,11 @@ public class Compress extends Scene {
 
         this.resultFileName = outFileName.toString();
 
-        try (FileOutputStream out = new FileOutputStream(outFile)) {
-            byte[] bufferIn = new byte[8]; // Buffer to read the original file
-            byte[] bufferOut = new byte[8]; // Buffer to write compressed data
-            byte[] headerBytes = new byte[8]; // Buffer to store header information
-
-            int byteNumber = 0;
-
-            // Convert header string bits to bytes and write them to the output file
-            for (byteNumber = 0; byteNumber < fullHeader.length() / 8; byteNumber++) {
-                String byteString = fullHeader.substring(8 * byteNumber, 8 * byteNumber + 8);
-                headerBytes[byteNumber % 8] = (byte) Integer.parseInt(byteString, 2);
-
-                // Write every 8 bytes to the file
-                if ((byteNumber + 1) % 8 == 0)
-                    out.write(headerBytes);
-            }
+        try {
+            encoder.writeTo(outFile);
 
-            // Write any remaining bytes in the header buffer
-            if (byteNumber % 8 != 0)
-                out.write(headerBytes, 0, byteNumber % 8);
-
-            // Process the original file's data
-            try (FileInputStream inputStream = new FileInputStream(file)) {
-                int bytesRead;
-                StringBuilder builder = new StringBuilder();
-
-                // Read and compress the input file byte by byte
-                while ((bytesRead = inputStream.read(bufferIn)) != -1) {
-                    for (int i = 0; i < bytesRead; i++) {
-                        byte currByte = bufferIn[i];
-                        // Retrieve and append Huffman codes for each byte
-                        if (currByte < 0)
-                            builder.append(nodes[currByte + 256].getHuffCode());
-                        else
-                            builder.append(nodes[currByte].getHuffCode());
-
-                        // Write 64 bits at a time to the output file
-                        if (builder.length() >= 64) {
-                            for (int j = 0; j < 8; j++) {
-                                bufferOut[j] = (byte) Integer.parseInt(builder.substring(0, 8), 2);
-                                builder.delete(0, 8);
-                            }
-                            out.write(bufferOut);
-                        }
-                    }
-                }
-
-                // Write any remaining bits to the output file
-                byte length = (byte) builder.length();
-                for (int i = 0; i < length / 8; i++) {
-                    bufferOut[i] = (byte) Integer.parseInt(builder.substring(0, 8), 2);
-                    builder.delete(0, 8);
-                }
-                out.write(bufferOut, 0, length / 8);
-
-                // Handle the last few remaining bits by padding them with zeros
-                byte lengthOfRemainingBits = (byte) builder.length();
-                byte[] remain = new byte[2];
-                if (lengthOfRemainingBits != 0) {
-                    for (int i = 0; i < 8 - lengthOfRemainingBits; i++)
-                        builder.append("0");
-
-                    try {
-                        remain[0] = (byte) Integer.parseInt(builder.substring(0, 8), 2);
-                        remain[1] = (byte) (8 - lengthOfRemainingBits);
-                    }
-                    catch (Exception e) {
-                        // TODO: handle exception
-                    }
-
-                } else {
-                    try {
-                        remain[0] = (byte) Integer.parseInt(builder.substring(0, 8), 2);
-                        remain[1] = (byte) 0;
-                    }
-                    catch (Exception e) {
-                        // TODO: handle exception
-                    }
-                }
-                out.write(remain, 0, 2);
-
-                // Close the output file stream
-                out.close();
-
-                // Store the final size of the compressed file
-                sizeAfter = outFile.length();
-
-            } catch (Exception e) {
-                e.printStackTrace();
-            }
+            // Store the final size of the compressed file
+            sizeAfter = encoder.getSizeAfter();
 
         } catch (Exception e) {
             e.printStackTrace();
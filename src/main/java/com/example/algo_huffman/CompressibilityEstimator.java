@@ -0,0 +1,138 @@
+package com.example.algo_huffman;
+
+import java.io.File;
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+
+/**
+ * Predicts the size of the .huff file of an input without compressing it. A fraction of the file is read as
+ * blocks of CodecContext.BUFFER_SIZE bytes spread evenly over its length, their histogram is scaled to the file
+ * length, and the tree built from it gives the code length of every byte. The predicted size is then
+ *
+ * <pre>
+ * header   1 + extension + 4 + tree bits / 8
+ * data     sum(frequency * code length) / 8, rounded down
+ * trailer  2, the last partial byte and the padding count
+ * </pre>
+ *
+ * which is exact when the whole file was read. Files up to MIN_SAMPLES blocks are always read whole. The number of
+ * blocks read from a file is capped at MAX_SAMPLES, so a file costs at most a few MB of reads and a few dozen
+ * seeks whatever its size, and a large directory is estimated in the time it takes to read those samples.
+ */
+public class CompressibilityEstimator {
+    static final int SAMPLE_SIZE = CodecContext.BUFFER_SIZE; // Bytes read at every sample position
+    static final int MIN_SAMPLES = 16; // Samples of a file, whatever the fraction
+    static final int MAX_SAMPLES = 64; // Samples of a file at most, whatever the fraction
+    static final double DEFAULT_FRACTION = 0.01; // Share of a file sampled by default
+
+    /**
+     * The prediction for one file.
+     */
+    public static class Estimate {
+        final long size; // Length of the input
+        final long sampledBytes; // Bytes actually read
+        final long predictedSize; // Predicted length of the .huff file
+
+        Estimate(long size, long sampledBytes, long predictedSize) {
+            this.size = size;
+            this.sampledBytes = sampledBytes;
+            this.predictedSize = predictedSize;
+        }
+
+        public long getSize() {
+            return size;
+        }
+
+        public long getSampledBytes() {
+            return sampledBytes;
+        }
+
+        public long getPredictedSize() {
+            return predictedSize;
+        }
+
+        /**
+         * Returns true if the whole file was read, in which case the prediction is the exact .huff size.
+         */
+        public boolean isExact() {
+            return sampledBytes == size;
+        }
+
+        /**
+         * Returns the predicted size divided by the input size, 1 for an empty input.
+         */
+        public double getRatio() {
+            return size == 0 ? 1 : (double) predictedSize / size;
+        }
+
+        /**
+         * Returns true if the predicted ratio is below maxRatio, for instance 0.9 to skip files saving under 10%.
+         */
+        public boolean isWorthCompressing(double maxRatio) {
+            return getRatio() < maxRatio;
+        }
+    }
+
+    /**
+     * Same as the other estimate, with DEFAULT_FRACTION and a context taken from the shared pool.
+     */
+    public static Estimate estimate(File file) throws IOException {
+        CodecContext context = CodecContextPool.SHARED.acquire();
+        try {
+            return estimate(file, DEFAULT_FRACTION, context);
+        } finally {
+            CodecContextPool.SHARED.release(context);
+        }
+    }
+
+    /**
+     * Predicts the size of the .huff file Compress or HuffmanCli would write for file. Nothing is written.
+     *
+     * @param file     The file to estimate
+     * @param fraction Share of the file to read, between 0 and 1; the sample count stays within MIN_SAMPLES and
+     *                 MAX_SAMPLES
+     * @param context  A context used only by this call
+     * @return The estimate
+     */
+    public static Estimate estimate(File file, double fraction, CodecContext context) throws IOException {
+        long[] freq = context.freq;
+        context.reset();
+        long sampled = 0;
+        long size;
+        try (FileChannel channel = FileChannel.open(file.toPath())) {
+            size = channel.size();
+            long blocks = (size + SAMPLE_SIZE - 1) / SAMPLE_SIZE;
+            long samples = Math.min(blocks, Math.max(MIN_SAMPLES, Math.min(MAX_SAMPLES, (long) Math.ceil(blocks * fraction))));
+            ByteBuffer buffer = context.ioBuffer;
+            for (long i = 0; i < samples; i++) {
+                // Block index at the same relative place in the file for every sample, never the same twice
+                long position = (samples == blocks ? i : i * blocks / samples) * SAMPLE_SIZE;
+                buffer.clear();
+                while (buffer.hasRemaining() && channel.read(buffer, position + buffer.position()) > 0) {
+                    // Short read, continue
+                }
+                buffer.flip();
+                HuffmanEncoder.countFrequencies(buffer, freq);
+                sampled += buffer.remaining();
+            }
+        }
+        if (size == 0)
+            return new Estimate(0, 0, 0);
+        if (sampled < size) {
+            // Scale the sample to the whole file, keeping every byte seen encodable
+            double scale = (double) size / sampled;
+            for (int i = 0; i < 256; i++) {
+                if (freq[i] != 0)
+                    freq[i] = Math.max(1, Math.round(freq[i] * scale));
+            }
+        }
+        HuffmanTree tree = context.tree.rebuild(freq);
+        String[] nameInfo = file.getName().split("\\.");
+        int extLength = nameInfo.length > 1 ? nameInfo[1].length() : 0;
+        long header = 1 + extLength + 4 + (tree.getTreeLength() + 7) / 8;
+        long bits = tree.getEncodedLength(freq);
+        // A partial last byte is followed by the padding count, whole bytes by two zeros: 2 bytes either way
+        return new Estimate(size, sampled, header + bits / 8 + 2);
+    }
+}
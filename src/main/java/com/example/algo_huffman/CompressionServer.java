@@ -0,0 +1,263 @@
+package com.example.algo_huffman;
+
+import com.sun.net.httpserver.HttpExchange;
+import com.sun.net.httpserver.HttpServer;
+
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.net.InetAddress;
+import java.net.InetSocketAddress;
+import java.nio.charset.StandardCharsets;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Semaphore;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.LongAdder;
+
+/**
+ * A local HTTP service running the codec, bound to the loopback address only. Every request runs on its own
+ * virtual thread and streams its body through the block format of BlockCodec, so memory per request is one block
+ * whatever the size of the body:
+ *
+ * <pre>
+ * POST /compress    body: raw bytes          response: a block stream
+ * POST /decompress  body: a block stream     response: raw bytes
+ * GET  /stats       response: counters and latency histograms as JSON
+ * </pre>
+ *
+ * At most maxConcurrent requests are coded at once. A request waits up to queueTimeoutMillis for a slot and is then
+ * refused with 503 and a Retry-After header, which keeps the memory bounded and tells clients to back off.
+ *
+ * A decompression is bounded by DecodeLimits: decoded bytes, expansion ratio, tree size and wall time. The first
+ * block is decoded before the response starts, so a body over the limits from its first block is refused with 413
+ * and one that is invalid with 400; a limit hit later can only abort the response.
+ *
+ * Usage: CompressionServer [--port n] [--max-concurrent n] [--queue-timeout-ms n] [--max-output-mb n]
+ *        [--max-ratio r] [--max-decode-ms n]
+ */
+public class CompressionServer {
+    public static final int DEFAULT_PORT = 8085;
+    public static final int DEFAULT_MAX_CONCURRENT = Runtime.getRuntime().availableProcessors() * 2;
+    public static final long DEFAULT_QUEUE_TIMEOUT_MILLIS = 1000;
+    public static final DecodeLimits DEFAULT_LIMITS = new DecodeLimits(1L << 30, Double.POSITIVE_INFINITY,
+            BlockCodec.MAX_TREE_LENGTH, 30_000); // 1 GB and 30 s per request
+
+    private final HttpServer server; // JDK HTTP server bound to localhost
+    private final ExecutorService executor; // One virtual thread per request
+    private final Semaphore slots; // Requests allowed to run the codec at once
+    private final int maxConcurrent; // Number of slots
+    private final long queueTimeoutMillis; // Longest wait for a slot before refusing
+    private final CodecContextPool pool; // Contexts reused between requests
+    private final AtomicInteger inFlight = new AtomicInteger(); // Requests holding a slot
+    private final LongAdder rejected = new LongAdder(); // Requests refused with 503
+    private final LongAdder failed = new LongAdder(); // Requests ended by an error
+    private final LongAdder limited = new LongAdder(); // Decompressions stopped by a limit, also counted as failed
+    private final LongAdder bytesIn = new LongAdder(); // Raw bytes compressed
+    private final LongAdder bytesOut = new LongAdder(); // Raw bytes decompressed
+    private final LatencyHistogram compressLatency = new LatencyHistogram();
+    private final LatencyHistogram decompressLatency = new LatencyHistogram();
+    private volatile DecodeLimits limits = DEFAULT_LIMITS; // Limits of every decompression
+
+    /**
+     * Creates a server on the loopback address. It does not accept requests before start is called.
+     *
+     * @param port               The port, 0 for any free port
+     * @param maxConcurrent      Maximum number of requests coded at once
+     * @param queueTimeoutMillis Longest wait for a slot before a request is refused
+     */
+    public CompressionServer(int port, int maxConcurrent, long queueTimeoutMillis) throws IOException {
+        if (maxConcurrent < 1)
+            throw new IllegalArgumentException("maxConcurrent must be at least 1");
+        this.maxConcurrent = maxConcurrent;
+        this.queueTimeoutMillis = queueTimeoutMillis;
+        this.slots = new Semaphore(maxConcurrent, true);
+        this.pool = new CodecContextPool(maxConcurrent);
+        this.executor = Executors.newVirtualThreadPerTaskExecutor();
+        this.server = HttpServer.create(new InetSocketAddress(InetAddress.getLoopbackAddress(), port), 0);
+        server.setExecutor(executor);
+        server.createContext("/compress", exchange -> code(exchange, true));
+        server.createContext("/decompress", exchange -> code(exchange, false));
+        server.createContext("/stats", this::stats);
+    }
+
+    public void start() {
+        server.start();
+    }
+
+    /**
+     * Stops accepting requests and waits up to delaySeconds for the running ones.
+     *
+     * @param delaySeconds Longest wait for running requests
+     */
+    public void stop(int delaySeconds) {
+        server.stop(delaySeconds);
+        executor.shutdown();
+    }
+
+    /**
+     * Sets the limits of the decompressions started from now on.
+     *
+     * @param limits The limits
+     */
+    public void setLimits(DecodeLimits limits) {
+        this.limits = limits;
+    }
+
+    public int getPort() {
+        return server.getAddress().getPort();
+    }
+
+    public LatencyHistogram getCompressLatency() {
+        return compressLatency;
+    }
+
+    public LatencyHistogram getDecompressLatency() {
+        return decompressLatency;
+    }
+
+    public long getRejected() {
+        return rejected.sum();
+    }
+
+    /**
+     * Handles /compress and /decompress. Once the 200 header is sent an error can only abort the response, which
+     * the client sees as a truncated body.
+     *
+     * @param exchange The request
+     * @param compress True for /compress, false for /decompress
+     */
+    private void code(HttpExchange exchange, boolean compress) throws IOException {
+        long start = System.nanoTime();
+        try (exchange) {
+            if (!"POST".equals(exchange.getRequestMethod())) {
+                sendText(exchange, 405, "Use POST\n");
+                return;
+            }
+            if (!acquireSlot()) {
+                rejected.increment();
+                exchange.getResponseHeaders().set("Retry-After", "1");
+                sendText(exchange, 503, "Too many concurrent requests\n");
+                return;
+            }
+            inFlight.incrementAndGet();
+            CodecContext context = pool.acquire();
+            try (InputStream in = exchange.getRequestBody()) {
+                if (compress) {
+                    sendStreamHeaders(exchange);
+                    try (OutputStream out = exchange.getResponseBody()) {
+                        bytesIn.add(BlockCodec.compress(in, out, context));
+                    }
+                    compressLatency.record(System.nanoTime() - start);
+                } else if (decompress(in, exchange, context)) {
+                    decompressLatency.record(System.nanoTime() - start);
+                }
+            } catch (IOException | RuntimeException e) {
+                if (e instanceof DecodeLimitException)
+                    limited.increment();
+                failed.increment();
+                throw e;
+            } finally {
+                pool.release(context);
+                inFlight.decrementAndGet();
+                slots.release();
+            }
+        }
+    }
+
+    /**
+     * Decompresses a block stream into the response. The first block is decoded before the response headers are
+     * sent, so that a body refused from the start gets an error status instead of a truncated 200.
+     *
+     * @return Whether the body was decompressed, false if it was refused with an error status
+     */
+    private boolean decompress(InputStream in, HttpExchange exchange, CodecContext context) throws IOException {
+        DecodeLimits.Budget budget = limits.start();
+        int length;
+        try {
+            BlockCodec.readStreamHeader(in);
+            length = BlockCodec.readBlock(in, context, budget);
+        } catch (DecodeLimitException e) {
+            limited.increment();
+            failed.increment();
+            sendText(exchange, 413, e.getMessage() + "\n");
+            return false;
+        } catch (IOException e) {
+            failed.increment();
+            sendText(exchange, 400, e.getMessage() + "\n");
+            return false;
+        }
+        sendStreamHeaders(exchange);
+        long total = 0;
+        try (OutputStream out = exchange.getResponseBody()) {
+            while (length != -1) {
+                out.write(context.rawBuffer, 0, length);
+                total += length;
+                length = BlockCodec.readBlock(in, context, budget);
+            }
+        }
+        bytesOut.add(total);
+        return true;
+    }
+
+    private static void sendStreamHeaders(HttpExchange exchange) throws IOException {
+        exchange.getResponseHeaders().set("Content-Type", "application/octet-stream");
+        exchange.sendResponseHeaders(200, 0); // Chunked, the length is not known in advance
+    }
+
+    // Waits for a free slot, at most queueTimeoutMillis
+    private boolean acquireSlot() {
+        try {
+            return slots.tryAcquire(queueTimeoutMillis, TimeUnit.MILLISECONDS);
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            return false;
+        }
+    }
+
+    private void stats(HttpExchange exchange) throws IOException {
+        try (exchange) {
+            String json = String.format("{\"inFlight\": %d, \"maxConcurrent\": %d, \"rejected\": %d, \"failed\": %d, "
+                            + "\"limited\": %d, \"bytesCompressed\": %d, \"bytesDecompressed\": %d, \"compress\": %s, "
+                            + "\"decompress\": %s}\n",
+                    inFlight.get(), maxConcurrent, rejected.sum(), failed.sum(), limited.sum(), bytesIn.sum(),
+                    bytesOut.sum(), compressLatency.toJson(), decompressLatency.toJson());
+            exchange.getResponseHeaders().set("Content-Type", "application/json");
+            sendText(exchange, 200, json);
+        }
+    }
+
+    private static void sendText(HttpExchange exchange, int status, String text) throws IOException {
+        byte[] body = text.getBytes(StandardCharsets.UTF_8);
+        exchange.sendResponseHeaders(status, body.length);
+        try (OutputStream out = exchange.getResponseBody()) {
+            out.write(body);
+        }
+    }
+
+    public static void main(String[] args) throws IOException {
+        int port = DEFAULT_PORT;
+        int maxConcurrent = DEFAULT_MAX_CONCURRENT;
+        long queueTimeoutMillis = DEFAULT_QUEUE_TIMEOUT_MILLIS;
+        long maxOutput = DEFAULT_LIMITS.getMaxOutput();
+        double maxRatio = DEFAULT_LIMITS.getMaxRatio();
+        long maxDecodeMillis = DEFAULT_LIMITS.getMaxMillis();
+        for (int i = 0; i + 1 < args.length; i += 2) {
+            switch (args[i]) {
+                case "--port" -> port = Integer.parseInt(args[i + 1]);
+                case "--max-concurrent" -> maxConcurrent = Integer.parseInt(args[i + 1]);
+                case "--queue-timeout-ms" -> queueTimeoutMillis = Long.parseLong(args[i + 1]);
+                case "--max-output-mb" -> maxOutput = Long.parseLong(args[i + 1]) << 20;
+                case "--max-ratio" -> maxRatio = Double.parseDouble(args[i + 1]);
+                case "--max-decode-ms" -> maxDecodeMillis = Long.parseLong(args[i + 1]);
+                default -> throw new IllegalArgumentException("Unknown option: " + args[i]);
+            }
+        }
+        CompressionServer server = new CompressionServer(port, maxConcurrent, queueTimeoutMillis);
+        server.setLimits(new DecodeLimits(maxOutput, maxRatio, BlockCodec.MAX_TREE_LENGTH, maxDecodeMillis));
+        server.start();
+        System.out.printf("Listening on http://localhost:%d (max %d concurrent, queue timeout %d ms)%n",
+                server.getPort(), maxConcurrent, queueTimeoutMillis);
+    }
+}
@@ -0,0 +1,92 @@
+package com.example.algo_huffman;
+
+import java.io.IOException;
+import java.io.InputStream;
+import java.util.SplittableRandom;
+
+/**
+ * Splits a stream into chunks whose boundaries depend on the content, not on the position: a boundary is placed
+ * where a gear rolling hash of the last 64 bytes has its high bits at zero. Inserting or removing bytes in a file only
+ * moves the boundaries around the edit, so the other chunks stay identical and can be deduplicated.
+ *
+ * Chunks are between MIN_CHUNK and MAX_CHUNK bytes, AVERAGE_CHUNK on average. They are large compared to
+ * deduplicating backup tools because every chunk is compressed as one block with its own tree.
+ */
+public class ContentChunker {
+    public static final int MIN_CHUNK = 16 << 10; // No boundary is looked for before this many bytes
+    public static final int AVERAGE_CHUNK = 64 << 10; // Expected chunk size past MIN_CHUNK
+    public static final int MAX_CHUNK = 256 << 10; // A boundary is forced at this size
+    // Bits of the hash that must be zero at a boundary; the high bits are the ones depending on all 64 last bytes
+    static final long MASK = -1L << (64 - Integer.numberOfTrailingZeros(AVERAGE_CHUNK));
+    static final int WINDOW_SIZE = 1 << 20; // Bytes read from the stream at a time
+
+    // Random value of each byte; the shift in the hash makes each byte count for 64 positions
+    static final long[] GEAR = new long[256];
+
+    static {
+        SplittableRandom random = new SplittableRandom(0x4855464D414E4CL);
+        for (int i = 0; i < GEAR.length; i++)
+            GEAR[i] = random.nextLong();
+    }
+
+    // Receives each chunk; data is only valid during the call
+    public interface ChunkConsumer {
+        void accept(byte[] data, int offset, int length) throws IOException;
+    }
+
+    private final byte[] window = new byte[WINDOW_SIZE]; // Bytes read but not yet given to the consumer
+
+    /**
+     * Reads the stream up to its end and passes every chunk, in order, to the consumer.
+     *
+     * @param in       The stream to split
+     * @param consumer Receives the chunks
+     * @return The number of bytes read
+     */
+    public long split(InputStream in, ChunkConsumer consumer) throws IOException {
+        long total = 0;
+        int start = 0; // First byte of the current chunk
+        int limit = 0; // Bytes in the window
+        boolean end = false;
+        while (true) {
+            if (!end && limit - start < MAX_CHUNK) {
+                // Slide the current chunk to the front and fill the rest of the window
+                System.arraycopy(window, start, window, 0, limit - start);
+                limit -= start;
+                start = 0;
+                int read = in.readNBytes(window, limit, window.length - limit);
+                total += read;
+                limit += read;
+                end = limit < window.length;
+            }
+            if (start == limit)
+                return total;
+            int length = boundary(window, start, limit - start);
+            consumer.accept(window, start, length);
+            start += length;
+        }
+    }
+
+    /**
+     * Returns the length of the chunk starting at offset. The bytes after offset + available are unknown, so when
+     * no boundary is found the chunk ends there, which happens only at the end of the stream or at MAX_CHUNK.
+     *
+     * @param data      The bytes to scan
+     * @param offset    First byte of the chunk
+     * @param available Bytes known from offset
+     * @return The chunk length
+     */
+    static int boundary(byte[] data, int offset, int available) {
+        int length = Math.min(available, MAX_CHUNK);
+        if (length <= MIN_CHUNK)
+            return length;
+        long hash = 0;
+        // Start hashing 64 bytes before MIN_CHUNK, so the hash at MIN_CHUNK covers a full window
+        for (int i = MIN_CHUNK - 64; i < length; i++) {
+            hash = (hash << 1) + GEAR[data[offset + i] & 0xFF];
+            if (i >= MIN_CHUNK && (hash & MASK) == 0)
+                return i + 1;
+        }
+        return length;
+    }
+}
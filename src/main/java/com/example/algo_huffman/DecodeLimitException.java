@@ -0,0 +1,22 @@
+package com.example.algo_huffman;
+
+import java.io.IOException;
+
+/**
+ * Thrown when a decompression hits one of its DecodeLimits. The input may be valid; it is refused because of
+ * what decoding it would cost.
+ */
+public class DecodeLimitException extends IOException {
+    private static final long serialVersionUID = 1L;
+
+    private final DecodeLimits.Limit limit; // The limit hit
+
+    public DecodeLimitException(DecodeLimits.Limit limit, String message) {
+        super(message);
+        this.limit = limit;
+    }
+
+    public DecodeLimits.Limit getLimit() {
+        return limit;
+    }
+}
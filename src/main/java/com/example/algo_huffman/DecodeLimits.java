@@ -0,0 +1,130 @@
+package com.example.algo_huffman;
+
+/**
+ * Limits on what one decompression may cost, so that a crafted input cannot make a service spend unbounded CPU
+ * and disk: the decoded bytes, the ratio of decoded to compressed bytes, the bits of a tree header and the wall
+ * time. The limits are immutable and shared; every decompression starts its own Budget, which the decoders charge
+ * where they already stop, once per block or per output buffer, so the checks cost nothing per byte. The block
+ * format announces the length of a block before its data, so a block over the limits is refused before it is
+ * decoded. A limit being hit throws a DecodeLimitException naming it.
+ */
+public class DecodeLimits {
+    public static final DecodeLimits NONE = new DecodeLimits(Long.MAX_VALUE, Double.POSITIVE_INFINITY,
+            BlockCodec.MAX_TREE_LENGTH, Long.MAX_VALUE);
+
+    /**
+     * The limits a decompression can hit.
+     */
+    public enum Limit {
+        OUTPUT, RATIO, TREE, TIME
+    }
+
+    private final long maxOutput; // Decoded bytes
+    private final double maxRatio; // Decoded bytes per compressed byte read
+    private final int maxTreeBits; // Bits of a tree header
+    private final long maxMillis; // Wall time from the start of the budget
+
+    /**
+     * Creates limits. Long.MAX_VALUE, or an infinite ratio, disables a limit.
+     *
+     * @param maxOutput   Largest number of decoded bytes
+     * @param maxRatio    Largest ratio of decoded bytes to compressed bytes read so far
+     * @param maxTreeBits Largest tree header in bits; no valid tree is longer than BlockCodec.MAX_TREE_LENGTH
+     * @param maxMillis   Longest wall time of a decompression, in milliseconds
+     */
+    public DecodeLimits(long maxOutput, double maxRatio, int maxTreeBits, long maxMillis) {
+        if (maxOutput < 0 || !(maxRatio > 0) || maxTreeBits < 9 || maxMillis < 0)
+            throw new IllegalArgumentException("Invalid decode limits");
+        this.maxOutput = maxOutput;
+        this.maxRatio = maxRatio;
+        this.maxTreeBits = maxTreeBits;
+        this.maxMillis = maxMillis;
+    }
+
+    /**
+     * Starts the budget of one decompression; its clock starts now.
+     *
+     * @return A budget used only by this decompression
+     */
+    public Budget start() {
+        return new Budget();
+    }
+
+    /**
+     * Checks the length of a tree header, before it is read.
+     *
+     * @param treeBits The tree length in bits
+     */
+    public void checkTree(int treeBits) throws DecodeLimitException {
+        if (treeBits > maxTreeBits)
+            throw new DecodeLimitException(Limit.TREE, "Tree header of " + treeBits + " bits, the limit is "
+                    + maxTreeBits);
+    }
+
+    public long getMaxOutput() {
+        return maxOutput;
+    }
+
+    public double getMaxRatio() {
+        return maxRatio;
+    }
+
+    public int getMaxTreeBits() {
+        return maxTreeBits;
+    }
+
+    public long getMaxMillis() {
+        return maxMillis;
+    }
+
+    /**
+     * What one decompression has used so far.
+     */
+    public class Budget {
+        private final long start = System.nanoTime();
+        private long input; // Compressed bytes read
+        private long output; // Decoded bytes, counted before they are decoded when the length is announced
+
+        /**
+         * Charges compressed bytes read and decoded bytes, then checks every limit.
+         *
+         * @param inputBytes  Compressed bytes read since the last call
+         * @param outputBytes Decoded bytes since the last call, or about to be decoded
+         */
+        public void add(long inputBytes, long outputBytes) throws DecodeLimitException {
+            input += inputBytes;
+            output += outputBytes;
+            if (output > maxOutput)
+                throw new DecodeLimitException(Limit.OUTPUT, "Output of more than " + maxOutput + " bytes");
+            if (output > maxRatio * input)
+                throw new DecodeLimitException(Limit.RATIO, output + " bytes decoded from " + input
+                        + ", the ratio limit is " + maxRatio);
+            checkTime();
+        }
+
+        /**
+         * Checks the wall time only.
+         */
+        public void checkTime() throws DecodeLimitException {
+            if (maxMillis != Long.MAX_VALUE && System.nanoTime() - start > maxMillis * 1_000_000)
+                throw new DecodeLimitException(Limit.TIME, "Decoding took more than " + maxMillis + " ms");
+        }
+
+        /**
+         * Checks the length of a tree header with the limits of this budget.
+         *
+         * @param treeBits The tree length in bits
+         */
+        public void checkTree(int treeBits) throws DecodeLimitException {
+            DecodeLimits.this.checkTree(treeBits);
+        }
+
+        public long getInput() {
+            return input;
+        }
+
+        public long getOutput() {
+            return output;
+        }
+    }
+}
@@ -2,8 +2,6 @@ package com.example.algo_huffman;
 
 import java.awt.Desktop;
 import java.io.File;
-import java.io.FileInputStream;
-import java.io.FileOutputStream;
 import java.io.IOException;
 
 import javafx.collections.FXCollections;
@@ -35,14 +33,12 @@ import javafx.stage.Stage;
 public class Decompress extends Scene {
 
     // Class attributes
-    int[] freq = new int[256]; // Frequency array for each character
     File file; // File to be decompressed
     String fileName; // Name of the file
-    MinHeap heap; // Heap used in the Huffman coding process
-    byte numberOfLeafs; // Number of leaf nodes in the Huffman tree
+    HuffmanDecoder decoder; // Decoder reading the .huff file
+    int numberOfLeafs; // Number of leaf nodes in the Huffman tree
 
-    String Fullheader; // Full header string extracted from the file
-    Node[] nodes = new Node[256]; // Array of nodes representing the Huffman tree
+    Node[] nodes; // Array of nodes representing the Huffman tree
 
     Node rootNode; // Root node of the Huffman tree
 
@@ -85,6 +81,7 @@ public class Decompress extends Scene {
         );
         bp.setBackground(new Background(bgImage));
         this.file = file;
+        this.decoder = new HuffmanDecoder(file);
 
         this.lengthBefore = this.file.length();
 
@@ -96,80 +93,27 @@ public class Decompress extends Scene {
     /**
      * Extracts the header from the file and initializes the Huffman tree based on the extracted header.
      * Reads and processes the file data to perform decompression.
-     * The method first reads the extension length and the extension itself from the file,
+     * The decoder first reads the extension length and the extension itself from the file,
      * then reads the header length and constructs the Huffman tree from the serialized header data.
-     * Finally, it decompresses the remaining data in the file using the Huffman tree.
+     * Finally, it decompresses the remaining data in the file as a stream using the Huffman tree.
      */
     private void getHeader() {
+        try {
+            decoder.readHeader();
 
-        byte[] bufferIn = new byte[8];
-        byte[] extBuffer;
-
-        try (FileInputStream inputStream = new FileInputStream(file)) {
-
-            this.extLength = (byte) inputStream.read();
-
-            extBuffer = new byte[this.extLength];
-
-            byte length = (byte) inputStream.read(extBuffer);
-
-            StringBuilder builder = new StringBuilder();
-            for (int i = 0; i < length; i++)
-                builder.append((char) extBuffer[i]);
-
-            this.extString = builder.toString();
-
-            inputStream.read(bufferIn, 0, 4);
-
-            this.headerLength = bufferIn[3] & 0xFF | (bufferIn[2] & 0xFF) << 8 | (bufferIn[1] & 0xFF) << 16
-                    | (bufferIn[0] & 0xFF) << 24;
-
-            int bytesRead;
-
-            int numberOfBytesForHeader_Conter = 0;
-            int numberOfBytersForHeader = (this.headerLength % 8 == 0) ? this.headerLength / 8
-                    : (this.headerLength / 8) + 1;
+            this.extLength = decoder.getExtLength();
+            this.extString = decoder.getExtString();
+            this.headerLength = decoder.getHeaderLength();
 
-            // StringBuilders for header and the serialized data
             StringBuilder header = new StringBuilder();
-            StringBuilder serialData = new StringBuilder();
-
-            // Read the rest of the file
-            while ((bytesRead = inputStream.read(bufferIn)) != -1) {
-                for (int i = 0; i < bytesRead; i++) {
-                    if (numberOfBytesForHeader_Conter < numberOfBytersForHeader) {
-                        header.append(convertByteToBinary(bufferIn[i]));
-                        numberOfBytesForHeader_Conter++;
-                    } else
-                        serialData.append(convertByteToBinary(bufferIn[i]));
-
-                }
-            }
-
+            for (byte b : decoder.getHeader())
+                header.append(convertByteToBinary(b));
             this.header = header.toString();
 
-            inputStream.close();
-
-            // Huffman tree reconstruction
-            Stack stack = new Stack(256);
-            int counter = 0;
-            while (counter < this.headerLength) {
-                if (header.charAt(counter) == '1') {
-                    counter++;
-                    stack.push(new Node((byte) Integer.parseInt(header.substring(counter, counter + 8), 2), 0));
-                    counter += 8;
-                } else {
-                    counter++;
-                    Node node = new Node(0);
-                    node.setRight(stack.pop());
-                    node.setLeft(stack.pop());
-                    stack.push(node);
-                }
-            }
-
-            this.rootNode = stack.peek();
-
-            generateHuffmanCodes(this.rootNode, "", (byte) 0);
+            HuffmanTree tree = decoder.getTree();
+            this.rootNode = tree.getRootNode();
+            this.nodes = tree.getNodes();
+            this.numberOfLeafs = tree.getNumberOfLeafs();
 
             String[] nameInfo = file.getName().split("\\.");
 
@@ -180,53 +124,10 @@ public class Decompress extends Scene {
             getUniquName(outFileName);
             File outFile = new File(outFileName.toString());
 
-
             // Write the uncompressed data to a file
-            FileOutputStream out = new FileOutputStream(outFile);
-            int startIndex = serialData.length() - 8;
-            int addedBits = Integer.parseInt(serialData.substring(startIndex), 2);
-            serialData.delete(startIndex - addedBits, serialData.length());
-
-            // Buffer for writing to the output file
-            byte[] bufferOut = new byte[8];
-            int counterForBufferSerialData = 0, counterForBufferOut = 0;
-
-            // Process the serialized data to extract the original content
-            while (counterForBufferSerialData < serialData.length()) {
-                Node curr = rootNode;
-
-                // Traverse the Huffman tree to find the corresponding byte
-                while (curr != null && counterForBufferSerialData < serialData.length()) {
-                    if (serialData.charAt(counterForBufferSerialData) == '0' && curr.getLeft() != null)
-                        curr = curr.getLeft();
-                    else if (curr.getRight() != null)
-                        curr = curr.getRight();
-                    else if (rootNode.getLeft() == null && rootNode.getRight() == null) {
-                        counterForBufferSerialData++;
-                        break;
-                    } else
-                        break;
-
-                    counterForBufferSerialData++;
-                }
-
-                // Write the byte to the output buffer
-
-                bufferOut[counterForBufferOut++] = curr.getCharCode();
-                if (counterForBufferOut == 8) {
-                    out.write(bufferOut);
-
-                    counterForBufferOut = 0;
-                }
-            }
-
-            // Write any remaining bytes in the buffer to the file
-            if (counterForBufferOut > 0)
-                out.write(bufferOut, 0, counterForBufferOut);
+            decoder.decodeTo(outFile);
 
-            out.close();
-
-            lengthAfter = outFile.length();
+            lengthAfter = decoder.getSizeAfter();
 
         } catch (Exception e) {
             // TODO Auto-generated catch block
@@ -234,38 +135,6 @@ public class Decompress extends Scene {
         }
     }
 
-    /**
-     * Generates Huffman codes for each node in the tree recursively.
-     * Sets Huffman code and length in each leaf node.
-     * It traverses the Huffman tree and assigns a binary code to each leaf node based on its position in the tree.
-     *
-     * @param node  Current node in the Huffman tree
-     * @param code  Current Huffman code being built
-     * @param length Length of the current Huffman code
-     */
-    public void generateHuffmanCodes(Node node, String code, byte length) {
-        if (node != null) {
-            if (node.getLeft() == null && node.getRight() == null) { // Check if it's a leaf node
-                // Setting the Huffman code and length for the node (not needed if just
-                // printing)
-                node.setHuffCode(code);
-                node.setHuffLength(length);
-
-                Byte charCode = node.getCharCode();
-                if (charCode < 0)
-                    nodes[node.getCharCode() + 256] = node;
-                else
-                    nodes[node.getCharCode()] = node;
-
-            } else {
-                // Recursively generate codes for left subtree
-                generateHuffmanCodes(node.getLeft(), code + "0", (byte) (length + 1));
-                // Recursively generate codes for right subtree
-                generateHuffmanCodes(node.getRight(), code + "1", (byte) (length + 1));
-            }
-        }
-    }
-
     public StringBuilder getHeader(Node root) { // post order
         StringBuilder builder = new StringBuilder();
         getHelper(root, builder);
@@ -0,0 +1,122 @@
+package com.example.algo_huffman;
+
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.File;
+import java.io.IOException;
+import java.io.OutputStream;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.zip.Deflater;
+import java.util.zip.GZIPInputStream;
+import java.util.zip.GZIPOutputStream;
+
+/**
+ * Command line benchmark of GzipCodec against java.util.zip.Deflater, in memory, with the measurement loop of
+ * CodecComparison. Both write gzip members and both are read back with GZIPInputStream, so the decompression
+ * column measures the same inflater on the two outputs. Deflater is run with the Huffman only strategy and at
+ * every level; to compare speed at equal ratio, each GzipCodec mode is followed by the fastest Deflater setting
+ * whose output is not larger.
+ *
+ * Usage: GzipBenchmark [--seconds s] [file...]
+ */
+public class GzipBenchmark {
+
+    public static void main(String[] args) throws IOException {
+        double seconds = 1.0;
+        Map<String, byte[]> corpora = new LinkedHashMap<>();
+        for (int i = 0; i < args.length; i++) {
+            if (args[i].equals("--seconds"))
+                seconds = Double.parseDouble(args[++i]);
+            else
+                corpora.put(new File(args[i]).getName(), Files.readAllBytes(Path.of(args[i])));
+        }
+        if (corpora.isEmpty()) {
+            corpora.put("words", PairBenchmark.words(8 << 20));
+            corpora.putAll(CodecComparison.generatedCorpora(8 << 20));
+        }
+
+        Map<String, CodecComparison.Codec> codecs = new LinkedHashMap<>();
+        codecs.put("gzip-codec-literals", gzipCodec(false));
+        codecs.put("gzip-codec-lz", gzipCodec(true));
+        codecs.put("deflater-huffman-only", deflater(Deflater.DEFAULT_COMPRESSION, Deflater.HUFFMAN_ONLY));
+        for (int level = Deflater.BEST_SPEED; level <= Deflater.BEST_COMPRESSION; level++)
+            codecs.put("deflater-" + level, deflater(level, Deflater.DEFAULT_STRATEGY));
+
+        System.out.printf("%-16s %-22s %12s %8s %12s %12s%n", "corpus", "codec", "compressed", "ratio", "comp MB/s",
+                "decomp MB/s");
+        for (Map.Entry<String, byte[]> corpus : corpora.entrySet()) {
+            List<CodecComparison.Result> results = new ArrayList<>();
+            for (Map.Entry<String, CodecComparison.Codec> codec : codecs.entrySet()) {
+                CodecComparison.Result result = CodecComparison.measure(corpus.getKey(), corpus.getValue(),
+                        codec.getKey(), codec.getValue(), seconds);
+                results.add(result);
+                print(result);
+            }
+            for (CodecComparison.Result ours : results) {
+                if (!ours.codec.startsWith("gzip-codec"))
+                    continue;
+                CodecComparison.Result match = null;
+                for (CodecComparison.Result other : results) {
+                    if (other.codec.startsWith("deflater") && other.compressedSize <= ours.compressedSize
+                            && (match == null || other.compressMBps > match.compressMBps))
+                        match = other;
+                }
+                System.out.printf("%-16s %-22s equal ratio: %s%n", corpus.getKey(), ours.codec, match == null
+                        ? "no Deflater setting" : String.format("%s, %.2fx the speed", match.codec,
+                        match.compressMBps / ours.compressMBps));
+            }
+        }
+    }
+
+    private static void print(CodecComparison.Result result) {
+        System.out.printf("%-16s %-22s %12d %8.4f %12.1f %12.1f%n", result.corpus, result.codec,
+                result.compressedSize, (double) result.compressedSize / result.size, result.compressMBps,
+                result.decompressMBps);
+    }
+
+    static CodecComparison.Codec gzipCodec(boolean lz) {
+        return new CodecComparison.Codec() {
+            public byte[] compress(byte[] data) throws IOException {
+                ByteArrayOutputStream out = new ByteArrayOutputStream(data.length / 2 + 1024);
+                GzipCodec.compress(new ByteArrayInputStream(data), out, lz);
+                return out.toByteArray();
+            }
+
+            public byte[] decompress(byte[] compressed, int originalLength) throws IOException {
+                return gunzip(compressed, originalLength);
+            }
+        };
+    }
+
+    static CodecComparison.Codec deflater(int level, int strategy) {
+        return new CodecComparison.Codec() {
+            public byte[] compress(byte[] data) throws IOException {
+                ByteArrayOutputStream out = new ByteArrayOutputStream(data.length / 2 + 1024);
+                try (OutputStream gzip = new GZIPOutputStream(out, 1 << 16) {
+                    {
+                        def.setLevel(level);
+                        def.setStrategy(strategy);
+                    }
+                }) {
+                    gzip.write(data);
+                }
+                return out.toByteArray();
+            }
+
+            public byte[] decompress(byte[] compressed, int originalLength) throws IOException {
+                return gunzip(compressed, originalLength);
+            }
+        };
+    }
+
+    static byte[] gunzip(byte[] compressed, int originalLength) throws IOException {
+        try (GZIPInputStream in = new GZIPInputStream(new ByteArrayInputStream(compressed), 1 << 16)) {
+            return in.readNBytes(originalLength);
+        }
+    }
+}
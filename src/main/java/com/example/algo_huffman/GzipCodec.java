@@ -0,0 +1,478 @@
+package com.example.algo_huffman;
+
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.util.Arrays;
+import java.util.zip.CRC32;
+
+/**
+ * Writes gzip files (RFC 1952) whose DEFLATE stream (RFC 1951) is made of dynamic Huffman blocks built with
+ * LargeHuffmanCode, so the output can be read by java.util.zip.Inflater, GZIPInputStream or the system gzip.
+ *
+ * The input is coded one block of BLOCK_SIZE bytes at a time. By default a greedy LZ77 stage with hash chains
+ * finds matches in the previous WINDOW_SIZE bytes; with lz off every byte is a literal, which is the byte mode of
+ * the project in DEFLATE framing. Each block then gets three canonical codes: the literal/length code and the
+ * distance code, limited to 15 bits, and the code of their code lengths, limited to 7 bits, as DEFLATE requires.
+ * LargeHuffmanCode assigns canonical codes the way DEFLATE does, shorter codes first and then by symbol, so only
+ * the lengths are stored; the codes are reversed because DEFLATE packs bits from the least significant one while
+ * Huffman codes are read from their first bit. A block whose matches make it larger than its bytes coded as
+ * literals is coded as literals, and a block whose dynamic coding would not be smaller is stored.
+ *
+ * The stream ends with an empty final block of the fixed code, since a block is coded before it is known whether
+ * more input follows.
+ */
+public class GzipCodec {
+    static final int WINDOW_SIZE = 1 << 15; // Largest DEFLATE distance
+    static final int BLOCK_SIZE = 1 << 16; // Input bytes of a block
+    static final int MAX_STORED = 65535; // Largest stored block
+    static final int HASH_BITS = 15; // Bits of the hash of three bytes
+    static final int MAX_CHAIN = 16; // Candidates tried per position
+    static final int MIN_MATCH = 3;
+    static final int TOO_FAR = 4096; // Farthest distance of a match of MIN_MATCH bytes, as in zlib
+    static final int MAX_MATCH = 258;
+    static final int MAX_CODE_LENGTH = 15; // Longest literal/length or distance code
+    static final int MAX_CODE_LENGTH_CODE = 7; // Longest code of the code length alphabet
+    static final int END_OF_BLOCK = 256;
+    static final int LITERAL_LENGTH_SYMBOLS = 286;
+    static final int DISTANCE_SYMBOLS = 30;
+    static final int CODE_LENGTH_SYMBOLS = 19;
+    static final byte[] GZIP_HEADER = {0x1f, (byte) 0x8b, 8, 0, 0, 0, 0, 0, 0, (byte) 0xff}; // No name, no mtime
+
+    static final int[] LENGTH_BASE = {3, 4, 5, 6, 7, 8, 9, 10, 11, 13, 15, 17, 19, 23, 27, 31, 35, 43, 51, 59, 67, 83,
+            99, 115, 131, 163, 195, 227, 258};
+    static final int[] LENGTH_EXTRA = {0, 0, 0, 0, 0, 0, 0, 0, 1, 1, 1, 1, 2, 2, 2, 2, 3, 3, 3, 3, 4, 4, 4, 4, 5, 5,
+            5, 5, 0};
+    static final int[] DISTANCE_BASE = {1, 2, 3, 4, 5, 7, 9, 13, 17, 25, 33, 49, 65, 97, 129, 193, 257, 385, 513, 769,
+            1025, 1537, 2049, 3073, 4097, 6145, 8193, 12289, 16385, 24577};
+    static final int[] DISTANCE_EXTRA = {0, 0, 0, 0, 1, 1, 2, 2, 3, 3, 4, 4, 5, 5, 6, 6, 7, 7, 8, 8, 9, 9, 10, 10, 11,
+            11, 12, 12, 13, 13};
+    static final int[] CODE_LENGTH_ORDER = {16, 17, 18, 0, 8, 7, 9, 6, 10, 5, 11, 4, 12, 3, 13, 2, 14, 1, 15};
+    static final byte[] LENGTH_CODE = new byte[MAX_MATCH + 1]; // Length code of each match length, minus 257
+    static final byte[] DISTANCE_CODE = new byte[WINDOW_SIZE + 1]; // Distance code of each distance
+
+    static {
+        for (int code = 0; code < LENGTH_BASE.length - 1; code++) {
+            for (int length = LENGTH_BASE[code]; length < LENGTH_BASE[code] + (1 << LENGTH_EXTRA[code]); length++)
+                LENGTH_CODE[Math.min(length, MAX_MATCH - 1)] = (byte) code; // 258 has its own code
+        }
+        LENGTH_CODE[MAX_MATCH] = (byte) (LENGTH_BASE.length - 1);
+        for (int code = 0; code < DISTANCE_BASE.length; code++) {
+            for (int d = DISTANCE_BASE[code]; d < DISTANCE_BASE[code] + (1 << DISTANCE_EXTRA[code]); d++)
+                DISTANCE_CODE[d] = (byte) code;
+        }
+    }
+
+    private final boolean lz; // Whether matches are searched, or every byte is a literal
+    private final byte[] window = new byte[WINDOW_SIZE + BLOCK_SIZE]; // History followed by the current block
+    private final int[] head = new int[1 << HASH_BITS]; // Last position of each hash, or -1
+    private final int[] prev = new int[WINDOW_SIZE + BLOCK_SIZE]; // Previous position with the same hash, or -1
+    private final int[] tokens = new int[BLOCK_SIZE]; // distance << 9 | length of a match, or a literal byte
+    private final int[] lengthTokens = new int[LITERAL_LENGTH_SYMBOLS + DISTANCE_SYMBOLS]; // Run-length coded lengths
+    private final byte[] lengths = new byte[LITERAL_LENGTH_SYMBOLS + DISTANCE_SYMBOLS]; // Code lengths to store
+    private final LargeHuffmanCode literals = new LargeHuffmanCode(LITERAL_LENGTH_SYMBOLS, MAX_CODE_LENGTH);
+    private final LargeHuffmanCode distances = new LargeHuffmanCode(DISTANCE_SYMBOLS, MAX_CODE_LENGTH);
+    private final LargeHuffmanCode codeLengths = new LargeHuffmanCode(CODE_LENGTH_SYMBOLS, MAX_CODE_LENGTH_CODE);
+    private final int[] literalCodes = new int[LITERAL_LENGTH_SYMBOLS]; // Reversed code << 4 | length
+    private final int[] distanceCodes = new int[DISTANCE_SYMBOLS]; // Reversed code << 4 | length
+    private int hlit; // Literal/length code lengths stored by the block header
+    private int hdist; // Distance code lengths stored by the block header
+    private int hclen; // Code length code lengths stored by the block header
+    private int lengthCount; // Entries of lengthTokens
+    private final CRC32 crc = new CRC32();
+
+    // DEFLATE output, least significant bit first
+    private OutputStream out;
+    private final byte[] buffer = new byte[1 << 16];
+    private int position; // Bytes in buffer
+    private long bitBuffer; // Bits not yet written, the first one lowest
+    private int bitCount; // Number of valid bits in bitBuffer
+    private long bytesWritten; // Bytes already handed to out
+
+    /**
+     * Creates a codec.
+     *
+     * @param lz Whether to search matches; without them the output is Huffman coded literals only
+     */
+    public GzipCodec(boolean lz) {
+        this.lz = lz;
+    }
+
+    /**
+     * Compresses a stream into a gzip member. The output stream is flushed, not closed.
+     *
+     * @param in  The bytes to compress
+     * @param out The stream receiving the gzip member
+     * @param lz  Whether to search matches
+     * @return The number of bytes written
+     */
+    public static long compress(InputStream in, OutputStream out, boolean lz) throws IOException {
+        return new GzipCodec(lz).compress(in, out);
+    }
+
+    /**
+     * Compresses a stream into a gzip member. The output stream is flushed, not closed.
+     *
+     * @param in  The bytes to compress
+     * @param out The stream receiving the gzip member
+     * @return The number of bytes written
+     */
+    public long compress(InputStream in, OutputStream out) throws IOException {
+        this.out = out;
+        position = 0;
+        bitBuffer = 0;
+        bitCount = 0;
+        bytesWritten = 0;
+        crc.reset();
+        Arrays.fill(head, -1);
+        long size = 0;
+
+        for (byte b : GZIP_HEADER)
+            writeByte(b);
+        int history = 0; // Bytes of the window before the current block
+        int n;
+        while ((n = in.readNBytes(window, history, BLOCK_SIZE)) > 0) {
+            crc.update(window, history, n);
+            size += n;
+            writeBlock(history, n);
+            history += n;
+            if (history > WINDOW_SIZE)
+                history = slide(history - WINDOW_SIZE);
+        }
+
+        // Empty final block of the fixed code: BFINAL, BTYPE 01, then the 7 zero bits of end of block
+        writeBits(1, 1);
+        writeBits(1, 2);
+        writeBits(0, 7);
+        alignToByte();
+        writeInt((int) crc.getValue());
+        writeInt((int) size);
+        flushBuffer();
+        out.flush();
+        return bytesWritten;
+    }
+
+    // Drops the first shift bytes of the window and returns the history left
+    private int slide(int shift) {
+        System.arraycopy(window, shift, window, 0, WINDOW_SIZE);
+        if (lz) {
+            for (int i = 0; i < head.length; i++)
+                head[i] = head[i] >= shift ? head[i] - shift : -1;
+            for (int i = 0; i < WINDOW_SIZE; i++) {
+                int p = prev[i + shift];
+                prev[i] = p >= shift ? p - shift : -1;
+            }
+        }
+        return WINDOW_SIZE;
+    }
+
+    // Codes window[start, start + n) as one block, dynamic or stored
+    private void writeBlock(int start, int n) throws IOException {
+        int count = lz ? findMatches(start, start + n) : -1;
+        long bits = buildCodes(start, n, count);
+        if (count >= 0) {
+            // On low entropy data the matches can cost more than the literals they replace
+            long literalBits = buildCodes(start, n, -1);
+            if (literalBits < bits) {
+                bits = literalBits;
+                count = -1;
+            } else {
+                buildCodes(start, n, count);
+            }
+        }
+        long storedBits = 8L * (n + 5L * ((n + MAX_STORED - 1) / MAX_STORED)) + 7;
+        if (bits >= storedBits) {
+            writeStored(start, n);
+            return;
+        }
+
+        // Header: BFINAL 0, BTYPE 10, then HLIT, HDIST, HCLEN and the code length code
+        writeBits(2 << 1, 3);
+        writeBits(hlit - 257, 5);
+        writeBits(hdist - 1, 5);
+        writeBits(hclen - 4, 4);
+        for (int i = 0; i < hclen; i++)
+            writeBits(codeLengths.lengths[CODE_LENGTH_ORDER[i]], 3);
+        for (int i = 0; i < lengthCount; i++) {
+            int symbol = lengthTokens[i] & 0x1F;
+            writeCode(codeLengths, symbol);
+            writeBits(lengthTokens[i] >>> 8, codeLengthExtra(symbol));
+        }
+
+        // Data
+        if (count >= 0) {
+            for (int i = 0; i < count; i++) {
+                int token = tokens[i];
+                if (token >>> 9 == 0) {
+                    writeCode(literalCodes[token]);
+                } else {
+                    int length = token & 0x1FF;
+                    int distance = token >>> 9;
+                    int lengthCode = LENGTH_CODE[length];
+                    writeCode(literalCodes[END_OF_BLOCK + 1 + lengthCode]);
+                    writeBits(length - LENGTH_BASE[lengthCode], LENGTH_EXTRA[lengthCode]);
+                    int distanceCode = DISTANCE_CODE[distance];
+                    writeCode(distanceCodes[distanceCode]);
+                    writeBits(distance - DISTANCE_BASE[distanceCode], DISTANCE_EXTRA[distanceCode]);
+                }
+            }
+        } else {
+            for (int i = start; i < start + n; i++)
+                writeCode(literalCodes[window[i] & 0xFF]);
+        }
+        writeCode(literalCodes[END_OF_BLOCK]);
+    }
+
+    /**
+     * Builds the three codes of a block and the run-length coded code lengths of its header.
+     *
+     * @param start The first byte of the block in the window
+     * @param n     The number of bytes of the block
+     * @param count The number of tokens of the block, or -1 to code every byte as a literal
+     * @return The size of the dynamic block in bits
+     */
+    private long buildCodes(int start, int n, int count) {
+        Arrays.fill(literals.freq, 0);
+        Arrays.fill(distances.freq, 0);
+        if (count >= 0) {
+            for (int i = 0; i < count; i++) {
+                int token = tokens[i];
+                if (token >>> 9 == 0) {
+                    literals.freq[token]++;
+                } else {
+                    literals.freq[END_OF_BLOCK + 1 + LENGTH_CODE[token & 0x1FF]]++;
+                    distances.freq[DISTANCE_CODE[token >>> 9]]++;
+                }
+            }
+        } else {
+            HuffmanEncoder.countFrequencies(window, start, n, literals.freq);
+        }
+        literals.freq[END_OF_BLOCK] = 1;
+        ensureTwo(literals);
+        ensureTwo(distances);
+        literals.build();
+        distances.build();
+        reverseCodes(literals, literalCodes);
+        reverseCodes(distances, distanceCodes);
+
+        // Code lengths of both codes, run-length coded as one sequence
+        hlit = lastUsed(literals, END_OF_BLOCK + 1);
+        hdist = lastUsed(distances, 1);
+        System.arraycopy(literals.lengths, 0, lengths, 0, hlit);
+        System.arraycopy(distances.lengths, 0, lengths, hlit, hdist);
+        lengthCount = runLengths(hlit + hdist);
+        Arrays.fill(codeLengths.freq, 0);
+        for (int i = 0; i < lengthCount; i++)
+            codeLengths.freq[lengthTokens[i] & 0x1F]++;
+        ensureTwo(codeLengths);
+        codeLengths.build();
+        hclen = CODE_LENGTH_SYMBOLS;
+        while (hclen > 4 && codeLengths.lengths[CODE_LENGTH_ORDER[hclen - 1]] == 0)
+            hclen--;
+
+        long bits = 3 + 5 + 5 + 4 + 3L * hclen;
+        for (int i = 0; i < lengthCount; i++)
+            bits += codeLengths.lengths[lengthTokens[i] & 0x1F] + codeLengthExtra(lengthTokens[i] & 0x1F);
+        for (int s = 0; s < LITERAL_LENGTH_SYMBOLS; s++) {
+            int extra = s > END_OF_BLOCK ? LENGTH_EXTRA[s - END_OF_BLOCK - 1] : 0;
+            bits += literals.freq[s] * (literals.lengths[s] + extra);
+        }
+        for (int s = 0; s < DISTANCE_SYMBOLS; s++)
+            bits += distances.freq[s] * (distances.lengths[s] + DISTANCE_EXTRA[s]);
+        return bits;
+    }
+
+    // Greedy LZ77 over window[from, to), inserting every position in the hash chains; returns the token count
+    private int findMatches(int from, int to) {
+        int count = 0;
+        int p = from;
+        while (p < to) {
+            int bestLength = 0;
+            int bestDistance = 0;
+            if (p + MIN_MATCH <= to) {
+                int h = hash(p);
+                int limit = Math.min(MAX_MATCH, to - p);
+                int candidate = head[h];
+                for (int chain = 0; chain < MAX_CHAIN && candidate >= 0 && p - candidate <= WINDOW_SIZE; chain++) {
+                    if (window[candidate + bestLength] == window[p + bestLength]) {
+                        int length = 0;
+                        while (length < limit && window[candidate + length] == window[p + length])
+                            length++;
+                        if (length > bestLength) {
+                            bestLength = length;
+                            bestDistance = p - candidate;
+                            if (length == limit)
+                                break;
+                        }
+                    }
+                    candidate = prev[candidate];
+                }
+                prev[p] = head[h];
+                head[h] = p;
+            }
+            if (bestLength > MIN_MATCH || bestLength == MIN_MATCH && bestDistance <= TOO_FAR) {
+                tokens[count++] = bestDistance << 9 | bestLength;
+                int end = p + bestLength;
+                for (p++; p < end; p++) {
+                    if (p + MIN_MATCH <= to) {
+                        int h = hash(p);
+                        prev[p] = head[h];
+                        head[h] = p;
+                    }
+                }
+            } else {
+                tokens[count++] = window[p++] & 0xFF;
+            }
+        }
+        return count;
+    }
+
+    private int hash(int p) {
+        return ((window[p] & 0xFF) << 10 ^ (window[p + 1] & 0xFF) << 5 ^ (window[p + 2] & 0xFF)) & ((1 << HASH_BITS) - 1);
+    }
+
+    /**
+     * Gives unused symbols a count of one until at least two symbols are used, so the code is complete: zlib
+     * rejects an incomplete code, and a single symbol would get the incomplete one bit code.
+     */
+    private static void ensureTwo(LargeHuffmanCode code) {
+        int used = 0;
+        for (long f : code.freq) {
+            if (f != 0)
+                used++;
+        }
+        for (int s = 0; used < 2; s++) {
+            if (code.freq[s] == 0) {
+                code.freq[s] = 1;
+                used++;
+            }
+        }
+    }
+
+    // Number of extra bits after a symbol of the code length alphabet
+    private static int codeLengthExtra(int symbol) {
+        return symbol == 16 ? 2 : symbol == 17 ? 3 : symbol == 18 ? 7 : 0;
+    }
+
+    // Number of code lengths to store: up to the last symbol used, at least min
+    private static int lastUsed(LargeHuffmanCode code, int min) {
+        int n = code.alphabetSize;
+        while (n > min && code.lengths[n - 1] == 0)
+            n--;
+        return n;
+    }
+
+    // Run-length codes lengths[0, n) with symbols 16 to 18 into lengthTokens, as extra << 8 | symbol
+    private int runLengths(int n) {
+        int count = 0;
+        int i = 0;
+        while (i < n) {
+            int length = lengths[i];
+            int run = 1;
+            while (i + run < n && lengths[i + run] == length)
+                run++;
+            i += run;
+            if (length == 0) {
+                while (run >= 11) {
+                    int r = Math.min(run, 138);
+                    lengthTokens[count++] = (r - 11) << 8 | 18;
+                    run -= r;
+                }
+                if (run >= 3) {
+                    lengthTokens[count++] = (run - 3) << 8 | 17;
+                    run = 0;
+                }
+            } else {
+                lengthTokens[count++] = length;
+                run--;
+                while (run >= 3) {
+                    int r = Math.min(run, 6);
+                    lengthTokens[count++] = (r - 3) << 8 | 16;
+                    run -= r;
+                }
+            }
+            while (run-- > 0)
+                lengthTokens[count++] = length;
+        }
+        return count;
+    }
+
+    // Writes window[start, start + n) as stored blocks of at most MAX_STORED bytes
+    private void writeStored(int start, int n) throws IOException {
+        for (int offset = start; offset < start + n; offset += MAX_STORED) {
+            int length = Math.min(MAX_STORED, start + n - offset);
+            writeBits(0, 3); // BFINAL 0, BTYPE 00
+            alignToByte();
+            writeByte(length);
+            writeByte(length >>> 8);
+            writeByte(~length);
+            writeByte(~length >>> 8);
+            for (int i = offset; i < offset + length; i++)
+                writeByte(window[i]);
+        }
+    }
+
+    // Writes the code of a symbol, its first bit lowest
+    private void writeCode(LargeHuffmanCode code, int symbol) throws IOException {
+        int length = code.lengths[symbol];
+        writeBits(Integer.reverse(code.codes[symbol]) >>> (32 - length), length);
+    }
+
+    // Writes a code of reverseCodes
+    private void writeCode(int code) throws IOException {
+        writeBits(code >>> 4, code & 0xF);
+    }
+
+    // Fills table with the codes of code, reversed so that their first bit is the lowest, and their lengths
+    private static void reverseCodes(LargeHuffmanCode code, int[] table) {
+        for (int s = 0; s < code.alphabetSize; s++) {
+            int length = code.lengths[s];
+            table[s] = length == 0 ? 0 : (Integer.reverse(code.codes[s]) >>> (32 - length)) << 4 | length;
+        }
+    }
+
+    // Appends the lowest length bits of bits, at most 32, the lowest first; whole words leave the bit buffer
+    private void writeBits(int bits, int length) throws IOException {
+        bitBuffer |= (bits & 0xFFFFFFFFL) << bitCount;
+        bitCount += length;
+        if (bitCount >= 32) {
+            if (position + 4 > buffer.length)
+                flushBuffer();
+            buffer[position] = (byte) bitBuffer;
+            buffer[position + 1] = (byte) (bitBuffer >>> 8);
+            buffer[position + 2] = (byte) (bitBuffer >>> 16);
+            buffer[position + 3] = (byte) (bitBuffer >>> 24);
+            position += 4;
+            bitBuffer >>>= 32;
+            bitCount -= 32;
+        }
+    }
+
+    // Pads the bits to a byte and writes them, leaving the bit buffer empty
+    private void alignToByte() throws IOException {
+        for (; bitCount > 0; bitCount -= 8) {
+            writeByte((int) bitBuffer);
+            bitBuffer >>>= 8;
+        }
+        bitBuffer = 0;
+        bitCount = 0;
+    }
+
+    // Writes a byte, the bit buffer being empty
+    private void writeByte(int b) throws IOException {
+        if (position == buffer.length)
+            flushBuffer();
+        buffer[position++] = (byte) b;
+    }
+
+    private void writeInt(int value) throws IOException {
+        for (int shift = 0; shift < 32; shift += 8)
+            writeByte(value >>> shift);
+    }
+
+    private void flushBuffer() throws IOException {
+        out.write(buffer, 0, position);
+        bytesWritten += position;
+        position = 0;
+    }
+}
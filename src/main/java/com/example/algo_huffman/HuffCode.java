@@ -2,12 +2,12 @@ package com.example.algo_huffman;
 
 public class HuffCode {
     private String charDisplay;
-    private int frequency;
+    private long frequency;
     private String huffCode;
     private int huffLength;
 
     // Constructor to initialize the fields
-    public HuffCode(byte charCode, int freq, String huffCode, int huffLength) {
+    public HuffCode(byte charCode, long freq, String huffCode, int huffLength) {
         this.charDisplay = String.valueOf((char) charCode); // Convert byte to char and then to String
         this.frequency = freq;                             // Assign frequency directly
         this.huffCode = huffCode;                          // Assign Huffman code directly
@@ -20,7 +20,7 @@ public class HuffCode {
     }
 
     // Getter for frequency
-    public int getFrequency() {
+    public long getFrequency() {
         return frequency;
     }
 
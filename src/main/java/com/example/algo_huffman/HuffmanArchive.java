@@ -0,0 +1,79 @@
+package com.example.algo_huffman;
+
+import java.io.File;
+import java.io.IOException;
+import java.nio.file.Path;
+
+/**
+ * Command line front end of the archive format.
+ *
+ * <pre>
+ * HuffmanArchive c archive.harc file-or-directory...   create an archive
+ * HuffmanArchive d archive.harc file-or-directory...   create an archive storing identical chunks once
+ * HuffmanArchive l archive.harc                        list the entries
+ * HuffmanArchive x archive.harc [directory] [name...]  extract every entry, or only the named ones
+ * </pre>
+ */
+public class HuffmanArchive {
+
+    public static void main(String[] args) throws IOException {
+        if (args.length < 2) {
+            System.err.println("Usage: HuffmanArchive c|d|l|x archive [files...]");
+            System.exit(2);
+        }
+        File archive = new File(args[1]);
+        switch (args[0]) {
+            case "c" -> create(archive, args, false);
+            case "d" -> create(archive, args, true);
+            case "l" -> list(archive);
+            case "x" -> extract(archive, args);
+            default -> {
+                System.err.println("Unknown command: " + args[0]);
+                System.exit(2);
+            }
+        }
+    }
+
+    private static void create(File archive, String[] args, boolean deduplicate) throws IOException {
+        long start = System.nanoTime();
+        ArchiveWriter writer = new ArchiveWriter(archive, deduplicate);
+        try (writer) {
+            for (int i = 2; i < args.length; i++) {
+                Path path = Path.of(args[i]).toAbsolutePath().normalize();
+                writer.addPath(path, path.getParent());
+            }
+        }
+        double seconds = (System.nanoTime() - start) / 1e9;
+        long size = writer.getLogicalBytes();
+        System.out.printf("%d entries, %d bytes -> %d bytes (%.4f), %.1f MB/s%n", writer.getEntries().size(), size,
+                archive.length(), size == 0 ? 0.0 : (double) archive.length() / size, size / seconds / (1 << 20));
+        if (deduplicate)
+            System.out.printf("%d chunks, %d distinct, %d bytes stored, dedup ratio %.3f, %.1f MB/s while adding%n",
+                    writer.getChunkCount(), writer.getDistinctChunkCount(), writer.getStoredBytes(),
+                    writer.getDedupRatio(), writer.getThroughput() / (1 << 20));
+    }
+
+    private static void list(File archive) throws IOException {
+        try (ArchiveReader reader = new ArchiveReader(archive)) {
+            System.out.printf("%12s %12s %8s %s%n", "size", "compressed", "crc32", "name");
+            for (ArchiveEntry entry : reader.getEntries())
+                System.out.println(entry);
+        }
+    }
+
+    private static void extract(File archive, String[] args) throws IOException {
+        Path dir = Path.of(args.length > 2 ? args[2] : ".");
+        try (ArchiveReader reader = new ArchiveReader(archive)) {
+            if (args.length <= 3) {
+                reader.extractAll(dir);
+                return;
+            }
+            for (int i = 3; i < args.length; i++) {
+                ArchiveEntry entry = reader.getEntry(args[i]);
+                if (entry == null)
+                    throw new IOException("No entry named " + args[i]);
+                reader.extractTo(entry, dir);
+            }
+        }
+    }
+}
@@ -0,0 +1,423 @@
+package com.example.algo_huffman;
+
+import java.io.BufferedInputStream;
+import java.io.BufferedOutputStream;
+import java.io.File;
+import java.io.FileDescriptor;
+import java.io.FileInputStream;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.stream.IntStream;
+import java.util.stream.Stream;
+
+/**
+ * Command line entry point for scripts. It uses the codec classes only, never JavaFX, so when it is started from
+ * the class path the JVM loads a few hundred classes instead of resolving the module graph of the application.
+ * Cold start is dominated by class loading and verification, which an AppCDS archive removes: the train command
+ * runs a small compression and decompression so that -XX:ArchiveClassesAtExit records every class a real run needs.
+ * The classes must come from a jar, CDS does not archive classes loaded from a directory:
+ *
+ * <pre>
+ * java -XX:ArchiveClassesAtExit=huffman.jsa -cp huffman.jar com.example.algo_huffman.HuffmanCli train
+ * java -XX:SharedArchiveFile=huffman.jsa -XX:TieredStopAtLevel=1 -cp huffman.jar com.example.algo_huffman.HuffmanCli c file
+ * </pre>
+ *
+ * Without an output name, compress writes name.huff next to the input, like the Compress scene, and decompress
+ * writes the name with the stored extension. Existing files are never overwritten. Nothing is printed on success.
+ *
+ * -c and -d compress standard input to standard output and back, for pipes such as
+ * {@code cat x | huff -c | ssh host huff -d > x}. A .huff file cannot be written or read in one pass, its header
+ * needs the frequencies of the whole input and its last byte gives the padding, so pipes use the block format of
+ * BlockCodec instead: memory use is one block whatever the length of the stream.
+ *
+ * estimate is a dry run: it prints the .huff size CompressibilityEstimator predicts for every file, directories
+ * being walked, without writing anything. The files are estimated in parallel, each from a sample of its blocks,
+ * and a file whose predicted ratio is not below --max-ratio is marked skip.
+ *
+ * compress --length records the original length in the header, so decompress preallocates the output and
+ * decodes into a mapping of it; such files are not readable by the legacy Decompress.
+ *
+ * gzip writes name.gz with GzipCodec, which any gzip reader can decompress; --literals leaves out the LZ77 stage
+ * so the output is Huffman coded bytes only.
+ *
+ * test verifies every compressed file under the given paths, files in parallel, by decoding it into a counting
+ * sink without writing anything. Block streams, block files and columnar files are checked against the CRC32C of
+ * every block, archives against the CRC32 of every entry; .huff files, which have no checksum, only against their
+ * structure and recorded length. Only failures and a summary are printed, and the exit status is 1 if any file
+ * failed.
+ *
+ * Usage: HuffmanCli compress|c [--length] input [output]   HuffmanCli decompress|d input [output]   HuffmanCli -c|-d
+ *        HuffmanCli gzip|z [--literals] input [output]
+ *        HuffmanCli estimate|n [--fraction f] [--max-ratio r] path...   HuffmanCli test|t path...
+ *        HuffmanCli train [dir]
+ */
+public class HuffmanCli {
+    static final int TRAINING_SIZE = 64 << 10; // Bytes of the sample compressed by train
+    static final int PIPE_BUFFER_SIZE = 1 << 20; // Output buffer of the pipe mode
+
+    public static void main(String[] args) {
+        if (args.length < 1 || (args.length < 2 && !args[0].equals("train") && !args[0].startsWith("-"))) {
+            System.err.println("Usage: HuffmanCli compress|decompress input [output] | -c | -d | gzip input [output]"
+                    + " | estimate path... | test path... | train [dir]");
+            System.exit(2);
+        }
+        try {
+            switch (args[0]) {
+                case "c", "compress" -> {
+                    boolean recordLength = args[1].equals("--length");
+                    int i = recordLength ? 2 : 1;
+                    if (i >= args.length)
+                        throw new IOException("compress: missing input file");
+                    compress(new File(args[i]), args.length > i + 1 ? new File(args[i + 1]) : null, recordLength);
+                }
+                case "d", "decompress" -> decompress(new File(args[1]), args.length > 2 ? new File(args[2]) : null);
+                case "z", "gzip" -> {
+                    boolean literals = args[1].equals("--literals");
+                    int i = literals ? 2 : 1;
+                    if (i >= args.length)
+                        throw new IOException("gzip: missing input file");
+                    gzip(new File(args[i]), args.length > i + 1 ? new File(args[i + 1]) : null, !literals);
+                }
+                case "-c" -> pipe(true);
+                case "-d" -> pipe(false);
+                case "n", "estimate" -> estimate(Arrays.copyOfRange(args, 1, args.length));
+                case "t", "test" -> {
+                    if (!test(Arrays.copyOfRange(args, 1, args.length)))
+                        System.exit(1);
+                }
+                case "train" -> train(new File(args.length > 1 ? args[1] : System.getProperty("java.io.tmpdir")));
+                default -> {
+                    System.err.println("Unknown command: " + args[0]);
+                    System.exit(2);
+                }
+            }
+        } catch (IOException e) {
+            System.err.println("huffman: " + e.getMessage());
+            System.exit(1);
+        }
+    }
+
+    /**
+     * Compresses a file into the .huff format.
+     *
+     * @param input  The file to compress
+     * @param output The file to create, or null for name.huff next to the input
+     * @return The file written
+     */
+    static File compress(File input, File output) throws IOException {
+        return compress(input, output, false);
+    }
+
+    /**
+     * Compresses a file into the .huff format, optionally recording its length in the header so that decompress
+     * can preallocate and map the output.
+     *
+     * @param input        The file to compress
+     * @param output       The file to create, or null for name.huff next to the input
+     * @param recordLength Whether to record the original length, which readers of the legacy layout cannot read
+     * @return The file written
+     */
+    static File compress(File input, File output, boolean recordLength) throws IOException {
+        if (!input.isFile())
+            throw new IOException(input + ": no such file");
+        CodecContext context = CodecContextPool.SHARED.acquire();
+        try {
+            HuffmanEncoder encoder = new HuffmanEncoder(input, context);
+            if (output == null)
+                output = new File(input.getAbsoluteFile().getParentFile(), encoder.getFileName() + ".huff");
+            checkNew(output);
+            encoder.getFreq();
+            encoder.buildTree();
+            encoder.setRecordLength(recordLength);
+            encoder.writeTo(output);
+            return output;
+        } finally {
+            CodecContextPool.SHARED.release(context);
+        }
+    }
+
+    /**
+     * Compresses a file into the gzip format.
+     *
+     * @param input  The file to compress
+     * @param output The file to create, or null for name.gz next to the input
+     * @param lz     Whether to search matches, or code the bytes as literals only
+     * @return The file written
+     */
+    static File gzip(File input, File output, boolean lz) throws IOException {
+        if (!input.isFile())
+            throw new IOException(input + ": no such file");
+        if (output == null)
+            output = new File(input.getAbsoluteFile().getParentFile(), input.getName() + ".gz");
+        checkNew(output);
+        try (InputStream in = new FileInputStream(input);
+             OutputStream out = new FileOutputStream(output)) {
+            GzipCodec.compress(in, out, lz);
+        }
+        return output;
+    }
+
+    /**
+     * Decompresses a .huff file.
+     *
+     * @param input  The file to decompress
+     * @param output The file to create, or null for the input name with the stored extension
+     * @return The file written
+     */
+    static File decompress(File input, File output) throws IOException {
+        if (!input.isFile())
+            throw new IOException(input + ": no such file");
+        CodecContext context = CodecContextPool.SHARED.acquire();
+        try {
+            HuffmanDecoder decoder = new HuffmanDecoder(input, context);
+            decoder.readHeader();
+            if (output == null) {
+                String name = input.getName().split("\\.")[0];
+                if (!decoder.getExtString().isEmpty())
+                    name += "." + decoder.getExtString();
+                output = new File(input.getAbsoluteFile().getParentFile(), name);
+            }
+            checkNew(output);
+            decoder.decodeTo(output);
+            return output;
+        } finally {
+            CodecContextPool.SHARED.release(context);
+        }
+    }
+
+    /**
+     * Compresses or decompresses standard input to standard output with the block format. The streams are used
+     * without System.in and System.out, whose small buffers and locking would cost more than the codec.
+     *
+     * @param compress True to compress, false to decompress
+     */
+    static void pipe(boolean compress) throws IOException {
+        CodecContext context = CodecContextPool.SHARED.acquire();
+        // Buffered, also because the bulk reads of FileInputStream query the file position, which fails on a pipe
+        InputStream in = new BufferedInputStream(new FileInputStream(FileDescriptor.in), 1 << 16);
+        try (OutputStream out = new BufferedOutputStream(new FileOutputStream(FileDescriptor.out), PIPE_BUFFER_SIZE)) {
+            if (compress)
+                BlockCodec.compress(in, out, context);
+            else
+                BlockCodec.decompress(in, out, context);
+        } finally {
+            CodecContextPool.SHARED.release(context);
+        }
+    }
+
+    /**
+     * Prints the predicted .huff size of every file under the given paths, then the totals.
+     *
+     * @param args Options and paths
+     */
+    static void estimate(String[] args) throws IOException {
+        double fraction = CompressibilityEstimator.DEFAULT_FRACTION;
+        double maxRatio = 0.95;
+        List<Path> paths = new ArrayList<>();
+        for (int i = 0; i < args.length; i++) {
+            switch (args[i]) {
+                case "--fraction" -> fraction = Double.parseDouble(args[++i]);
+                case "--max-ratio" -> maxRatio = Double.parseDouble(args[++i]);
+                default -> paths.add(Path.of(args[i]));
+            }
+        }
+        List<Path> files = listFiles(paths);
+
+        long start = System.nanoTime();
+        double sampleFraction = fraction;
+        CompressibilityEstimator.Estimate[] estimates = new CompressibilityEstimator.Estimate[files.size()];
+        IntStream.range(0, files.size()).parallel().forEach(i -> {
+            CodecContext context = CodecContextPool.SHARED.acquire();
+            try {
+                estimates[i] = CompressibilityEstimator.estimate(files.get(i).toFile(), sampleFraction, context);
+            } catch (IOException e) {
+                System.err.println("huffman: " + files.get(i) + ": " + e.getMessage());
+            } finally {
+                CodecContextPool.SHARED.release(context);
+            }
+        });
+        double seconds = (System.nanoTime() - start) / 1e9;
+
+        long size = 0, predicted = 0, sampled = 0;
+        int skipped = 0;
+        for (int i = 0; i < estimates.length; i++) {
+            CompressibilityEstimator.Estimate estimate = estimates[i];
+            if (estimate == null)
+                continue;
+            boolean worth = estimate.isWorthCompressing(maxRatio);
+            System.out.printf("%14d %14d %7.4f %-4s %s%n", estimate.getSize(), estimate.getPredictedSize(),
+                    estimate.getRatio(), worth ? "" : "skip", files.get(i));
+            size += estimate.getSize();
+            sampled += estimate.getSampledBytes();
+            if (worth)
+                predicted += estimate.getPredictedSize();
+            else {
+                predicted += estimate.getSize();
+                skipped++;
+            }
+        }
+        System.out.printf("%d files, %d bytes -> %d predicted (%.4f, skipped files kept as is), %d skipped; "
+                        + "%d bytes sampled in %.2f s%n", estimates.length, size, predicted,
+                size == 0 ? 1.0 : (double) predicted / size, skipped, sampled, seconds);
+    }
+
+    /**
+     * Verifies every compressed file under the given paths and prints the failures, then the totals.
+     *
+     * @param args Paths
+     * @return Whether no file failed
+     */
+    static boolean test(String[] args) throws IOException {
+        List<Path> paths = new ArrayList<>();
+        for (String arg : args)
+            paths.add(Path.of(arg));
+        List<Path> files = listFiles(paths);
+
+        long start = System.nanoTime();
+        long[] decoded = new long[files.size()];
+        String[] errors = new String[files.size()];
+        IntStream.range(0, files.size()).parallel().forEach(i -> {
+            CodecContext context = CodecContextPool.SHARED.acquire();
+            try {
+                decoded[i] = verify(files.get(i).toFile(), context);
+            } catch (IOException | RuntimeException e) {
+                errors[i] = e.getMessage() != null ? e.getMessage() : e.toString();
+            } finally {
+                CodecContextPool.SHARED.release(context);
+            }
+        });
+        double seconds = (System.nanoTime() - start) / 1e9;
+
+        long size = 0, total = 0;
+        int verified = 0, unknown = 0, failed = 0;
+        for (int i = 0; i < files.size(); i++) {
+            if (errors[i] != null) {
+                System.err.println("huffman: " + files.get(i) + ": FAILED: " + errors[i]);
+                failed++;
+            } else if (decoded[i] < 0) {
+                unknown++;
+            } else {
+                verified++;
+                size += files.get(i).toFile().length();
+                total += decoded[i];
+            }
+        }
+        System.out.printf("%d files verified, %d failed, %d not compressed; %d bytes decoded from %d in %.2f s "
+                + "(%.1f MB/s read)%n", verified, failed, unknown, total, size, seconds, size / seconds / (1 << 20));
+        return failed == 0;
+    }
+
+    /**
+     * Decodes a compressed file into a counting sink, checking the block checksums and the structure of the file.
+     *
+     * @param file    A block stream, block file, columnar file or .huff file
+     * @param context A context used only by this call
+     * @return The number of decoded bytes, or -1 if the file is in none of these formats
+     */
+    static long verify(File file, CodecContext context) throws IOException {
+        CountingOutputStream sink = new CountingOutputStream();
+        int magic = 0;
+        try (InputStream in = new BufferedInputStream(new FileInputStream(file), 1 << 16)) {
+            in.mark(4);
+            byte[] head = in.readNBytes(4);
+            if (head.length == 4)
+                magic = BlockCodec.readInt(head, 0);
+            in.reset();
+            if (magic == BlockCodec.MAGIC) {
+                BlockCodec.decompress(in, sink, context);
+                return sink.count;
+            }
+            if (magic == ColumnarCodec.MAGIC) {
+                ColumnarCodec.decompress(in, sink, null);
+                return sink.count;
+            }
+        }
+        if (magic == BlockFile.MAGIC) {
+            try (BlockFile blockFile = BlockFile.openReadOnly(file)) {
+                blockFile.extract(sink);
+            }
+            return sink.count;
+        }
+        if (magic == ArchiveWriter.MAGIC) {
+            try (ArchiveReader archive = new ArchiveReader(file)) {
+                for (ArchiveEntry entry : archive.getEntries())
+                    archive.extract(entry, sink);
+            }
+            return sink.count;
+        }
+        if (!file.getName().endsWith(".huff"))
+            return -1;
+
+        HuffmanDecoder decoder = new HuffmanDecoder(file, context);
+        decoder.readHeader();
+        try (InputStream in = new FileInputStream(file)) {
+            in.skipNBytes(decoder.headerBytes);
+            HuffmanDecoder.decode(context.bitInput.reset(in), decoder.tree, decoder.dataBits, sink, context.buffer);
+        }
+        long originalLength = decoder.getOriginalLength();
+        if (originalLength >= 0 && sink.count != originalLength)
+            throw new IOException(sink.count + " bytes decoded, the header gives " + originalLength);
+        return sink.count;
+    }
+
+    // Discards what is written and counts the bytes
+    static class CountingOutputStream extends OutputStream {
+        long count;
+
+        @Override
+        public void write(int b) {
+            count++;
+        }
+
+        @Override
+        public void write(byte[] b, int off, int len) {
+            count += len;
+        }
+    }
+
+    // Regular files under the given paths, directories being walked
+    private static List<Path> listFiles(List<Path> paths) throws IOException {
+        List<Path> files = new ArrayList<>();
+        for (Path path : paths) {
+            try (Stream<Path> walk = Files.walk(path)) {
+                walk.filter(Files::isRegularFile).forEach(files::add);
+            }
+        }
+        return files;
+    }
+
+    // Representative run for the AppCDS training: the same code paths as compress and decompress
+    static void train(File dir) throws IOException {
+        File sample = File.createTempFile("huffman-train", ".txt", dir);
+        File compressed = new File(sample.getPath() + ".huff");
+        File restored = new File(sample.getPath() + ".out");
+        try {
+            byte[] data = new byte[TRAINING_SIZE];
+            for (int i = 0; i < data.length; i++)
+                data[i] = (byte) ("etaoin shrdlu\n".charAt((i * 7 + i / 13) % 14));
+            try (OutputStream out = Files.newOutputStream(sample.toPath())) {
+                out.write(data);
+            }
+            compress(sample, compressed);
+            decompress(compressed, restored);
+            if (restored.length() != sample.length())
+                throw new IOException("Training round trip failed");
+        } finally {
+            sample.delete();
+            compressed.delete();
+            restored.delete();
+        }
+    }
+
+    private static void checkNew(File output) throws IOException {
+        if (output.exists())
+            throw new IOException(output + ": file exists");
+    }
+}
@@ -0,0 +1,414 @@
+package com.example.algo_huffman;
+
+import java.io.BufferedInputStream;
+import java.io.DataInputStream;
+import java.io.File;
+import java.io.FileInputStream;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.io.RandomAccessFile;
+import java.nio.ByteBuffer;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.FileChannel;
+
+/**
+ * The HuffmanDecoder class reads a .huff file written by HuffmanEncoder (or by the original Compress) without
+ * any user interface. The data is decoded as a stream with 64-bit bit counts, so memory use does not depend on
+ * the size of the file. The tree and the buffers come from a CodecContext, which can be reused from job to job.
+ * When the header records the original length, the output file is preallocated and mapped, the bytes are
+ * decoded straight into the mapping, and the data must decode to exactly that length. The header is checked
+ * before anything is allocated from it, and decodeTo charges a DecodeLimits budget once per output buffer.
+ */
+public class HuffmanDecoder {
+    static final int MAP_SIZE = 1 << 30; // Bytes of the output mapped at once
+    CodecContext context; // Reusable buffers and tree of this job
+    File file; // File to be decompressed
+    byte extLength; // Length of the file extension
+    String extString; // Extension of the original file
+    int headerLength; // Length of the tree header in bits
+    byte[] header; // Tree header bytes
+    HuffmanTree tree; // Tree rebuilt from the header
+    long headerBytes; // Number of bytes before the encoded data
+    long dataBits; // Number of encoded data bits
+    long originalLength = -1; // Length of the original file from the header, or -1 for a legacy header
+    long sizeBefore; // File size before decompression
+    long sizeAfter; // File size after decompression
+    boolean pipelined; // Whether decodeTo reads, decodes and writes on separate threads
+    DecodeLimits limits = DecodeLimits.NONE; // Limits of readHeader and decodeTo
+    DecodeLimits.Budget budget; // Budget of the running decodeTo
+
+    /**
+     * Creates a decoder for the given file.
+     *
+     * @param file The .huff file to be decompressed
+     */
+    public HuffmanDecoder(File file) {
+        this(file, new CodecContext());
+    }
+
+    /**
+     * Creates a decoder for the given file using the buffers of context.
+     *
+     * @param file    The .huff file to be decompressed
+     * @param context A context used only by this decoder until it is done
+     */
+    public HuffmanDecoder(File file, CodecContext context) {
+        this.file = file;
+        this.context = context;
+        this.sizeBefore = file.length();
+        this.pipelined = sizeBefore >= Pipeline.MIN_SIZE;
+    }
+
+    /**
+     * Reads the extension, the tree header and the final padding byte, and rebuilds the Huffman tree.
+     */
+    public void readHeader() throws IOException {
+        try (DataInputStream inputStream = new DataInputStream(new BufferedInputStream(new FileInputStream(file)))) {
+            int flags = inputStream.readUnsignedByte();
+            this.extLength = (byte) (flags & HuffmanEncoder.MAX_EXT_LENGTH);
+
+            byte[] extBuffer = new byte[extLength];
+            inputStream.readFully(extBuffer);
+            StringBuilder builder = new StringBuilder();
+            for (byte b : extBuffer)
+                builder.append((char) b);
+            this.extString = builder.toString();
+            if ((flags & HuffmanEncoder.LENGTH_FLAG) != 0) {
+                this.originalLength = inputStream.readLong();
+                if (originalLength < 0)
+                    throw new IOException("Invalid original length: " + originalLength);
+            }
+
+            this.headerLength = inputStream.readInt();
+            if (headerLength <= 0 || headerLength > BlockCodec.MAX_TREE_LENGTH)
+                throw new IOException("Invalid tree header length: " + headerLength);
+            limits.checkTree(headerLength);
+            this.header = new byte[(headerLength + 7) / 8];
+            inputStream.readFully(header);
+        }
+        this.headerBytes = 1 + extLength + (originalLength >= 0 ? 8 : 0) + 4 + header.length;
+        this.tree = context.tree.readTree(header, 0, headerLength);
+        if (tree.getRootNode() == null)
+            throw new IOException("The file does not contain a Huffman tree");
+
+        // The last byte holds the number of padding bits of the byte before it. A zero means the data ended on
+        // a byte boundary and the byte before it is a filler.
+        try (RandomAccessFile raf = new RandomAccessFile(file, "r")) {
+            raf.seek(sizeBefore - 1);
+            int addedBits = raf.read();
+            long dataBytes = sizeBefore - 1 - headerBytes;
+            this.dataBits = dataBytes * 8 - (addedBits == 0 ? 8 : addedBits);
+        }
+        if (dataBits < 0)
+            throw new IOException("Truncated .huff file");
+        if (originalLength > dataBits) // Every code takes at least one bit
+            throw new IOException("Invalid original length: " + originalLength + " bytes from " + dataBits
+                    + " bits");
+    }
+
+    /**
+     * Decodes the data of the file into outFile.
+     *
+     * @param outFile The file to create
+     */
+    public void decodeTo(File outFile) throws IOException {
+        this.budget = limits.start();
+        // A recorded length is charged in full, so a file over the limits is refused before the output exists
+        budget.add(sizeBefore, Math.max(originalLength, 0));
+        if (originalLength >= 0) {
+            decodeMapped(outFile);
+            this.sizeAfter = outFile.length();
+            return;
+        }
+        if (pipelined) {
+            Pipeline.decompress(this, outFile);
+            this.sizeAfter = outFile.length();
+            return;
+        }
+        try (InputStream inputStream = new FileInputStream(file);
+             OutputStream out = new FileOutputStream(outFile)) {
+            inputStream.skipNBytes(headerBytes);
+            decode(context.bitInput.reset(inputStream), tree, dataBits, out, context.buffer, budget);
+        }
+        this.sizeAfter = outFile.length();
+    }
+
+    /**
+     * Decodes the data into outFile preallocated to the original length and mapped MAP_SIZE bytes at a time, then
+     * checks that exactly all the data bits were used.
+     *
+     * @param outFile The file to create
+     */
+    void decodeMapped(File outFile) throws IOException {
+        try (InputStream inputStream = new FileInputStream(file);
+             RandomAccessFile output = new RandomAccessFile(outFile, "rw")) {
+            output.setLength(originalLength);
+            FileChannel channel = output.getChannel();
+            inputStream.skipNBytes(headerBytes);
+            BitInput in = context.bitInput.reset(inputStream);
+            long bits = 0;
+            for (long position = 0; position < originalLength; position += MAP_SIZE) {
+                int count = (int) Math.min(MAP_SIZE, originalLength - position);
+                MappedByteBuffer mapped = channel.map(FileChannel.MapMode.READ_WRITE, position, count);
+                for (int done = 0; done < count; done += CodecContext.BUFFER_SIZE) {
+                    bits += decode(in, tree, mapped, done, Math.min(CodecContext.BUFFER_SIZE, count - done));
+                    budget.checkTime();
+                }
+                if (bits > dataBits)
+                    throw new IOException("Corrupt file: the data is shorter than the " + originalLength
+                            + " bytes of the header");
+            }
+            if (bits != dataBits)
+                throw new IOException("Corrupt file: the data is longer than the " + originalLength
+                        + " bytes of the header");
+        }
+    }
+
+    /**
+     * Decompresses a .huff image held in memory. All the working memory comes from context, so nothing is
+     * allocated per call once the context has been used.
+     *
+     * @param src     The array holding the .huff bytes
+     * @param offset  First byte of the .huff image
+     * @param length  Number of bytes of the .huff image
+     * @param out     The stream receiving the decoded bytes
+     * @param context A context used only by this call
+     * @return The number of decoded bytes
+     */
+    public static long decompress(byte[] src, int offset, int length, OutputStream out, CodecContext context) throws IOException {
+        int end = offset + length;
+        int position = offset;
+        if (length < 7)
+            throw new IOException("Input too short for a .huff header");
+        int flags = src[position] & 0xFF;
+        long originalLength = -1;
+        position += 1 + (flags & HuffmanEncoder.MAX_EXT_LENGTH); // Extension length and extension
+        if ((flags & HuffmanEncoder.LENGTH_FLAG) != 0) {
+            if (position + 8 > end)
+                throw new IOException("Input too short for a .huff header");
+            originalLength = ByteBuffer.wrap(src, position, 8).getLong();
+            position += 8;
+        }
+        if (position + 4 > end)
+            throw new IOException("Input too short for a .huff header");
+        int headerLength = (src[position] & 0xFF) << 24 | (src[position + 1] & 0xFF) << 16
+                | (src[position + 2] & 0xFF) << 8 | (src[position + 3] & 0xFF);
+        position += 4;
+        if (headerLength <= 0 || headerLength > BlockCodec.MAX_TREE_LENGTH
+                || position + (headerLength + 7) / 8 >= end)
+            throw new IOException("Invalid tree header length: " + headerLength);
+
+        HuffmanTree tree = context.tree.readTree(src, position, headerLength);
+        if (tree.getRootNode() == null)
+            throw new IOException("The input does not contain a Huffman tree");
+        position += (headerLength + 7) / 8;
+
+        int addedBits = src[end - 1];
+        long dataBits = (long) (end - 1 - position) * 8 - (addedBits == 0 ? 8 : addedBits);
+        BitInput in = context.bitInput.reset(src, position, end - 1 - position);
+        long decoded = decode(in, tree, dataBits, out, context.buffer);
+        if (originalLength >= 0 && decoded != originalLength)
+            throw new IOException("Corrupt input: " + decoded + " bytes decoded, the header gives " + originalLength);
+        return decoded;
+    }
+
+    /**
+     * Same as the other decompress, with a context taken from the shared pool.
+     */
+    public static long decompress(byte[] src, int offset, int length, OutputStream out) throws IOException {
+        CodecContext context = CodecContextPool.SHARED.acquire();
+        try {
+            return decompress(src, offset, length, out, context);
+        } finally {
+            CodecContextPool.SHARED.release(context);
+        }
+    }
+
+    /**
+     * Decodes dataBits bits with the given tree. Up to TABLE_BITS bits are resolved with one table lookup and
+     * longer codes continue down the tree from the node the table points to.
+     *
+     * @param in        The bit input positioned at the first data bit
+     * @param tree      The tree to decode with
+     * @param dataBits  Number of bits to decode
+     * @param out       The stream receiving the decoded bytes
+     * @param bufferOut Buffer collecting the decoded bytes before they are written
+     * @return The number of decoded bytes
+     */
+    public static long decode(BitInput in, HuffmanTree tree, long dataBits, OutputStream out, byte[] bufferOut) throws IOException {
+        return decode(in, tree, dataBits, out, bufferOut, null);
+    }
+
+    /**
+     * Same as the other decode, charging every full buffer to budget before it is written.
+     *
+     * @param budget The budget of this decompression, or null for no limits
+     */
+    public static long decode(BitInput in, HuffmanTree tree, long dataBits, OutputStream out, byte[] bufferOut,
+                              DecodeLimits.Budget budget) throws IOException {
+        int[] decodeTable = tree.decodeTable;
+        Node[] decodeNodes = tree.decodeNodes;
+        int counterForBufferOut = 0;
+        long decoded = 0;
+
+        long remaining = dataBits;
+        while (remaining > 0) {
+            int prefix = in.peekBits(HuffmanTree.TABLE_BITS);
+            int entry = decodeTable[prefix];
+            byte charCode;
+            if (entry >= 0) {
+                int length = entry >>> 8;
+                in.skipBits(length);
+                remaining -= length;
+                charCode = (byte) entry;
+            } else {
+                // Code longer than the table: walk the tree from the node reached after TABLE_BITS bits
+                in.skipBits(HuffmanTree.TABLE_BITS);
+                remaining -= HuffmanTree.TABLE_BITS;
+                Node curr = decodeNodes[prefix];
+                while (curr.getLeft() != null && remaining > 0) {
+                    curr = in.readBit() == 0 ? curr.getLeft() : curr.getRight();
+                    remaining--;
+                }
+                if (curr.getLeft() != null)
+                    break; // Truncated data
+                charCode = curr.getCharCode();
+            }
+
+            bufferOut[counterForBufferOut++] = charCode;
+            if (counterForBufferOut == bufferOut.length) {
+                if (budget != null)
+                    budget.add(0, counterForBufferOut);
+                out.write(bufferOut);
+                decoded += counterForBufferOut;
+                counterForBufferOut = 0;
+            }
+        }
+
+        if (budget != null)
+            budget.add(0, counterForBufferOut);
+        out.write(bufferOut, 0, counterForBufferOut);
+        decoded += counterForBufferOut;
+        return decoded;
+    }
+
+    /**
+     * Chooses between the pipelined and the sequential decodeTo. By default files of at least Pipeline.MIN_SIZE
+     * bytes are pipelined.
+     *
+     * @param pipelined Whether to run the read, decode and write stages on separate threads
+     */
+    public void setPipelined(boolean pipelined) {
+        this.pipelined = pipelined;
+    }
+
+    /**
+     * Sets the limits checked by readHeader and decodeTo, none by default. Call it before readHeader.
+     *
+     * @param limits The limits, shared with other decoders if needed
+     */
+    public void setLimits(DecodeLimits limits) {
+        this.limits = limits;
+    }
+
+    /**
+     * Decodes exactly count bytes into dst with the given tree. Used for blocks, whose length is known, so the
+     * padding bits at the end of the data are never decoded.
+     *
+     * @param in     The bit input positioned at the first data bit
+     * @param tree   The tree to decode with
+     * @param dst    The array receiving the decoded bytes
+     * @param offset Index of the first decoded byte in dst
+     * @param count  Number of bytes to decode
+     */
+    public static void decode(BitInput in, HuffmanTree tree, byte[] dst, int offset, int count) throws IOException {
+        int[] decodeTable = tree.decodeTable;
+        Node[] decodeNodes = tree.decodeNodes;
+        for (int i = offset; i < offset + count; i++) {
+            int prefix = in.peekBits(HuffmanTree.TABLE_BITS);
+            int entry = decodeTable[prefix];
+            if (entry >= 0) {
+                in.skipBits(entry >>> 8);
+                dst[i] = (byte) entry;
+            } else {
+                in.skipBits(HuffmanTree.TABLE_BITS);
+                Node curr = decodeNodes[prefix];
+                while (curr.getLeft() != null)
+                    curr = in.readBit() == 0 ? curr.getLeft() : curr.getRight();
+                dst[i] = curr.getCharCode();
+            }
+        }
+    }
+
+    /**
+     * Decodes exactly count bytes into dst with the given tree, without moving its position.
+     *
+     * @param in     The bit input positioned at the first data bit
+     * @param tree   The tree to decode with
+     * @param dst    The buffer receiving the decoded bytes, such as a mapped part of the output file
+     * @param offset Index of the first decoded byte in dst
+     * @param count  Number of bytes to decode
+     * @return The number of bits the codes of these bytes took
+     */
+    public static long decode(BitInput in, HuffmanTree tree, ByteBuffer dst, int offset, int count) throws IOException {
+        int[] decodeTable = tree.decodeTable;
+        Node[] decodeNodes = tree.decodeNodes;
+        long bits = 0;
+        for (int i = offset; i < offset + count; i++) {
+            int prefix = in.peekBits(HuffmanTree.TABLE_BITS);
+            int entry = decodeTable[prefix];
+            if (entry >= 0) {
+                in.skipBits(entry >>> 8);
+                bits += entry >>> 8;
+                dst.put(i, (byte) entry);
+            } else {
+                in.skipBits(HuffmanTree.TABLE_BITS);
+                bits += HuffmanTree.TABLE_BITS;
+                Node curr = decodeNodes[prefix];
+                while (curr.getLeft() != null) {
+                    curr = in.readBit() == 0 ? curr.getLeft() : curr.getRight();
+                    bits++;
+                }
+                dst.put(i, curr.getCharCode());
+            }
+        }
+        return bits;
+    }
+
+    public HuffmanTree getTree() {
+        return tree;
+    }
+
+    public byte getExtLength() {
+        return extLength;
+    }
+
+    public String getExtString() {
+        return extString;
+    }
+
+    public int getHeaderLength() {
+        return headerLength;
+    }
+
+    public byte[] getHeader() {
+        return header;
+    }
+
+    /**
+     * Returns the length of the original file recorded in the header, or -1 for a legacy header without it.
+     */
+    public long getOriginalLength() {
+        return originalLength;
+    }
+
+    public long getSizeBefore() {
+        return sizeBefore;
+    }
+
+    public long getSizeAfter() {
+        return sizeAfter;
+    }
+}
@@ -0,0 +1,326 @@
+package com.example.algo_huffman;
+
+import java.io.File;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.io.OutputStream;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.util.Arrays;
+
+/**
+ * The HuffmanEncoder class writes a .huff file without any user interface. The layout is the one Compress has
+ * always produced: the extension length and extension, the tree length in bits as 4 bytes, the post order
+ * tree padded to a byte, the encoded data, and two final bytes holding the last padded data byte and the
+ * number of padding bits. All sizes and counts are 64-bit, so inputs larger than 4 GB are handled.
+ * With setRecordLength the high bit of the extension length byte is set and the length of the original file
+ * follows the extension as 8 bytes, so a decoder can preallocate the output; such files need this decoder.
+ * The arrays and buffers come from a CodecContext, which can be reused from job to job.
+ */
+public class HuffmanEncoder {
+    static final int LENGTH_FLAG = 0x80; // Set in the extension length byte when the original length follows
+    static final int MAX_EXT_LENGTH = 0x7F; // Longest extension of a header recording the original length
+
+    CodecContext context; // Reusable buffers and tree of this job
+    long[] freq; // Frequency array for each byte value (0-255)
+    File file; // File to be compressed
+    String fileName; // Name of the file without extension
+    String extString; // Extension of the file
+    byte extLength; // Length of the file extension
+    HuffmanTree tree; // Huffman tree built from freq
+    int headerLength; // Length of the tree header in bits
+    long sizeBefore; // File size before compression
+    long sizeAfter; // File size after compression
+    boolean pipelined; // Whether writeTo reads, encodes and writes on separate threads
+    boolean recordLength; // Whether the header records the original length
+
+    /**
+     * Creates an encoder for the given file.
+     *
+     * @param file The file to be compressed
+     */
+    public HuffmanEncoder(File file) {
+        this(file, new CodecContext());
+    }
+
+    /**
+     * Creates an encoder for the given file using the buffers of context.
+     *
+     * @param file    The file to be compressed
+     * @param context A cleared context, used only by this encoder until it is done
+     */
+    public HuffmanEncoder(File file, CodecContext context) {
+        this.file = file;
+        this.context = context;
+        this.freq = context.freq;
+        this.sizeBefore = file.length();
+        this.pipelined = sizeBefore >= Pipeline.MIN_SIZE;
+
+        String[] nameInfo = file.getName().split("\\.");
+        this.fileName = nameInfo[0];
+        this.extString = nameInfo.length > 1 ? nameInfo[1] : "";
+        this.extLength = (byte) extString.length();
+    }
+
+    /**
+     * Reads the file and calculates the frequency of each byte.
+     */
+    public void getFreq() throws IOException {
+        try (FileChannel channel = FileChannel.open(file.toPath())) {
+            ByteBuffer buffer = context.ioBuffer;
+            while (channel.read(buffer.clear()) != -1) {
+                buffer.flip();
+                countFrequencies(buffer, freq);
+            }
+        }
+    }
+
+    /**
+     * Adds the frequency of every remaining byte of the buffer to freq, without moving its position.
+     *
+     * @param buffer The bytes to count
+     * @param freq   Frequency array to update
+     */
+    public static void countFrequencies(ByteBuffer buffer, long[] freq) {
+        for (int i = buffer.position(); i < buffer.limit(); i++)
+            freq[buffer.get(i) & 0xFF]++;
+    }
+
+    /**
+     * Adds the frequency of every byte in the given range to freq.
+     *
+     * @param buffer The bytes to count
+     * @param offset First byte to count
+     * @param length Number of bytes to count
+     * @param freq   Frequency array to update
+     */
+    public static void countFrequencies(byte[] buffer, int offset, int length, long[] freq) {
+        for (int i = offset; i < offset + length; i++)
+            freq[buffer[i] & 0xFF]++;
+    }
+
+    /**
+     * Builds the Huffman tree from the frequencies.
+     *
+     * @return The tree
+     */
+    public HuffmanTree buildTree() {
+        this.tree = context.tree.rebuild(freq);
+        this.headerLength = tree.getTreeLength();
+        return tree;
+    }
+
+    /**
+     * Writes the header and the encoded content of the file to outFile. An empty file is refused, as by
+     * ParallelEncoder and the in-memory compress: its tree would be empty and the .huff layout has no way to
+     * describe it.
+     *
+     * @param outFile The .huff file to create
+     */
+    public void writeTo(File outFile) throws IOException {
+        if (sizeBefore == 0)
+            throw new IOException("Cannot compress an empty file");
+        if (pipelined) {
+            Pipeline.compress(this, outFile);
+            this.sizeAfter = outFile.length();
+            return;
+        }
+        try (FileChannel channel = FileChannel.open(file.toPath());
+             OutputStream out = new FileOutputStream(outFile)) {
+            BitOutput bitOut = context.bitOutput.reset(out);
+            writeHeader(bitOut, extString, tree, getRecordedLength());
+            ByteBuffer buffer = context.ioBuffer;
+            while (channel.read(buffer.clear()) != -1) {
+                buffer.flip();
+                encode(buffer, tree, bitOut);
+            }
+            writeTrailer(bitOut);
+            bitOut.flush();
+        }
+        this.sizeAfter = outFile.length();
+    }
+
+    /**
+     * Compresses a byte range held in memory into the .huff layout, with an empty extension. All the working
+     * memory comes from context, so nothing is allocated per call once the context has been used.
+     *
+     * @param src     The bytes to compress
+     * @param offset  First byte to compress
+     * @param length  Number of bytes to compress, at least 1
+     * @param out     The stream receiving the .huff bytes
+     * @param context A context used only by this call
+     */
+    public static void compress(byte[] src, int offset, int length, OutputStream out, CodecContext context) throws IOException {
+        if (length == 0)
+            throw new IllegalArgumentException("Cannot compress an empty input");
+        long[] freq = context.freq;
+        Arrays.fill(freq, 0);
+        countFrequencies(src, offset, length, freq);
+        HuffmanTree tree = context.tree.rebuild(freq);
+
+        BitOutput bitOut = context.bitOutput.reset(out);
+        writeHeader(bitOut, "", tree);
+        encode(src, offset, length, tree, bitOut);
+        writeTrailer(bitOut);
+        bitOut.flush();
+    }
+
+    /**
+     * Same as the other compress, with a context taken from the shared pool.
+     */
+    public static void compress(byte[] src, int offset, int length, OutputStream out) throws IOException {
+        CodecContext context = CodecContextPool.SHARED.acquire();
+        try {
+            compress(src, offset, length, out, context);
+        } finally {
+            CodecContextPool.SHARED.release(context);
+        }
+    }
+
+    /**
+     * Writes the extension, the tree length and the tree, padded to a whole byte.
+     *
+     * @param out       The bit output to write to
+     * @param extString The extension of the original file
+     * @param tree      The tree to write
+     */
+    static void writeHeader(BitOutput out, String extString, HuffmanTree tree) throws IOException {
+        writeHeader(out, extString, tree, -1);
+    }
+
+    /**
+     * Writes the extension, the original length if it is known, the tree length and the tree, padded to a whole
+     * byte.
+     *
+     * @param out            The bit output to write to
+     * @param extString      The extension of the original file
+     * @param tree           The tree to write
+     * @param originalLength The length of the original file, or -1 for the legacy header without it
+     */
+    static void writeHeader(BitOutput out, String extString, HuffmanTree tree, long originalLength) throws IOException {
+        if (originalLength >= 0) {
+            if (extString.length() > MAX_EXT_LENGTH)
+                throw new IOException("Extension too long to record the original length: " + extString);
+            out.writeByte(LENGTH_FLAG | extString.length());
+        } else {
+            out.writeByte(extString.length());
+        }
+        for (int i = 0; i < extString.length(); i++)
+            out.writeByte(extString.charAt(i));
+        if (originalLength >= 0) {
+            out.writeInt((int) (originalLength >>> 32));
+            out.writeInt((int) originalLength);
+        }
+        out.writeInt(tree.getTreeLength());
+        tree.writeTree(out);
+        out.alignToByte();
+    }
+
+    /**
+     * Encodes the remaining bytes of the buffer with the codes of the tree, without moving its position.
+     *
+     * @param buffer The bytes to encode
+     * @param tree   The tree giving the codes
+     * @param out    The bit output to write to
+     */
+    public static void encode(ByteBuffer buffer, HuffmanTree tree, BitOutput out) throws IOException {
+        int[] codes = tree.codes;
+        byte[] lengths = tree.lengths;
+        for (int i = buffer.position(); i < buffer.limit(); i++) {
+            int currByte = buffer.get(i) & 0xFF;
+            out.writeBits(codes[currByte], lengths[currByte]);
+        }
+    }
+
+    /**
+     * Encodes the bytes of the given range with the codes of the tree.
+     *
+     * @param buffer The bytes to encode
+     * @param offset First byte to encode
+     * @param length Number of bytes to encode
+     * @param tree   The tree giving the codes
+     * @param out    The bit output to write to
+     */
+    public static void encode(byte[] buffer, int offset, int length, HuffmanTree tree, BitOutput out) throws IOException {
+        int[] codes = tree.codes;
+        byte[] lengths = tree.lengths;
+        for (int i = offset; i < offset + length; i++) {
+            int currByte = buffer[i] & 0xFF;
+            out.writeBits(codes[currByte], lengths[currByte]);
+        }
+    }
+
+    /**
+     * Writes the last data byte padded with zeros and the number of padding bits. When the data ends on a byte
+     * boundary both bytes are zero, as the original Compress wrote them.
+     *
+     * @param out The bit output to write to
+     */
+    static void writeTrailer(BitOutput out) throws IOException {
+        int lengthOfRemainingBits = out.getPendingBits();
+        if (lengthOfRemainingBits != 0) {
+            int padding = out.alignToByte();
+            out.writeByte(padding);
+        } else {
+            out.writeByte(0);
+            out.writeByte(0);
+        }
+    }
+
+    /**
+     * Chooses between the pipelined and the sequential writeTo. By default files of at least Pipeline.MIN_SIZE
+     * bytes are pipelined.
+     *
+     * @param pipelined Whether to run the read, encode and write stages on separate threads
+     */
+    public void setPipelined(boolean pipelined) {
+        this.pipelined = pipelined;
+    }
+
+    /**
+     * Chooses whether writeTo records the length of the original file in the header. Off by default, since
+     * readers of the legacy layout cannot read such files.
+     *
+     * @param recordLength Whether to record the original length
+     */
+    public void setRecordLength(boolean recordLength) {
+        this.recordLength = recordLength;
+    }
+
+    // The original length to write in the header, or -1 if it is not recorded
+    long getRecordedLength() {
+        return recordLength ? sizeBefore : -1;
+    }
+
+    public long[] getFrequencies() {
+        return freq;
+    }
+
+    public HuffmanTree getTree() {
+        return tree;
+    }
+
+    public String getFileName() {
+        return fileName;
+    }
+
+    public String getExtString() {
+        return extString;
+    }
+
+    public byte getExtLength() {
+        return extLength;
+    }
+
+    public int getHeaderLength() {
+        return headerLength;
+    }
+
+    public long getSizeBefore() {
+        return sizeBefore;
+    }
+
+    public long getSizeAfter() {
+        return sizeAfter;
+    }
+}
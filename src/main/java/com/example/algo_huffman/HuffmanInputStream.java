@@ -0,0 +1,116 @@
+package com.example.algo_huffman;
+
+import java.io.FilterInputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.util.Objects;
+
+/**
+ * An input stream decompressing the block format of BlockCodec, as written by HuffmanOutputStream or by the
+ * compression service. A whole block is decoded at a time into a large buffer that reads are then served from.
+ * A block is decoded as soon as its last byte arrives, so a reader keeps up with a writer that flushes.
+ */
+public class HuffmanInputStream extends FilterInputStream {
+    private final CodecContext context; // Taken from the shared pool, given back by close
+    private int position; // Next byte of the decoded block to return
+    private int limit; // Number of decoded bytes in the block
+    private boolean ended; // The end block has been read
+    private boolean closed;
+
+    /**
+     * Creates a stream and reads the stream header.
+     *
+     * @param in The stream holding the compressed bytes
+     */
+    public HuffmanInputStream(InputStream in) throws IOException {
+        super(in);
+        BlockCodec.readStreamHeader(in);
+        this.context = CodecContextPool.SHARED.acquire();
+    }
+
+    @Override
+    public int read() throws IOException {
+        if (!fill())
+            return -1;
+        return context.rawBuffer[position++] & 0xFF;
+    }
+
+    @Override
+    public int read(byte[] b, int off, int len) throws IOException {
+        Objects.checkFromIndexSize(off, len, b.length);
+        if (len == 0)
+            return 0;
+        if (!fill())
+            return -1;
+        int n = Math.min(len, limit - position);
+        System.arraycopy(context.rawBuffer, position, b, off, n);
+        position += n;
+        return n;
+    }
+
+    @Override
+    public long skip(long n) throws IOException {
+        long skipped = 0;
+        while (skipped < n && fill()) {
+            int step = (int) Math.min(n - skipped, limit - position);
+            position += step;
+            skipped += step;
+        }
+        return skipped;
+    }
+
+    /**
+     * Returns the number of decoded bytes left in the current block.
+     */
+    @Override
+    public int available() throws IOException {
+        ensureOpen();
+        return limit - position;
+    }
+
+    @Override
+    public boolean markSupported() {
+        return false;
+    }
+
+    @Override
+    public void mark(int readLimit) {
+    }
+
+    @Override
+    public void reset() throws IOException {
+        throw new IOException("mark/reset not supported");
+    }
+
+    @Override
+    public void close() throws IOException {
+        if (closed)
+            return;
+        closed = true;
+        CodecContextPool.SHARED.release(context);
+        in.close();
+    }
+
+    // Decodes the next block once the current one is used up; false at the end of the stream
+    private boolean fill() throws IOException {
+        ensureOpen();
+        while (position == limit) {
+            if (ended)
+                return false;
+            int length = BlockCodec.readBlock(in, context);
+            position = 0;
+            if (length == -1) {
+                limit = 0;
+                ended = true;
+            } else {
+                limit = length;
+            }
+        }
+        return true;
+    }
+
+    private void ensureOpen() throws IOException {
+        if (closed)
+            throw new IOException("Stream closed");
+    }
+}
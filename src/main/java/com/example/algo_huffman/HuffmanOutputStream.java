@@ -0,0 +1,133 @@
+package com.example.algo_huffman;
+
+import java.io.FilterOutputStream;
+import java.io.IOException;
+import java.io.OutputStream;
+import java.util.Objects;
+
+/**
+ * An output stream compressing what is written to it into the block format of BlockCodec, the way GZIPOutputStream
+ * does for deflate. Bytes are collected in a large buffer and compressed a buffer at a time, split into blocks
+ * where their statistics change, so small writes cost a copy and nothing else. flush ends the current block, even
+ * a short one, and flushes the underlying stream: a reader receives everything written before the flush without
+ * waiting for the rest.
+ */
+public class HuffmanOutputStream extends FilterOutputStream {
+    private final CodecContext context; // Taken from the shared pool, given back by close
+    private final byte[] buffer; // Bytes of the block being collected
+    private final int blockSize; // Bytes per block, the buffer may be larger
+    private int count; // Number of bytes in buffer
+    private boolean finished; // The end block has been written
+    private boolean closed;
+
+    /**
+     * Creates a stream with blocks of at most BlockCodec.BLOCK_SIZE bytes and writes the stream header.
+     *
+     * @param out The stream receiving the compressed bytes
+     */
+    public HuffmanOutputStream(OutputStream out) throws IOException {
+        this(out, BlockCodec.BLOCK_SIZE);
+    }
+
+    /**
+     * Creates a stream with the given maximum block size and writes the stream header. Larger blocks compress a
+     * little better, smaller ones use less memory.
+     *
+     * @param out       The stream receiving the compressed bytes
+     * @param blockSize Bytes per block, between 1 and BlockCodec.MAX_BLOCK_SIZE
+     */
+    public HuffmanOutputStream(OutputStream out, int blockSize) throws IOException {
+        super(out);
+        if (blockSize < 1 || blockSize > BlockCodec.MAX_BLOCK_SIZE)
+            throw new IllegalArgumentException("Invalid block size: " + blockSize);
+        this.context = CodecContextPool.SHARED.acquire();
+        this.buffer = context.rawBuffer(blockSize);
+        this.blockSize = blockSize;
+        BlockCodec.writeStreamHeader(out);
+    }
+
+    @Override
+    public void write(int b) throws IOException {
+        ensureOpen();
+        if (count == blockSize)
+            writeBuffer();
+        buffer[count++] = (byte) b;
+    }
+
+    @Override
+    public void write(byte[] b, int off, int len) throws IOException {
+        ensureOpen();
+        Objects.checkFromIndexSize(off, len, b.length);
+        while (len > 0) {
+            if (count == 0 && len >= blockSize) {
+                // Whole blocks are compressed straight from the caller's array
+                BlockCodec.writeBlocks(b, off, blockSize, out, context);
+                off += blockSize;
+                len -= blockSize;
+                continue;
+            }
+            int n = Math.min(len, blockSize - count);
+            System.arraycopy(b, off, buffer, count, n);
+            count += n;
+            off += n;
+            len -= n;
+            if (count == blockSize)
+                writeBuffer();
+        }
+    }
+
+    /**
+     * Compresses the bytes written so far as a block and flushes the underlying stream.
+     */
+    @Override
+    public void flush() throws IOException {
+        if (closed)
+            throw new IOException("Stream closed");
+        writeBuffer();
+        out.flush();
+    }
+
+    /**
+     * Writes the last block and the end of the stream without closing the underlying stream. Nothing can be written
+     * afterwards.
+     */
+    public void finish() throws IOException {
+        if (closed)
+            throw new IOException("Stream closed");
+        if (finished)
+            return;
+        writeBuffer();
+        BlockCodec.writeEnd(out);
+        finished = true;
+    }
+
+    @Override
+    public void close() throws IOException {
+        if (closed)
+            return;
+        try {
+            try {
+                finish();
+            } finally {
+                out.close();
+            }
+        } finally {
+            closed = true;
+            CodecContextPool.SHARED.release(context);
+        }
+    }
+
+    private void writeBuffer() throws IOException {
+        if (count > 0) {
+            BlockCodec.writeBlocks(buffer, 0, count, out, context);
+            count = 0;
+        }
+    }
+
+    private void ensureOpen() throws IOException {
+        if (closed)
+            throw new IOException("Stream closed");
+        if (finished)
+            throw new IOException("Stream finished");
+    }
+}
@@ -0,0 +1,355 @@
+package com.example.algo_huffman;
+
+import java.io.IOException;
+import java.util.Arrays;
+
+/**
+ * The HuffmanTree class builds the Huffman tree for the 256 byte values and derives the code tables used by
+ * the encoder and the decoder. It has no dependency on the user interface so it can be shared by the scenes
+ * and by the command line tools.
+ */
+public class HuffmanTree {
+    public static final int MAX_CODE_LENGTH = 32; // Longest code allowed, so every code fits in an int
+    static final int TABLE_BITS = 10; // Number of bits resolved by one lookup in the decode table
+
+    Node rootNode; // Root node of the Huffman tree
+    Node[] nodes = new Node[256]; // Leaf node of each byte value (null if the byte does not occur)
+    int[] codes = new int[256]; // Huffman code of each byte value, right aligned
+    byte[] lengths = new byte[256]; // Length of the Huffman code of each byte value
+    int numberOfLeafs; // Number of leaf nodes in the Huffman tree
+    int rescales; // How many times the frequencies were halved to respect MAX_CODE_LENGTH
+
+    int[] decodeTable = new int[1 << TABLE_BITS]; // TABLE_BITS prefix -> (length << 8 | byte), or -1 if longer
+    Node[] decodeNodes = new Node[1 << TABLE_BITS]; // TABLE_BITS prefix -> node to continue from if longer
+
+    // Working state kept between builds so a reused tree does not allocate
+    private final long[] counts = new long[256]; // Frequencies the tree is built from
+    private final MinHeap heap = new MinHeap(256); // Heap used to merge the nodes
+    private final Stack stack = new Stack(256); // Stack used to read a tree header
+    private final Node[] nodePool = new Node[511]; // Nodes of the tree, at most 256 leaves and 255 internal nodes
+    private int nodesUsed; // Number of nodes of nodePool in use
+
+    /**
+     * Builds the tree from 64-bit byte frequencies. If the tree would be deeper than MAX_CODE_LENGTH the
+     * frequencies are halved (never below 1) and the tree is rebuilt, which flattens the skewed part of the
+     * distribution while keeping every symbol encodable.
+     *
+     * @param freq Frequency of each byte value (0-255)
+     * @return The tree with its code and decode tables, or a tree without root if all frequencies are zero
+     */
+    public static HuffmanTree build(long[] freq) {
+        return new HuffmanTree().rebuild(freq);
+    }
+
+    /**
+     * Same as build, but reuses the nodes and tables of this tree instead of allocating new ones.
+     *
+     * @param freq Frequency of each byte value (0-255)
+     * @return This tree
+     */
+    public HuffmanTree rebuild(long[] freq) {
+        System.arraycopy(freq, 0, counts, 0, 256);
+        rescales = 0;
+
+        rootNode = initializeHeap(counts);
+        while (rootNode != null && getDepth(rootNode) > MAX_CODE_LENGTH) {
+            for (int i = 0; i < counts.length; i++)
+                counts[i] = (counts[i] + 1) >>> 1; // Non zero counts stay non zero
+            rescales++;
+            rootNode = initializeHeap(counts);
+        }
+
+        if (rootNode != null) {
+            generateHuffmanCodes();
+            // Leaves keep the real counts for display even if the tree was built from rescaled ones
+            for (int i = 0; i < 256; i++)
+                if (nodes[i] != null)
+                    nodes[i].setFreq(freq[i]);
+        } else
+            Arrays.fill(nodes, null);
+        return this;
+    }
+
+    /**
+     * Rebuilds a tree from the post order header written by writeTree: a 1 bit followed by 8 bits for every
+     * leaf, and a 0 bit for every internal node.
+     *
+     * @param header       The header bytes
+     * @param headerLength Number of valid bits in the header
+     * @return The rebuilt tree with its code and decode tables
+     */
+    public static HuffmanTree fromHeader(byte[] header, int headerLength) throws IOException {
+        return new HuffmanTree().readTree(header, 0, headerLength);
+    }
+
+    /**
+     * Same as fromHeader, but reuses the nodes and tables of this tree. A header that does not describe exactly
+     * one tree of at most 256 leaves is rejected: a merge with fewer than two nodes on the stack, more nodes than
+     * such a tree holds, a leaf cut by the end of the header, or more than one node left at the end.
+     *
+     * @param header       The array holding the header
+     * @param offset       Index of the first header byte
+     * @param headerLength Number of valid bits in the header
+     * @return This tree
+     */
+    public HuffmanTree readTree(byte[] header, int offset, int headerLength) throws IOException {
+        stack.clear();
+        nodesUsed = 0;
+        rootNode = null;
+        int counter = offset * 8;
+        int end = counter + headerLength;
+        if (headerLength < 0 || end > header.length * 8L)
+            throw new IOException("Invalid tree header length: " + headerLength);
+        while (counter < end) {
+            if (nodesUsed == nodePool.length)
+                throw new IOException("Invalid tree header: too many nodes");
+            if (getBit(header, counter++) == 1) {
+                if (end - counter < 8)
+                    throw new IOException("Invalid tree header: truncated leaf");
+                if (stack.isFull())
+                    throw new IOException("Invalid tree header: too many leaves");
+                int charCode = 0;
+                for (int i = 0; i < 8; i++)
+                    charCode = (charCode << 1) | getBit(header, counter++);
+                stack.push(newNode((byte) charCode, 0));
+            } else {
+                Node right = stack.pop();
+                Node left = stack.pop();
+                if (left == null)
+                    throw new IOException("Invalid tree header: merge of fewer than two nodes");
+                Node node = newNode(null, 0);
+                node.setRight(right);
+                node.setLeft(left);
+                stack.push(node);
+            }
+        }
+        Node root = stack.pop();
+        if (root == null || !stack.isEmpty())
+            throw new IOException("Invalid tree header: " + (root == null ? "no" : "more than one") + " root");
+        rootNode = root;
+        generateHuffmanCodes();
+        return this;
+    }
+
+    private static int getBit(byte[] bytes, int index) {
+        return (bytes[index >> 3] >> (7 - (index & 7))) & 1;
+    }
+
+    // Takes the next node of the pool, creating it the first time, and clears what a previous tree left in it
+    private Node newNode(Byte charCode, long freq) {
+        Node node = nodePool[nodesUsed];
+        if (node == null)
+            node = nodePool[nodesUsed] = new Node(freq);
+        nodesUsed++;
+        node.setCharCode(charCode);
+        node.setFreq(freq);
+        node.setLeft(null);
+        node.setRight(null);
+        node.setHuffCode(null);
+        return node;
+    }
+
+    /**
+     * Fills the heap with a leaf for every byte that occurs and merges the two smallest nodes until one is left.
+     *
+     * @param counts Frequency of each byte value
+     * @return The root node, or null if no byte occurs
+     */
+    private Node initializeHeap(long[] counts) {
+        heap.clear();
+        nodesUsed = 0;
+        for (int i = 0; i < counts.length; i++) {
+            if (counts[i] != 0) {
+                Node node = newNode((byte) i, counts[i]);
+                heap.insert(node);
+            }
+        }
+
+        if (heap.getSize() == 0)
+            return null;
+
+        while (heap.getSize() != 1) {
+            Node node1 = heap.remove();
+            Node node2 = heap.remove();
+
+            Node node = newNode(null, node1.getFreq() + node2.getFreq());
+            node.setLeft(node1);
+            node.setRight(node2);
+
+            heap.insert(node);
+        }
+        return heap.remove();
+    }
+
+    /**
+     * Returns the length of the longest code. Trees built here are at most MAX_CODE_LENGTH deep, but a tree read
+     * from a .huff file written before the cap can be up to 255 deep.
+     *
+     * @return The longest code length in bits, at least 1
+     */
+    public int getMaxCodeLength() {
+        return Math.max(1, getDepth(rootNode));
+    }
+
+    private static int getDepth(Node node) {
+        if (node.getLeft() == null && node.getRight() == null)
+            return 0;
+        return 1 + Math.max(getDepth(node.getLeft()), getDepth(node.getRight()));
+    }
+
+    /**
+     * Assigns a code to every leaf and builds the decode tables. A tree made of a single leaf gets the code "1",
+     * as the original Compress did.
+     */
+    private void generateHuffmanCodes() {
+        Arrays.fill(nodes, null);
+        Arrays.fill(decodeNodes, null);
+        numberOfLeafs = 0;
+
+        if (rootNode.getLeft() == null && rootNode.getRight() == null) {
+            setLeaf(rootNode, 1, 1);
+            // Every bit decodes to the only symbol, whatever its value
+            Arrays.fill(decodeTable, 1 << 8 | (rootNode.getCharCode() & 0xFF));
+        } else
+            generateHuffmanCodes(rootNode, 0, 0);
+    }
+
+    private void generateHuffmanCodes(Node node, int code, int length) {
+        if (node.getLeft() == null && node.getRight() == null) {
+            setLeaf(node, code, length);
+            if (length <= TABLE_BITS) {
+                int shift = TABLE_BITS - length;
+                int entry = length << 8 | (node.getCharCode() & 0xFF);
+                for (int i = code << shift; i < (code + 1) << shift; i++)
+                    decodeTable[i] = entry;
+            }
+            return;
+        }
+        if (length == TABLE_BITS) {
+            decodeTable[code] = -1;
+            decodeNodes[code] = node;
+        }
+        generateHuffmanCodes(node.getLeft(), code << 1, length + 1);
+        generateHuffmanCodes(node.getRight(), code << 1 | 1, length + 1);
+    }
+
+    private void setLeaf(Node node, int code, int length) {
+        int index = node.getCharCode() & 0xFF;
+        nodes[index] = node;
+        codes[index] = code;
+        lengths[index] = (byte) length;
+        numberOfLeafs++;
+        node.setHuffLength((byte) length);
+    }
+
+    /**
+     * Writes the tree in post order: a 1 bit followed by the byte for a leaf, a 0 bit for an internal node.
+     *
+     * @param out The bit output to write to
+     */
+    public void writeTree(BitOutput out) throws IOException {
+        writeTree(rootNode, out);
+    }
+
+    private void writeTree(Node node, BitOutput out) throws IOException {
+        if (node == null)
+            return;
+        writeTree(node.getLeft(), out);
+        writeTree(node.getRight(), out);
+
+        if (node.getLeft() == null && node.getRight() == null)
+            out.writeBits(0x100 | (node.getCharCode() & 0xFF), 9);
+        else
+            out.writeBits(0, 1);
+    }
+
+    /**
+     * Returns the number of bits writeTree produces.
+     *
+     * @return The length of the tree header in bits
+     */
+    public int getTreeLength() {
+        return rootNode == null ? 0 : numberOfLeafs * 9 + numberOfLeafs - 1;
+    }
+
+    /**
+     * Returns the tree header as a string of 0 and 1, used for display.
+     *
+     * @return The post order tree bits
+     */
+    public StringBuilder getTreeBits() {
+        StringBuilder builder = new StringBuilder();
+        getTreeBits(rootNode, builder);
+        return builder;
+    }
+
+    private void getTreeBits(Node node, StringBuilder builder) {
+        if (node == null)
+            return;
+        getTreeBits(node.getLeft(), builder);
+        getTreeBits(node.getRight(), builder);
+
+        if (node.getLeft() == null && node.getRight() == null)
+            builder.append("1" + byteToBinaryString(node.getCharCode()));
+        else
+            builder.append("0");
+    }
+
+    /**
+     * Returns the number of bits needed to encode the given frequencies with this tree.
+     *
+     * @param freq Frequency of each byte value
+     * @return The encoded length in bits
+     */
+    public long getEncodedLength(long[] freq) {
+        long bits = 0;
+        for (int i = 0; i < 256; i++)
+            bits += freq[i] * lengths[i];
+        return bits;
+    }
+
+    /**
+     * Converts a byte into a binary string of 8 bits.
+     *
+     * @param b Byte to convert.
+     * @return Binary string representation of the byte.
+     */
+    public static String byteToBinaryString(byte b) {
+        StringBuilder binaryString = new StringBuilder();
+        for (int i = 7; i >= 0; i--) {
+            int bit = (b >> i) & 1;
+            binaryString.append(bit);
+        }
+        return binaryString.toString();
+    }
+
+    public Node getRootNode() {
+        return rootNode;
+    }
+
+    /**
+     * Returns the leaf of each byte value, with its Huffman code as a string for display. The strings are only
+     * built here, so the encoder and decoder never pay for them.
+     *
+     * @return The leaf nodes indexed by byte value
+     */
+    public Node[] getNodes() {
+        for (int i = 0; i < 256; i++) {
+            if (nodes[i] != null && nodes[i].getHuffCode() == null) {
+                StringBuilder huffCode = new StringBuilder();
+                for (int bit = lengths[i] - 1; bit >= 0; bit--)
+                    huffCode.append((codes[i] >>> bit) & 1);
+                nodes[i].setHuffCode(huffCode.toString());
+            }
+        }
+        return nodes;
+    }
+
+    public int getNumberOfLeafs() {
+        return numberOfLeafs;
+    }
+
+    public int getRescales() {
+        return rescales;
+    }
+}
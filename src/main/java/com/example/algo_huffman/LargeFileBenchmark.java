@@ -0,0 +1,111 @@
+package com.example.algo_huffman;
+
+import java.io.BufferedInputStream;
+import java.io.File;
+import java.io.FileInputStream;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.util.Random;
+import java.util.zip.CRC32;
+
+/**
+ * Command line benchmark for large inputs. It generates a file of the requested size (or uses an existing one),
+ * compresses and decompresses it with HuffmanEncoder and HuffmanDecoder, checks the round trip with a CRC32 and
+ * prints the throughput of every step. Nothing is held in memory, so sizes far beyond 4 GB can be tested.
+ * Encoding and decoding run twice, sequentially and through the Pipeline, to compare both modes.
+ *
+ * Usage: LargeFileBenchmark [size in MB] [directory]   or   LargeFileBenchmark --file path
+ */
+public class LargeFileBenchmark {
+    static final int BUFFER_SIZE = 1 << 20; // Size of the generation and verification buffers
+
+    public static void main(String[] args) throws IOException {
+        File input;
+        boolean generated = false;
+        if (args.length == 2 && args[0].equals("--file")) {
+            input = new File(args[1]);
+        } else {
+            long sizeMB = args.length > 0 ? Long.parseLong(args[0]) : 1024;
+            File dir = new File(args.length > 1 ? args[1] : System.getProperty("java.io.tmpdir"));
+            input = new File(dir, "huffman-bench.txt");
+            long start = System.nanoTime();
+            generate(input, sizeMB << 20);
+            report("generate", input.length(), start);
+            generated = true;
+        }
+
+        File compressed = new File(input.getPath() + ".huff");
+        File restored = new File(input.getPath() + ".out");
+
+        long start = System.nanoTime();
+        HuffmanEncoder encoder = new HuffmanEncoder(input);
+        encoder.getFreq();
+        report("count", input.length(), start);
+
+        encoder.buildTree();
+        boolean ok = true;
+        for (boolean pipelined : new boolean[]{false, true}) {
+            String mode = pipelined ? " (pipelined)" : " (sequential)";
+            start = System.nanoTime();
+            encoder.setPipelined(pipelined);
+            encoder.writeTo(compressed);
+            report("encode" + mode, input.length(), start);
+
+            start = System.nanoTime();
+            HuffmanDecoder decoder = new HuffmanDecoder(compressed);
+            decoder.readHeader();
+            decoder.setPipelined(pipelined);
+            decoder.decodeTo(restored);
+            report("decode" + mode, restored.length(), start);
+
+            ok &= input.length() == restored.length() && crc(input) == crc(restored);
+        }
+        System.out.printf("ratio %.4f, rescales %d, round trip %s%n",
+                (double) compressed.length() / input.length(), encoder.getTree().getRescales(), ok ? "OK" : "FAILED");
+
+        compressed.delete();
+        restored.delete();
+        if (generated)
+            input.delete();
+        if (!ok)
+            System.exit(1);
+    }
+
+    // Writes size bytes with a skewed, text like distribution so the tree has long and short codes
+    static void generate(File file, long size) throws IOException {
+        Random random = new Random(42);
+        byte[] alphabet = " etaoinshrdlcumwfgypbvkjxqz\n.,ETAOINSHRDLU0123456789".getBytes();
+        byte[] samples = new byte[4096];
+        for (int i = 0; i < samples.length; i++)
+            samples[i] = alphabet[(int) Math.min(alphabet.length - 1, -Math.log(1 - random.nextDouble()) * 6)];
+
+        byte[] buffer = new byte[BUFFER_SIZE];
+        try (OutputStream out = new FileOutputStream(file)) {
+            for (long written = 0; written < size; ) {
+                for (int i = 0; i < buffer.length; i++)
+                    buffer[i] = samples[random.nextInt() & 4095];
+                int length = (int) Math.min(buffer.length, size - written);
+                out.write(buffer, 0, length);
+                written += length;
+            }
+        }
+    }
+
+    static long crc(File file) throws IOException {
+        CRC32 crc = new CRC32();
+        byte[] buffer = new byte[BUFFER_SIZE];
+        try (InputStream in = new BufferedInputStream(new FileInputStream(file))) {
+            int bytesRead;
+            while ((bytesRead = in.read(buffer)) != -1)
+                crc.update(buffer, 0, bytesRead);
+        }
+        return crc.getValue();
+    }
+
+    static void report(String step, long bytes, long startNanos) {
+        double seconds = (System.nanoTime() - startNanos) / 1e9;
+        System.out.printf("%-22s %,d bytes in %.2f s (%.1f MB/s)%n", step, bytes, seconds, bytes / 1048576.0 / seconds);
+    }
+}
@@ -0,0 +1,342 @@
+package com.example.algo_huffman;
+
+import java.io.IOException;
+import java.util.Arrays;
+
+/**
+ * A canonical Huffman code for alphabets larger than the 256 byte values, up to 65536 symbols for the byte pair
+ * mode of PairCodec. HuffmanTree allocates a Node per symbol and walks the tree to decode, which is fine for 256
+ * leaves but not for tens of thousands, so this code is built and decoded with primitive arrays only:
+ *
+ * - the leaves are sorted once by frequency and merged with two queues (the sorted leaves and the internal nodes,
+ *   which are created in increasing weight order), which gives optimal lengths in linear time after the sort;
+ * - the code is canonical, so only the code lengths are stored and both sides derive the codes from them;
+ * - the header lists the symbols in use as varint gaps followed by a 5 bit length each, so a sparse alphabet
+ *   costs a few bytes per symbol present instead of a length for all 65536;
+ * - decoding uses a table of ROOT_BITS bits, whose entries either give the symbol or point to a second table
+ *   resolving the remaining bits of the longer codes. Codes are at most MAX_CODE_LENGTH bits, so two lookups
+ *   always suffice and the second tables hold at most 2^ROOT_BITS * 2^(MAX_CODE_LENGTH - ROOT_BITS) entries.
+ */
+public class LargeHuffmanCode {
+    public static final int MAX_CODE_LENGTH = 20; // Longest code allowed, keeps the second level tables small
+    static final int ROOT_BITS = 11; // Number of bits resolved by the first table lookup
+    static final int LENGTH_BITS = 5; // Bits of a code length in the header
+    static final int SYMBOL_SHIFT = 17; // Leaf index bits below the frequency in a sort key
+
+    final int alphabetSize; // Number of possible symbols
+    final int maxCodeLength; // Longest code build may produce, at most MAX_CODE_LENGTH
+    final long[] freq; // Frequency of each symbol, filled by the caller before build
+    final int[] codes; // Canonical code of each symbol, right aligned
+    final byte[] lengths; // Code length of each symbol, 0 if it does not occur
+    int symbolCount; // Number of symbols in use
+    int rescales; // How many times the frequencies were halved to respect maxCodeLength
+    int[] decodeTable = new int[1 << ROOT_BITS]; // Root table followed by the second level tables
+
+    // Working arrays kept between builds so a reused code does not allocate
+    private final long[] counts; // Frequencies the code is built from
+    private final long[] sorted; // Frequency << SYMBOL_SHIFT | symbol of the leaves, sorted
+    private final long[] weights; // Weight of each node, then its depth
+    private final int[] parents; // Parent of each node
+    private final int[] symbols; // Symbols in use, ascending
+    private final int[] lengthCounts = new int[MAX_CODE_LENGTH + 1]; // Number of codes of each length
+    private final int[] nextCode = new int[MAX_CODE_LENGTH + 1]; // Next canonical code of each length
+    private final int[] subBits = new int[1 << ROOT_BITS]; // Bits of the second level table of each root entry
+
+    /**
+     * Creates a code for symbols 0 to alphabetSize - 1.
+     *
+     * @param alphabetSize Number of symbols, at most 1 << SYMBOL_SHIFT
+     */
+    public LargeHuffmanCode(int alphabetSize) {
+        this(alphabetSize, MAX_CODE_LENGTH);
+    }
+
+    /**
+     * Creates a code for symbols 0 to alphabetSize - 1 whose codes are at most maxCodeLength bits, for formats
+     * with a smaller limit such as DEFLATE.
+     *
+     * @param alphabetSize  Number of symbols, at most 1 << SYMBOL_SHIFT
+     * @param maxCodeLength Longest code, between 1 and MAX_CODE_LENGTH
+     */
+    public LargeHuffmanCode(int alphabetSize, int maxCodeLength) {
+        if (maxCodeLength < 1 || maxCodeLength > MAX_CODE_LENGTH)
+            throw new IllegalArgumentException("Invalid maximum code length: " + maxCodeLength);
+        this.alphabetSize = alphabetSize;
+        this.maxCodeLength = maxCodeLength;
+        this.freq = new long[alphabetSize];
+        this.codes = new int[alphabetSize];
+        this.lengths = new byte[alphabetSize];
+        this.counts = new long[alphabetSize];
+        this.sorted = new long[alphabetSize];
+        this.weights = new long[2 * alphabetSize];
+        this.parents = new int[2 * alphabetSize];
+        this.symbols = new int[alphabetSize];
+    }
+
+    /**
+     * Builds the code from freq. If the code would be longer than maxCodeLength the frequencies are halved
+     * (never below 1) and the code is rebuilt, like HuffmanTree does.
+     *
+     * @return This code
+     */
+    public LargeHuffmanCode build() {
+        System.arraycopy(freq, 0, counts, 0, alphabetSize);
+        rescales = 0;
+        while (computeLengths() > maxCodeLength) {
+            for (int i = 0; i < alphabetSize; i++)
+                counts[i] = (counts[i] + 1) >>> 1; // Non zero counts stay non zero
+            rescales++;
+        }
+        assignCodes();
+        return this;
+    }
+
+    // Fills lengths from counts and returns the longest length
+    private int computeLengths() {
+        Arrays.fill(lengths, (byte) 0);
+        int m = 0;
+        for (int s = 0; s < alphabetSize; s++) {
+            if (counts[s] != 0)
+                sorted[m++] = counts[s] << SYMBOL_SHIFT | s;
+        }
+        symbolCount = m;
+        if (m == 0)
+            return 0;
+        if (m == 1) {
+            lengths[(int) (sorted[0] & ((1 << SYMBOL_SHIFT) - 1))] = 1;
+            return 1;
+        }
+        Arrays.sort(sorted, 0, m);
+        for (int i = 0; i < m; i++)
+            weights[i] = sorted[i] >>> SYMBOL_SHIFT;
+
+        // Leaves are 0..m-1, internal nodes m..2m-2 in creation order, the root last
+        int leaf = 0;
+        int internal = m;
+        for (int node = m; node < 2 * m - 1; node++) {
+            int a = leaf < m && (internal == node || weights[leaf] <= weights[internal]) ? leaf++ : internal++;
+            int b = leaf < m && (internal == node || weights[leaf] <= weights[internal]) ? leaf++ : internal++;
+            weights[node] = weights[a] + weights[b];
+            parents[a] = node;
+            parents[b] = node;
+        }
+
+        // Parents are always created after their children, so one backward pass gives every depth
+        weights[2 * m - 2] = 0;
+        for (int node = 2 * m - 3; node >= 0; node--)
+            weights[node] = weights[parents[node]] + 1;
+        int maxLength = 0;
+        for (int i = 0; i < m; i++) {
+            int length = (int) Math.min(weights[i], Byte.MAX_VALUE);
+            lengths[(int) (sorted[i] & ((1 << SYMBOL_SHIFT) - 1))] = (byte) length;
+            maxLength = Math.max(maxLength, length);
+        }
+        return maxLength;
+    }
+
+    // Gives every symbol its canonical code: shorter codes first, then by symbol value
+    private void assignCodes() {
+        Arrays.fill(lengthCounts, 0);
+        int m = 0;
+        for (int s = 0; s < alphabetSize; s++) {
+            if (lengths[s] != 0) {
+                lengthCounts[lengths[s]]++;
+                symbols[m++] = s;
+            }
+        }
+        symbolCount = m;
+        int code = 0;
+        for (int length = 1; length <= MAX_CODE_LENGTH; length++) {
+            code = (code + lengthCounts[length - 1]) << 1;
+            nextCode[length] = code;
+        }
+        for (int i = 0; i < m; i++) {
+            int s = symbols[i];
+            codes[s] = nextCode[lengths[s]]++;
+        }
+    }
+
+    /**
+     * Writes the symbols in use as varint gaps, then their code lengths, and aligns to a byte.
+     *
+     * @param out The bit output to write to
+     */
+    public void writeHeader(BitOutput out) throws IOException {
+        writeVarint(out, symbolCount);
+        int previous = -1;
+        for (int i = 0; i < symbolCount; i++) {
+            writeVarint(out, symbols[i] - previous - 1);
+            previous = symbols[i];
+        }
+        for (int i = 0; i < symbolCount; i++)
+            out.writeBits(lengths[symbols[i]], LENGTH_BITS);
+        out.alignToByte();
+    }
+
+    /**
+     * Returns the number of bytes writeHeader produces.
+     *
+     * @return The header length in bytes
+     */
+    public int getHeaderLength() {
+        int bytes = varintLength(symbolCount);
+        int previous = -1;
+        for (int i = 0; i < symbolCount; i++) {
+            bytes += varintLength(symbols[i] - previous - 1);
+            previous = symbols[i];
+        }
+        return bytes + (symbolCount * LENGTH_BITS + 7) / 8;
+    }
+
+    /**
+     * Reads a header written by writeHeader and builds the codes and the decode tables. A header whose lengths
+     * do not describe a complete prefix code is rejected.
+     *
+     * @param in The bit input positioned at the header
+     * @return This code
+     */
+    public LargeHuffmanCode readHeader(BitInput in) throws IOException {
+        int count = readVarint(in);
+        if (count < 0 || count > alphabetSize)
+            throw new IOException("Invalid symbol count: " + count);
+        int symbol = -1;
+        for (int i = 0; i < count; i++) {
+            int gap = readVarint(in);
+            if (gap < 0 || gap >= alphabetSize - symbol - 1)
+                throw new IOException("Invalid symbol in the code header");
+            symbol += gap + 1;
+            symbols[i] = symbol;
+        }
+        Arrays.fill(lengths, (byte) 0);
+        long kraft = 0;
+        for (int i = 0; i < count; i++) {
+            int length = in.readBits(LENGTH_BITS);
+            if (length == 0 || length > MAX_CODE_LENGTH)
+                throw new IOException("Invalid code length: " + length);
+            lengths[symbols[i]] = (byte) length;
+            kraft += 1L << (MAX_CODE_LENGTH - length);
+        }
+        in.alignToByte();
+        // A single symbol has the code 0 of length 1 and leaves half the code space unused
+        if (kraft != (count == 1 ? 1L << (MAX_CODE_LENGTH - 1) : count == 0 ? 0 : 1L << MAX_CODE_LENGTH))
+            throw new IOException("The code lengths do not form a complete code");
+        assignCodes();
+        buildDecodeTable();
+        return this;
+    }
+
+    // Fills the root table and the second level tables from the canonical codes
+    private void buildDecodeTable() {
+        Arrays.fill(subBits, 0);
+        for (int i = 0; i < symbolCount; i++) {
+            int s = symbols[i];
+            int extra = lengths[s] - ROOT_BITS;
+            if (extra > 0) {
+                int prefix = codes[s] >>> extra;
+                subBits[prefix] = Math.max(subBits[prefix], extra);
+            }
+        }
+        int size = 1 << ROOT_BITS;
+        for (int prefix = 0; prefix < 1 << ROOT_BITS; prefix++) {
+            if (subBits[prefix] != 0)
+                size += 1 << subBits[prefix];
+        }
+        if (decodeTable.length < size)
+            decodeTable = new int[size];
+        int[] table = decodeTable;
+        Arrays.fill(table, 0, size, 0);
+
+        if (symbolCount == 1) {
+            // Every bit decodes to the only symbol, whatever its value
+            Arrays.fill(table, 0, 1 << ROOT_BITS, symbols[0] << 5 | 1);
+            return;
+        }
+        int offset = 1 << ROOT_BITS;
+        for (int prefix = 0; prefix < 1 << ROOT_BITS; prefix++) {
+            if (subBits[prefix] != 0) {
+                table[prefix] = Integer.MIN_VALUE | offset << 5 | subBits[prefix];
+                offset += 1 << subBits[prefix];
+            }
+        }
+        for (int i = 0; i < symbolCount; i++) {
+            int s = symbols[i];
+            int length = lengths[s];
+            int code = codes[s];
+            if (length <= ROOT_BITS) {
+                int shift = ROOT_BITS - length;
+                Arrays.fill(table, code << shift, (code + 1) << shift, s << 5 | length);
+            } else {
+                int extra = length - ROOT_BITS;
+                int root = table[code >>> extra];
+                int bits = root & 31;
+                int start = ((root & Integer.MAX_VALUE) >>> 5) + ((code & ((1 << extra) - 1)) << (bits - extra));
+                Arrays.fill(table, start, start + (1 << (bits - extra)), s << 5 | extra);
+            }
+        }
+    }
+
+    /**
+     * Decodes one symbol: one lookup for codes up to ROOT_BITS bits, two for longer ones.
+     *
+     * @param in The bit input positioned at a code
+     * @return The symbol
+     */
+    public int decodeSymbol(BitInput in) throws IOException {
+        int[] table = decodeTable;
+        int entry = table[in.peekBits(ROOT_BITS)];
+        if (entry < 0) {
+            in.skipBits(ROOT_BITS);
+            entry = table[((entry & Integer.MAX_VALUE) >>> 5) + in.peekBits(entry & 31)];
+        }
+        in.skipBits(entry & 31);
+        return entry >>> 5;
+    }
+
+    /**
+     * Returns the number of bits needed to encode freq with this code.
+     *
+     * @return The encoded length in bits
+     */
+    public long getEncodedLength() {
+        long bits = 0;
+        for (int i = 0; i < symbolCount; i++)
+            bits += freq[symbols[i]] * lengths[symbols[i]];
+        return bits;
+    }
+
+    public int getSymbolCount() {
+        return symbolCount;
+    }
+
+    public int getRescales() {
+        return rescales;
+    }
+
+    static void writeVarint(BitOutput out, int value) throws IOException {
+        while ((value & ~0x7F) != 0) {
+            out.writeByte(value & 0x7F | 0x80);
+            value >>>= 7;
+        }
+        out.writeByte(value);
+    }
+
+    static int readVarint(BitInput in) throws IOException {
+        int value = 0;
+        for (int shift = 0; shift < 32; shift += 7) {
+            int b = in.readBits(8);
+            value |= (b & 0x7F) << shift;
+            if ((b & 0x80) == 0)
+                return value;
+        }
+        throw new IOException("Invalid varint");
+    }
+
+    static int varintLength(int value) {
+        int bytes = 1;
+        while ((value & ~0x7F) != 0) {
+            value >>>= 7;
+            bytes++;
+        }
+        return bytes;
+    }
+}
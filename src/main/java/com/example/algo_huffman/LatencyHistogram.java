@@ -0,0 +1,76 @@
+package com.example.algo_huffman;
+
+import java.util.concurrent.atomic.AtomicLongArray;
+import java.util.concurrent.atomic.LongAccumulator;
+import java.util.concurrent.atomic.LongAdder;
+
+/**
+ * A lock free latency histogram with logarithmic buckets: bucket i counts the durations between 2^(i-1) and
+ * 2^i microseconds. Recording is a couple of atomic increments, so many threads can share one histogram.
+ * Percentiles are reported as the upper bound of the bucket holding them, at most a factor 2 above the truth.
+ */
+public class LatencyHistogram {
+    static final int BUCKETS = 40; // Up to 2^39 microseconds, about 6 days
+
+    private final AtomicLongArray buckets = new AtomicLongArray(BUCKETS); // Count of each bucket
+    private final LongAdder count = new LongAdder(); // Number of recorded durations
+    private final LongAdder totalMicros = new LongAdder(); // Sum of the recorded durations
+    private final LongAccumulator maxMicros = new LongAccumulator(Math::max, 0); // Longest recorded duration
+
+    /**
+     * Records one duration.
+     *
+     * @param nanos The duration in nanoseconds
+     */
+    public void record(long nanos) {
+        long micros = Math.max(0, nanos / 1000);
+        int bucket = Math.min(BUCKETS - 1, 64 - Long.numberOfLeadingZeros(micros));
+        buckets.incrementAndGet(bucket);
+        count.increment();
+        totalMicros.add(micros);
+        maxMicros.accumulate(micros);
+    }
+
+    /**
+     * Returns the upper bound of the bucket holding the given percentile.
+     *
+     * @param percentile A value between 0 and 100
+     * @return The latency in microseconds, 0 if nothing was recorded
+     */
+    public long getPercentile(double percentile) {
+        long total = count.sum();
+        if (total == 0)
+            return 0;
+        long rank = (long) Math.ceil(total * percentile / 100.0);
+        long seen = 0;
+        for (int i = 0; i < BUCKETS; i++) {
+            seen += buckets.get(i);
+            if (seen >= Math.max(1, rank))
+                return Math.min(1L << i, getMax());
+        }
+        return getMax();
+    }
+
+    public long getCount() {
+        return count.sum();
+    }
+
+    public long getMax() {
+        return maxMicros.get();
+    }
+
+    public long getMean() {
+        long total = count.sum();
+        return total == 0 ? 0 : totalMicros.sum() / total;
+    }
+
+    /**
+     * Returns the histogram summary as a JSON object.
+     *
+     * @return count, mean, p50, p90, p99 and max, in microseconds
+     */
+    public String toJson() {
+        return String.format("{\"count\": %d, \"meanMicros\": %d, \"p50Micros\": %d, \"p90Micros\": %d, \"p99Micros\": %d, \"maxMicros\": %d}",
+                getCount(), getMean(), getPercentile(50), getPercentile(90), getPercentile(99), getMax());
+    }
+}
@@ -0,0 +1,131 @@
+package com.example.algo_huffman;
+
+import java.io.IOException;
+import java.net.URI;
+import java.net.http.HttpClient;
+import java.net.http.HttpRequest;
+import java.net.http.HttpResponse;
+import java.util.Arrays;
+import java.util.Random;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.atomic.LongAdder;
+
+/**
+ * Load test for CompressionServer. Each worker is a virtual thread sending /compress then /decompress requests in
+ * a loop and checking that the round trip gives back its payload. At the end it prints the throughput, the
+ * latency percentiles of each endpoint and how many requests the server refused.
+ *
+ * Usage: LoadTestClient [--port n] [--concurrency n] [--seconds n] [--size bytes] [--local]
+ * With --local a server is started in the same JVM on a free port, so the test needs nothing else running.
+ */
+public class LoadTestClient {
+
+    public static void main(String[] args) throws Exception {
+        int port = CompressionServer.DEFAULT_PORT;
+        int concurrency = 16;
+        int seconds = 10;
+        int size = 256 * 1024;
+        boolean local = false;
+        for (int i = 0; i < args.length; i++) {
+            switch (args[i]) {
+                case "--port" -> port = Integer.parseInt(args[++i]);
+                case "--concurrency" -> concurrency = Integer.parseInt(args[++i]);
+                case "--seconds" -> seconds = Integer.parseInt(args[++i]);
+                case "--size" -> size = Integer.parseInt(args[++i]);
+                case "--local" -> local = true;
+                default -> throw new IllegalArgumentException("Unknown option: " + args[i]);
+            }
+        }
+
+        CompressionServer server = null;
+        if (local) {
+            server = new CompressionServer(0, CompressionServer.DEFAULT_MAX_CONCURRENT,
+                    CompressionServer.DEFAULT_QUEUE_TIMEOUT_MILLIS);
+            server.start();
+            port = server.getPort();
+        }
+        try {
+            run(port, concurrency, seconds, payload(size));
+        } finally {
+            if (server != null)
+                server.stop(0);
+        }
+    }
+
+    private static void run(int port, int concurrency, int seconds, byte[] payload) throws Exception {
+        URI compressUri = URI.create("http://localhost:" + port + "/compress");
+        URI decompressUri = URI.create("http://localhost:" + port + "/decompress");
+        LatencyHistogram compressLatency = new LatencyHistogram();
+        LatencyHistogram decompressLatency = new LatencyHistogram();
+        LongAdder rejected = new LongAdder();
+        LongAdder errors = new LongAdder();
+        LongAdder compressedBytes = new LongAdder();
+
+        long deadline = System.nanoTime() + seconds * 1_000_000_000L;
+        long start = System.nanoTime();
+        // The client must outlive the workers: closing an executor waits for its tasks, closing a client does not
+        try (HttpClient client = HttpClient.newBuilder().executor(Executors.newVirtualThreadPerTaskExecutor()).build();
+             ExecutorService workers = Executors.newVirtualThreadPerTaskExecutor()) {
+            for (int w = 0; w < concurrency; w++) {
+                workers.submit(() -> {
+                    while (System.nanoTime() < deadline) {
+                        try {
+                            long t0 = System.nanoTime();
+                            HttpResponse<byte[]> compressed = post(client, compressUri, payload);
+                            if (compressed.statusCode() == 503) {
+                                rejected.increment();
+                                continue;
+                            }
+                            long t1 = System.nanoTime();
+                            HttpResponse<byte[]> restored = post(client, decompressUri, compressed.body());
+                            if (restored.statusCode() == 503) {
+                                rejected.increment();
+                                continue;
+                            }
+                            long t2 = System.nanoTime();
+                            if (compressed.statusCode() != 200 || restored.statusCode() != 200
+                                    || !Arrays.equals(payload, restored.body())) {
+                                errors.increment();
+                                continue;
+                            }
+                            compressLatency.record(t1 - t0);
+                            decompressLatency.record(t2 - t1);
+                            compressedBytes.add(compressed.body().length);
+                        } catch (IOException e) {
+                            errors.increment();
+                        } catch (InterruptedException e) {
+                            Thread.currentThread().interrupt();
+                            return;
+                        }
+                    }
+                });
+            }
+        }
+        double elapsed = (System.nanoTime() - start) / 1e9;
+
+        long roundTrips = compressLatency.getCount();
+        System.out.printf("%d workers, %d byte payload, %.1f s%n", concurrency, payload.length, elapsed);
+        System.out.printf("round trips: %d (%.1f/s, %.1f MB/s raw each way)%n", roundTrips, roundTrips / elapsed,
+                roundTrips * (double) payload.length / elapsed / (1 << 20));
+        if (roundTrips > 0)
+            System.out.printf("ratio: %.3f%n", compressedBytes.sum() / (double) (roundTrips * payload.length));
+        System.out.printf("rejected: %d, errors: %d%n", rejected.sum(), errors.sum());
+        System.out.println("compress   " + compressLatency.toJson());
+        System.out.println("decompress " + decompressLatency.toJson());
+    }
+
+    private static HttpResponse<byte[]> post(HttpClient client, URI uri, byte[] body) throws IOException, InterruptedException {
+        HttpRequest request = HttpRequest.newBuilder(uri).POST(HttpRequest.BodyPublishers.ofByteArray(body)).build();
+        return client.send(request, HttpResponse.BodyHandlers.ofByteArray());
+    }
+
+    // Text-like payload with a skewed byte distribution, so that it actually compresses
+    private static byte[] payload(int size) {
+        Random random = new Random(42);
+        byte[] data = new byte[size];
+        for (int i = 0; i < size; i++)
+            data[i] = (byte) ('a' + Math.min(25, (int) Math.abs(random.nextGaussian() * 5)));
+        return data;
+    }
+}
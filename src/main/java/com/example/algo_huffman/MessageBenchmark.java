@@ -0,0 +1,117 @@
+package com.example.algo_huffman;
+
+import java.io.IOException;
+import java.lang.management.ManagementFactory;
+import java.nio.ByteBuffer;
+import java.nio.charset.StandardCharsets;
+import java.util.Arrays;
+import java.util.Random;
+
+/**
+ * Command line latency benchmark of MessageCodec on RPC-like payloads of 1 KB and 16 KB, with heap and direct
+ * buffers, next to the in-memory .huff path of HuffmanEncoder and HuffmanDecoder, which writes a tree in every
+ * message. Every call is timed on its own after a warm up, and the times are kept in a preallocated array, so
+ * the percentiles are exact and the measurement loop allocates nothing; the bytes allocated per call come from
+ * the per thread counter of com.sun.management.ThreadMXBean, as in AllocationBenchmark.
+ *
+ * Usage: MessageBenchmark [iterations]
+ */
+public class MessageBenchmark {
+    static final int[] PAYLOAD_SIZES = {1 << 10, 16 << 10}; // Payload sizes to measure
+
+    interface Operation {
+        void run() throws IOException;
+    }
+
+    public static void main(String[] args) throws IOException {
+        int iterations = args.length > 0 ? Integer.parseInt(args[0]) : 200_000;
+        MessageCodec codec = MessageCodec.train(message(64 << 10, 1));
+
+        System.out.printf("%-8s %-22s %8s %10s %10s %10s %12s %10s%n", "payload", "operation", "ratio", "p50 ns",
+                "p99 ns", "p99.9 ns", "ops/s", "bytes/op");
+        for (int size : PAYLOAD_SIZES) {
+            byte[] payload = message(size, 2);
+            for (boolean direct : new boolean[]{false, true}) {
+                String kind = direct ? "direct" : "heap";
+                ByteBuffer src = allocate(size, direct);
+                src.put(payload).flip();
+                ByteBuffer compressed = allocate(MessageCodec.maxCompressedLength(size), direct);
+                ByteBuffer restored = allocate(size, direct);
+                codec.compress(src.duplicate(), compressed);
+                compressed.flip();
+                double ratio = (double) compressed.remaining() / size;
+
+                measure(size, "message compress " + kind, ratio, iterations, () -> {
+                    src.rewind();
+                    compressed.clear();
+                    codec.compress(src, compressed);
+                });
+                compressed.flip();
+                measure(size, "message decompress " + kind, ratio, iterations, () -> {
+                    compressed.rewind();
+                    restored.clear();
+                    codec.decompress(compressed, restored);
+                });
+                restored.flip();
+                if (!restored.equals(ByteBuffer.wrap(payload)))
+                    throw new IOException("Round trip failed");
+            }
+
+            // The .huff path with a pooled context, for comparison
+            AllocationBenchmark.Sink huff = new AllocationBenchmark.Sink(2 * size + 1024);
+            AllocationBenchmark.Sink sink = new AllocationBenchmark.Sink(size);
+            CodecContext context = new CodecContext();
+            HuffmanEncoder.compress(payload, 0, size, huff, context);
+            double ratio = (double) huff.size() / size;
+            byte[] image = huff.toByteArray();
+            measure(size, ".huff compress", ratio, iterations, () -> {
+                huff.reset();
+                HuffmanEncoder.compress(payload, 0, size, huff, context);
+            });
+            measure(size, ".huff decompress", ratio, iterations, () -> {
+                sink.reset();
+                HuffmanDecoder.decompress(image, 0, image.length, sink, context);
+            });
+        }
+    }
+
+    static void measure(int size, String name, double ratio, int iterations, Operation operation) throws IOException {
+        for (int i = 0; i < iterations / 4; i++) // Warm up
+            operation.run();
+
+        long[] times = new long[iterations];
+        com.sun.management.ThreadMXBean threads = (com.sun.management.ThreadMXBean) ManagementFactory.getThreadMXBean();
+        long allocatedBefore = threads.getCurrentThreadAllocatedBytes();
+        long start = System.nanoTime();
+        for (int i = 0; i < iterations; i++) {
+            long t = System.nanoTime();
+            operation.run();
+            times[i] = System.nanoTime() - t;
+        }
+        long nanos = System.nanoTime() - start;
+        long allocated = threads.getCurrentThreadAllocatedBytes() - allocatedBefore;
+
+        Arrays.sort(times);
+        System.out.printf("%-8d %-22s %8.4f %10d %10d %10d %,12.0f %10d%n", size, name, ratio,
+                times[iterations / 2], times[(int) (iterations * 0.99)], times[(int) (iterations * 0.999)],
+                iterations / (nanos / 1e9), allocated / iterations);
+    }
+
+    static ByteBuffer allocate(int size, boolean direct) {
+        return direct ? ByteBuffer.allocateDirect(size) : ByteBuffer.allocate(size);
+    }
+
+    // JSON records like those of an RPC response
+    static byte[] message(int size, int seed) {
+        Random random = new Random(seed);
+        String[] names = {"alice", "bob", "carol", "dave", "erin", "frank"};
+        String[] states = {"ACTIVE", "PENDING", "SUSPENDED"};
+        StringBuilder json = new StringBuilder("{\"items\":[");
+        while (json.length() < size) {
+            json.append(String.format("{\"id\":%d,\"user\":\"%s\",\"state\":\"%s\",\"score\":%.3f,\"tags\":[\"t%d\"]},",
+                    random.nextInt(1_000_000), names[random.nextInt(names.length)],
+                    states[random.nextInt(states.length)], random.nextDouble() * 100, random.nextInt(50)));
+        }
+        return Arrays.copyOf(json.toString().getBytes(StandardCharsets.US_ASCII), size);
+    }
+}
@@ -0,0 +1,307 @@
+package com.example.algo_huffman;
+
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.ByteOrder;
+import java.util.Arrays;
+
+/**
+ * Compresses small messages, such as RPC payloads of a few hundred bytes to a few dozen KB, straight between
+ * buffers. A tree written in front of every message would cost as much as a small message saves, so a MessageCodec
+ * holds one code, trained once on representative messages and agreed on by both sides, and a message is only
+ * a varint followed by the codes of its bytes:
+ *
+ * <pre>
+ * varint  rawLength << 1 | 1   coded message, padded with zero bits to a whole byte
+ * varint  rawLength << 1       stored message, when coding would not make it shorter
+ * </pre>
+ *
+ * The tables are built in the constructor and never change, so one instance can be shared by any number of
+ * threads. Codes are at most MAX_CODE_LENGTH bits, which keeps the decode table to a single lookup, and every
+ * byte value has a code even if the training data never contained it. compress and decompress keep their state
+ * in local variables and allocate nothing. The compressed bytes do not depend on the byte order of the buffers.
+ */
+public class MessageCodec {
+    public static final int MAX_CODE_LENGTH = 12; // Longest code, and bits of the decode table
+    public static final int MAX_MESSAGE_SIZE = Integer.MAX_VALUE >> 1; // Largest message, so the varint fits an int
+
+    private final int[] codes = new int[256]; // Code of each byte value, right aligned
+    private final byte[] lengths = new byte[256]; // Code length of each byte value
+    private final short[] decodeTable = new short[1 << MAX_CODE_LENGTH]; // Prefix -> length << 8 | byte
+
+    /**
+     * Creates a codec whose code fits the given byte frequencies.
+     *
+     * @param freq Frequency of each byte value, from representative messages
+     */
+    public MessageCodec(long[] freq) {
+        long[] counts = new long[256];
+        for (int i = 0; i < 256; i++)
+            counts[i] = freq[i] + 1; // Every byte value must stay encodable
+        HuffmanTree tree = HuffmanTree.build(counts);
+        while (maxLength(tree) > MAX_CODE_LENGTH) {
+            for (int i = 0; i < 256; i++)
+                counts[i] = (counts[i] + 1) >>> 1;
+            tree = HuffmanTree.build(counts);
+        }
+        for (int i = 0; i < 256; i++) {
+            codes[i] = tree.codes[i];
+            lengths[i] = tree.lengths[i];
+            int shift = MAX_CODE_LENGTH - lengths[i];
+            Arrays.fill(decodeTable, codes[i] << shift, (codes[i] + 1) << shift, (short) (lengths[i] << 8 | i));
+        }
+    }
+
+    /**
+     * Creates a codec trained on sample messages.
+     *
+     * @param samples Representative messages
+     * @return The codec
+     */
+    public static MessageCodec train(byte[]... samples) {
+        long[] freq = new long[256];
+        for (byte[] sample : samples)
+            HuffmanEncoder.countFrequencies(sample, 0, sample.length, freq);
+        return new MessageCodec(freq);
+    }
+
+    private static int maxLength(HuffmanTree tree) {
+        int max = 0;
+        for (byte length : tree.lengths)
+            max = Math.max(max, length);
+        return max;
+    }
+
+    /**
+     * Returns the largest number of bytes compress can write for a message of the given length: the varint and
+     * the message stored as is.
+     *
+     * @param length The message length
+     * @return The worst-case compressed length
+     */
+    public static int maxCompressedLength(int length) {
+        return varintLength(length << 1) + length;
+    }
+
+    /**
+     * Compresses the remaining bytes of src into dst, from its position. The position of src moves to its limit
+     * and the position of dst past the compressed message.
+     *
+     * @param src The message
+     * @param dst The buffer receiving the compressed message, with at least maxCompressedLength bytes remaining
+     * @return The number of bytes written
+     */
+    public int compress(ByteBuffer src, ByteBuffer dst) {
+        int length = src.remaining();
+        checkSpace(length, dst);
+        int start = dst.position();
+        writeVarint(dst, length << 1 | 1);
+        int limit = dst.position() + length; // Coding past this point would not save anything
+
+        int[] codes = this.codes;
+        byte[] lengths = this.lengths;
+        long bitBuffer = 0;
+        int bitCount = 0;
+        boolean stored = false;
+        boolean bigEndian = dst.order() == ByteOrder.BIG_ENDIAN; // The codes are written high byte first
+        for (int i = src.position(); i < src.limit(); i++) {
+            int b = src.get(i) & 0xFF;
+            bitBuffer = bitBuffer << lengths[b] | codes[b];
+            bitCount += lengths[b];
+            if (bitCount >= 32) {
+                if (dst.position() + 4 > limit) {
+                    stored = true;
+                    break;
+                }
+                bitCount -= 32;
+                int bits = (int) (bitBuffer >>> bitCount);
+                dst.putInt(bigEndian ? bits : Integer.reverseBytes(bits));
+            }
+        }
+        if (!stored)
+            stored = !flushBits(dst, bitBuffer, bitCount, limit);
+        if (stored) {
+            dst.position(start);
+            writeVarint(dst, length << 1);
+            dst.put(dst.position(), src, src.position(), length);
+            dst.position(dst.position() + length);
+        }
+        src.position(src.limit());
+        return dst.position() - start;
+    }
+
+    /**
+     * Compresses a byte range into dst, from its position, which moves past the compressed message.
+     *
+     * @param src    The array holding the message
+     * @param offset First byte of the message
+     * @param length Number of bytes of the message
+     * @param dst    The buffer receiving the compressed message, with at least maxCompressedLength bytes remaining
+     * @return The number of bytes written
+     */
+    public int compress(byte[] src, int offset, int length, ByteBuffer dst) {
+        checkSpace(length, dst);
+        int start = dst.position();
+        writeVarint(dst, length << 1 | 1);
+        int limit = dst.position() + length;
+
+        int[] codes = this.codes;
+        byte[] lengths = this.lengths;
+        long bitBuffer = 0;
+        int bitCount = 0;
+        boolean stored = false;
+        boolean bigEndian = dst.order() == ByteOrder.BIG_ENDIAN; // The codes are written high byte first
+        for (int i = offset; i < offset + length; i++) {
+            int b = src[i] & 0xFF;
+            bitBuffer = bitBuffer << lengths[b] | codes[b];
+            bitCount += lengths[b];
+            if (bitCount >= 32) {
+                if (dst.position() + 4 > limit) {
+                    stored = true;
+                    break;
+                }
+                bitCount -= 32;
+                int bits = (int) (bitBuffer >>> bitCount);
+                dst.putInt(bigEndian ? bits : Integer.reverseBytes(bits));
+            }
+        }
+        if (!stored)
+            stored = !flushBits(dst, bitBuffer, bitCount, limit);
+        if (stored) {
+            dst.position(start);
+            writeVarint(dst, length << 1);
+            dst.put(src, offset, length);
+        }
+        return dst.position() - start;
+    }
+
+    // Writes the last bits padded to a whole byte, unless that would pass limit
+    private static boolean flushBits(ByteBuffer dst, long bitBuffer, int bitCount, int limit) {
+        if (dst.position() + (bitCount + 7) / 8 >= limit)
+            return false;
+        while (bitCount > 0) {
+            int shift = bitCount - 8;
+            dst.put((byte) (shift >= 0 ? bitBuffer >>> shift : bitBuffer << -shift));
+            bitCount -= 8;
+        }
+        return true;
+    }
+
+    private static void checkSpace(int length, ByteBuffer dst) {
+        if (length > MAX_MESSAGE_SIZE)
+            throw new IllegalArgumentException("Message too large: " + length);
+        if (dst.remaining() < maxCompressedLength(length))
+            throw new IllegalArgumentException("Destination too small: " + dst.remaining() + " bytes for "
+                    + maxCompressedLength(length));
+    }
+
+    /**
+     * Returns the length a compressed message decodes to, without moving the position of src.
+     *
+     * @param src The buffer positioned at a compressed message
+     * @return The decompressed length
+     */
+    public static int getDecompressedLength(ByteBuffer src) throws IOException {
+        int position = src.position();
+        int length = readVarint(src) >>> 1;
+        src.position(position);
+        return length;
+    }
+
+    /**
+     * Decompresses the message at the position of src into dst. The position of src moves past the message, so
+     * messages written one after the other can be read in turn, and the position of dst past the decoded bytes.
+     *
+     * @param src The buffer positioned at a compressed message
+     * @param dst The buffer receiving the message, with at least getDecompressedLength bytes remaining
+     * @return The message length
+     */
+    public int decompress(ByteBuffer src, ByteBuffer dst) throws IOException {
+        int header = readVarint(src);
+        int length = header >>> 1;
+        if (length > dst.remaining())
+            throw new IOException("Destination too small: " + dst.remaining() + " bytes for " + length);
+        if ((header & 1) == 0) {
+            if (length > src.remaining())
+                throw new IOException("Truncated message");
+            dst.put(dst.position(), src, src.position(), length);
+            dst.position(dst.position() + length);
+            src.position(src.position() + length);
+            return length;
+        }
+
+        short[] table = decodeTable;
+        int mask = (1 << MAX_CODE_LENGTH) - 1;
+        boolean bigEndian = src.order() == ByteOrder.BIG_ENDIAN;
+        long bitBuffer = 0;
+        int bitCount = 0;
+        int position = dst.position();
+        int end = position + length;
+        while (position < end) {
+            if (bitCount < MAX_CODE_LENGTH) {
+                if (src.remaining() >= 4) {
+                    int bits = src.getInt();
+                    bitBuffer = bitBuffer << 32 | ((bigEndian ? bits : Integer.reverseBytes(bits)) & 0xFFFFFFFFL);
+                    bitCount += 32;
+                } else {
+                    while (bitCount <= 56 && src.hasRemaining()) {
+                        bitBuffer = bitBuffer << 8 | (src.get() & 0xFF);
+                        bitCount += 8;
+                    }
+                }
+            }
+            if (bitCount >= MAX_CODE_LENGTH) {
+                // Every code fits in the bits available: decode without checks until they run low
+                do {
+                    int entry = table[(int) (bitBuffer >>> (bitCount - MAX_CODE_LENGTH)) & mask];
+                    dst.put(position++, (byte) entry);
+                    bitCount -= entry >>> 8;
+                } while (bitCount >= MAX_CODE_LENGTH && position < end);
+            } else {
+                // End of the input: the last codes may be shorter than the table bits
+                int entry = table[(int) (bitBuffer << (MAX_CODE_LENGTH - bitCount)) & mask];
+                if (entry >>> 8 > bitCount)
+                    throw new IOException("Truncated message");
+                dst.put(position++, (byte) entry);
+                bitCount -= entry >>> 8;
+            }
+        }
+        dst.position(position);
+        // Give back the whole bytes read ahead; the bits left in the current byte are padding
+        src.position(src.position() - bitCount / 8);
+        return length;
+    }
+
+    /**
+     * Returns the number of bits the code gives to a byte value, for instance to estimate the gain on a message.
+     *
+     * @param b The byte value
+     * @return The code length
+     */
+    public int getCodeLength(int b) {
+        return lengths[b & 0xFF];
+    }
+
+    static void writeVarint(ByteBuffer dst, int value) {
+        while ((value & ~0x7F) != 0) {
+            dst.put((byte) (value & 0x7F | 0x80));
+            value >>>= 7;
+        }
+        dst.put((byte) value);
+    }
+
+    static int readVarint(ByteBuffer src) throws IOException {
+        int value = 0;
+        for (int shift = 0; shift < 32 && src.hasRemaining(); shift += 7) {
+            int b = src.get();
+            value |= (b & 0x7F) << shift;
+            if ((b & 0x80) == 0)
+                return value;
+        }
+        throw new IOException("Invalid message header");
+    }
+
+    static int varintLength(int value) {
+        return LargeHuffmanCode.varintLength(value);
+    }
+}
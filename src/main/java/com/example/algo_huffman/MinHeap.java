@@ -58,6 +58,13 @@ public class MinHeap {
         return min;
     }
 
+    // Function to remove every element so the heap can be reused
+    public void clear() {
+        for (int i = 1; i <= size; i++)
+            heap[i] = null;
+        size = 0;
+    }
+
     // Getter to obtain the current size of the heap
     public int getSize() {
         return size;
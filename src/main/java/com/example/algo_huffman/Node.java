@@ -2,18 +2,18 @@ package com.example.algo_huffman;
 
 public class Node {
     private Byte charCode;
-    private int freq;
+    private long freq;
     private Node left, right;
 
     private String huffCode;
     private byte huffLength;
 
 
-    public Node(int freq) {
+    public Node(long freq) {
         this.freq = freq;
     }
 
-    public Node(byte charCode, int freq) {
+    public Node(byte charCode, long freq) {
         this.charCode = charCode;
         this.freq = freq;
     }
@@ -26,11 +26,11 @@ public class Node {
         this.charCode = charCode;
     }
 
-    public int getFreq() {
+    public long getFreq() {
         return freq;
     }
 
-    public void setFreq(int freq) {
+    public void setFreq(long freq) {
         this.freq = freq;
     }
 
@@ -0,0 +1,112 @@
+package com.example.algo_huffman;
+
+import java.io.ByteArrayOutputStream;
+import java.io.File;
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.Arrays;
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.Random;
+
+/**
+ * Command line benchmark of the byte pair mode against the byte mode, in memory, with the measurement loop of
+ * CodecComparison. Besides the generated corpora of CodecComparison it uses a corpus of words drawn from a Zipf
+ * distribution, whose letters depend on each other the way real text does, and the given files. Every corpus is
+ * also cut to smaller sizes, to show where the larger header of the pair mode stops paying for itself.
+ *
+ * Usage: PairBenchmark [--seconds s] [file...]
+ */
+public class PairBenchmark {
+    static final int[] SIZES = {16 << 10, 256 << 10, 8 << 20}; // Prefix lengths of every corpus
+    static final String[] WORDS = ("the of and to in is was that for it with as his on be at by had are but from "
+            + "not have this which or one you were her all she there would their we him been has when who will more "
+            + "no if out so said what up its about into than them can only other new some could time these two may "
+            + "then do first any my now such like our over man me even most made after also did many before must "
+            + "through back years where much your way well down should because each just those people how too little "
+            + "state good very make world still own see men work long get here between both life being under never "
+            + "day same another know while last might us great old year off come since against go came right used")
+            .split(" ");
+
+    public static void main(String[] args) throws IOException {
+        double seconds = 1.0;
+        Map<String, byte[]> corpora = new LinkedHashMap<>();
+        for (int i = 0; i < args.length; i++) {
+            if (args[i].equals("--seconds"))
+                seconds = Double.parseDouble(args[++i]);
+            else
+                corpora.put(new File(args[i]).getName(), Files.readAllBytes(Path.of(args[i])));
+        }
+        if (corpora.isEmpty()) {
+            corpora.put("words", words(8 << 20));
+            corpora.putAll(CodecComparison.generatedCorpora(8 << 20));
+        }
+
+        Map<String, CodecComparison.Codec> codecs = new LinkedHashMap<>();
+        codecs.put("byte", CodecComparison.huffman());
+        codecs.put("pair", pairs());
+
+        System.out.printf("%-16s %10s %-6s %12s %8s %12s %12s%n", "corpus", "size", "mode", "compressed", "ratio",
+                "comp MB/s", "decomp MB/s");
+        for (Map.Entry<String, byte[]> corpus : corpora.entrySet()) {
+            int previous = -1;
+            for (int size : SIZES) {
+                int length = Math.min(size, corpus.getValue().length);
+                if (length == previous)
+                    continue; // Corpus shorter than size, already measured whole
+                previous = length;
+                byte[] data = Arrays.copyOf(corpus.getValue(), length);
+                for (Map.Entry<String, CodecComparison.Codec> codec : codecs.entrySet()) {
+                    CodecComparison.Result result = CodecComparison.measure(corpus.getKey(), data, codec.getKey(),
+                            codec.getValue(), seconds);
+                    System.out.printf("%-16s %10d %-6s %12d %8.4f %12.1f %12.1f%n", result.corpus, result.size,
+                            result.codec, result.compressedSize, (double) result.compressedSize / result.size,
+                            result.compressMBps, result.decompressMBps);
+                }
+            }
+        }
+    }
+
+    static CodecComparison.Codec pairs() {
+        return new CodecComparison.Codec() {
+            public byte[] compress(byte[] data) throws IOException {
+                ByteArrayOutputStream out = new ByteArrayOutputStream(data.length / 2 + 1024);
+                PairCodec.compress(data, 0, data.length, out);
+                return out.toByteArray();
+            }
+
+            public byte[] decompress(byte[] compressed, int originalLength) throws IOException {
+                ByteArrayOutputStream out = new ByteArrayOutputStream(originalLength);
+                PairCodec.decompress(compressed, 0, compressed.length, out);
+                return out.toByteArray();
+            }
+        };
+    }
+
+    // Words separated by spaces and line breaks, the word of rank r drawn with a probability proportional to 1 / r
+    static byte[] words(int size) {
+        Random random = new Random(7);
+        double[] cumulative = new double[WORDS.length];
+        double total = 0;
+        for (int r = 0; r < WORDS.length; r++)
+            cumulative[r] = total += 1.0 / (r + 1);
+        StringBuilder text = new StringBuilder(size + 16);
+        int column = 0;
+        while (text.length() < size) {
+            double draw = random.nextDouble() * total;
+            int r = 0;
+            while (cumulative[r] < draw)
+                r++;
+            text.append(WORDS[r]);
+            column += WORDS[r].length() + 1;
+            if (column > 72) {
+                text.append('\n');
+                column = 0;
+            } else
+                text.append(' ');
+        }
+        return text.substring(0, size).getBytes(StandardCharsets.US_ASCII);
+    }
+}
@@ -0,0 +1,129 @@
+package com.example.algo_huffman;
+
+import java.io.IOException;
+import java.io.OutputStream;
+import java.util.Arrays;
+
+/**
+ * The byte pair mode: the input is coded as a sequence of 16-bit symbols, each made of two consecutive bytes, with
+ * a LargeHuffmanCode over the 65536 possible pairs. A code over pairs captures the dependency between a byte and
+ * the next one, such as the letters of common words, which a code over single bytes cannot, so text gets a
+ * better ratio; the price is a larger header, a few bytes per distinct pair, which only pays off on inputs of a
+ * few hundred KB and more. The layout is
+ *
+ * <pre>
+ * int   magic       "HUF2"
+ * int   rawLength   bytes the data decodes to
+ * byte  last        the last byte, only if rawLength is odd
+ * code header       see LargeHuffmanCode.writeHeader
+ * data              one code per pair, padded with zero bits to a whole byte
+ * </pre>
+ */
+public class PairCodec {
+    public static final int MAGIC = 0x48554632; // "HUF2"
+    static final int ALPHABET_SIZE = 1 << 16; // Number of byte pairs
+
+    /**
+     * Compresses a byte range held in memory in the byte pair mode.
+     *
+     * @param src     The bytes to compress
+     * @param offset  First byte to compress
+     * @param length  Number of bytes to compress
+     * @param out     The stream receiving the compressed bytes
+     * @param context A context used only by this call
+     */
+    public static void compress(byte[] src, int offset, int length, OutputStream out, CodecContext context) throws IOException {
+        LargeHuffmanCode code = context.pairCode();
+        long[] freq = code.freq;
+        Arrays.fill(freq, 0);
+        int end = offset + (length & ~1);
+        for (int i = offset; i < end; i += 2)
+            freq[(src[i] & 0xFF) << 8 | (src[i + 1] & 0xFF)]++;
+        code.build();
+
+        BitOutput bitOut = context.bitOutput.reset(out);
+        bitOut.writeInt(MAGIC);
+        bitOut.writeInt(length);
+        if ((length & 1) != 0)
+            bitOut.writeByte(src[offset + length - 1]);
+        code.writeHeader(bitOut);
+        int[] codes = code.codes;
+        byte[] lengths = code.lengths;
+        for (int i = offset; i < end; i += 2) {
+            int pair = (src[i] & 0xFF) << 8 | (src[i + 1] & 0xFF);
+            bitOut.writeBits(codes[pair], lengths[pair]);
+        }
+        bitOut.alignToByte();
+        bitOut.flush();
+    }
+
+    /**
+     * Same as the other compress, with a context taken from the shared pool.
+     */
+    public static void compress(byte[] src, int offset, int length, OutputStream out) throws IOException {
+        CodecContext context = CodecContextPool.SHARED.acquire();
+        try {
+            compress(src, offset, length, out, context);
+        } finally {
+            CodecContextPool.SHARED.release(context);
+        }
+    }
+
+    /**
+     * Decompresses a byte pair image held in memory.
+     *
+     * @param src     The array holding the compressed bytes
+     * @param offset  First byte of the image
+     * @param length  Number of bytes of the image
+     * @param out     The stream receiving the decoded bytes
+     * @param context A context used only by this call
+     * @return The number of decoded bytes
+     */
+    public static long decompress(byte[] src, int offset, int length, OutputStream out, CodecContext context) throws IOException {
+        if (length < 8)
+            throw new IOException("Input too short for a byte pair header");
+        BitInput in = context.bitInput.reset(src, offset, length);
+        if (in.readBits(32) != MAGIC)
+            throw new IOException("Not a byte pair stream");
+        int rawLength = in.readBits(32);
+        if (rawLength < 0)
+            throw new IOException("Invalid length: " + rawLength);
+        int last = (rawLength & 1) != 0 ? in.readBits(8) : -1;
+        LargeHuffmanCode code = context.pairCode().readHeader(in);
+        if (code.getSymbolCount() == 0 && rawLength > 1)
+            throw new IOException("The input does not contain a code");
+
+        // Every code takes at least one bit, so the data cannot hold more pairs than this
+        if (rawLength / 2 > (long) length * 8)
+            throw new IOException("Invalid length: " + rawLength);
+
+        byte[] buffer = context.buffer;
+        int position = 0;
+        for (int i = rawLength / 2; i > 0; i--) {
+            int pair = code.decodeSymbol(in);
+            buffer[position] = (byte) (pair >>> 8);
+            buffer[position + 1] = (byte) pair;
+            position += 2;
+            if (position == buffer.length) {
+                out.write(buffer, 0, position);
+                position = 0;
+            }
+        }
+        if (last >= 0)
+            buffer[position++] = (byte) last;
+        out.write(buffer, 0, position);
+        return rawLength;
+    }
+
+    /**
+     * Same as the other decompress, with a context taken from the shared pool.
+     */
+    public static long decompress(byte[] src, int offset, int length, OutputStream out) throws IOException {
+        CodecContext context = CodecContextPool.SHARED.acquire();
+        try {
+            return decompress(src, offset, length, out, context);
+        } finally {
+            CodecContextPool.SHARED.release(context);
+        }
+    }
+}
@@ -0,0 +1,283 @@
+package com.example.algo_huffman;
+
+import java.io.File;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.io.OutputStream;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+
+/**
+ * Decodes a legacy .huff file on several cores. The data of a .huff file is a single bit stream with no index,
+ * so the code boundaries are only known by decoding from the start. Huffman codes are self-synchronising, however:
+ * a decoder started at an arbitrary bit decodes garbage for a few codes and then, almost always, falls on a real
+ * code boundary, from where it follows the true decoding path.
+ *
+ * The data is cut into segments of SEGMENT_SIZE bytes. Every segment is decoded speculatively from its first bit,
+ * in parallel, recording where its codes start within the first SYNC_BITS bits, up to the first code starting
+ * after the end of the segment, its exit. Then the segments are checked in order: the true entry of a segment is
+ * the exit of the previous one (0 for the first). From there the segment is decoded again, only until the true
+ * path reaches a bit where the speculative decoder also started a code: both paths are the same from that point,
+ * so the few codes decoded again replace the speculative codes before it. If the paths do not meet within
+ * SYNC_BITS, which is rare, the whole segment is decoded again from its true entry. Either way the exit of the
+ * segment is then the true entry of the next, so the result is always exact. Segments are processed a window of
+ * one per thread at a time, which bounds the memory to a few segments per thread whatever the size of the file.
+ *
+ * A segment is read with a margin of the longest code of the tree, so that its last code is complete. Files
+ * written before the code length cap can have trees deeper than HuffmanTree.MAX_CODE_LENGTH, so the margin is
+ * taken from the tree that was read, not from the cap.
+ *
+ * Usage: ParallelDecoder input.huff output [--threads n]
+ */
+public class ParallelDecoder {
+    static final int SEGMENT_SIZE = 1 << 20; // Compressed bytes of a segment
+    static final int SYNC_BITS = 8192; // Bits at the start of a segment whose code starts are recorded
+
+    // The state of one segment, reused from window to window
+    static class Segment {
+        long start; // First bit of the segment, from the start of the data
+        long end; // Bit after the segment
+        byte[] input = new byte[0]; // Compressed bytes from byte start / 8, with a margin for the last code
+        int inputLength;
+        byte[] output = new byte[0]; // Decoded bytes
+        int count; // Number of decoded bytes
+        int[] starts = new int[SYNC_BITS]; // Code starts within the first SYNC_BITS bits, relative to start
+        int startCount;
+        byte[] prefix = new byte[SYNC_BITS]; // Bytes of the true path before it meets the speculative one
+        int prefixCount;
+        long exit; // Bit after the last code starting in the segment
+        final BitInput bits = new BitInput(null, 1);
+    }
+
+    private final int threads; // Segments decoded at once
+    private long fallbacks; // Segments decoded twice because the speculative decoder did not synchronise
+    private long segmentCount;
+
+    /**
+     * Creates a decoder using the given number of threads.
+     *
+     * @param threads Number of threads, at least 1
+     */
+    public ParallelDecoder(int threads) {
+        this.threads = threads;
+    }
+
+    /**
+     * Decodes a .huff file into outFile.
+     *
+     * @param file    The .huff file
+     * @param outFile The file to create
+     * @return The number of decoded bytes
+     */
+    public long decode(File file, File outFile) throws IOException {
+        HuffmanDecoder decoder = new HuffmanDecoder(file);
+        decoder.readHeader();
+        HuffmanTree tree = decoder.getTree();
+        int maxCodeLength = tree.getMaxCodeLength();
+        long dataOffset = decoder.headerBytes;
+        long dataBits = decoder.dataBits;
+        long dataEnd = file.length() - 1; // The padding count is not data
+        long segmentBits = SEGMENT_SIZE * 8L;
+        long segments = (dataBits + segmentBits - 1) / segmentBits;
+
+        Segment[] window = new Segment[threads];
+        for (int i = 0; i < threads; i++)
+            window[i] = new Segment();
+        ExecutorService executor = Executors.newFixedThreadPool(threads);
+        long total = 0;
+        try (FileChannel channel = FileChannel.open(file.toPath());
+             OutputStream out = new FileOutputStream(outFile)) {
+            long entry = 0; // True start of the next segment
+            for (long first = 0; first < segments; first += threads) {
+                int n = (int) Math.min(threads, segments - first);
+                List<Future<?>> tasks = new ArrayList<>();
+                for (int i = 0; i < n; i++) {
+                    Segment segment = window[i];
+                    segment.start = (first + i) * segmentBits;
+                    segment.end = Math.min(dataBits, segment.start + segmentBits);
+                    tasks.add(executor.submit(() -> {
+                        load(segment, channel, dataOffset, dataEnd, maxCodeLength);
+                        decode(segment, tree, segment.start, true);
+                        return null;
+                    }));
+                }
+                for (Future<?> task : tasks)
+                    get(task);
+
+                for (int i = 0; i < n; i++) {
+                    Segment segment = window[i];
+                    int skip = synchronize(segment, tree, entry);
+                    if (skip < 0) {
+                        fallbacks++;
+                        decode(segment, tree, entry, false);
+                        skip = 0;
+                    }
+                    out.write(segment.prefix, 0, segment.prefixCount);
+                    out.write(segment.output, skip, segment.count - skip);
+                    total += segment.prefixCount + segment.count - skip;
+                    entry = segment.exit;
+                }
+                segmentCount += n;
+            }
+        } finally {
+            executor.shutdown();
+        }
+        long originalLength = decoder.getOriginalLength();
+        if (originalLength >= 0 && total != originalLength)
+            throw new IOException("Corrupt file: " + total + " bytes decoded, the header gives " + originalLength);
+        return total;
+    }
+
+    // Reads the bytes of the segment, plus enough for a code of maxCodeLength bits starting on its last bit
+    private static void load(Segment segment, FileChannel channel, long dataOffset, long dataEnd, int maxCodeLength)
+            throws IOException {
+        long from = dataOffset + segment.start / 8;
+        long to = Math.min(dataEnd, dataOffset + (segment.end + maxCodeLength + 7) / 8 + 1);
+        int length = (int) (to - from);
+        if (segment.input.length < length)
+            segment.input = new byte[length];
+        ByteBuffer buffer = ByteBuffer.wrap(segment.input, 0, length);
+        while (buffer.hasRemaining()) {
+            if (channel.read(buffer, from + buffer.position()) < 0)
+                throw new IOException("Truncated .huff file");
+        }
+        segment.inputLength = length;
+    }
+
+    /**
+     * Decodes the codes starting between from and the end of the segment.
+     *
+     * @param from   The bit to start at, from the start of the data, less than the longest code of the tree
+     *               after start, since it is the exit of the previous segment
+     * @param record Whether to record the code starts of the first SYNC_BITS bits
+     */
+    static void decode(Segment segment, HuffmanTree tree, long from, boolean record) throws IOException {
+        BitInput in = seek(segment, from);
+        int[] decodeTable = tree.decodeTable;
+        Node[] decodeNodes = tree.decodeNodes;
+        byte[] output = segment.output;
+        int count = 0;
+        long bit = from;
+        segment.startCount = 0;
+        segment.prefixCount = 0;
+        while (bit < segment.end) {
+            if (record && bit - segment.start < SYNC_BITS)
+                segment.starts[segment.startCount++] = (int) (bit - segment.start);
+            int code = next(in, decodeTable, decodeNodes);
+            bit += code >>> 8;
+            if (count == output.length)
+                output = segment.output = Arrays.copyOf(output, Math.max(1 << 16, 2 * output.length));
+            output[count++] = (byte) code;
+        }
+        segment.count = count;
+        segment.exit = bit;
+    }
+
+    /**
+     * Decodes the true path from entry into the prefix of the segment until it reaches a code start of the
+     * speculative path.
+     *
+     * @return The number of speculative codes replaced by the prefix, or -1 if the paths do not meet within
+     * SYNC_BITS and the segment must be decoded again
+     */
+    static int synchronize(Segment segment, HuffmanTree tree, long entry) throws IOException {
+        segment.prefixCount = 0;
+        if (entry < segment.start || entry - segment.start >= SYNC_BITS)
+            return -1;
+        BitInput in = seek(segment, entry);
+        int[] starts = segment.starts;
+        int index = 0;
+        long bit = entry;
+        while (bit - segment.start < SYNC_BITS && bit < segment.end) {
+            int offset = (int) (bit - segment.start);
+            while (index < segment.startCount && starts[index] < offset)
+                index++;
+            if (index == segment.startCount)
+                break;
+            if (starts[index] == offset)
+                return index;
+            int code = next(in, tree.decodeTable, tree.decodeNodes);
+            segment.prefix[segment.prefixCount++] = (byte) code;
+            bit += code >>> 8;
+        }
+        segment.prefixCount = 0;
+        return -1;
+    }
+
+    // Points the bit input of the segment at the given bit of the data
+    private static BitInput seek(Segment segment, long bit) throws IOException {
+        BitInput in = segment.bits.reset(segment.input, 0, segment.inputLength);
+        long position = segment.start / 8 * 8; // Bit of the first input byte
+        while (position < bit) {
+            int n = (int) Math.min(32, bit - position);
+            in.readBits(n);
+            position += n;
+        }
+        return in;
+    }
+
+    // Decodes one code and returns its length << 8 | byte
+    private static int next(BitInput in, int[] decodeTable, Node[] decodeNodes) throws IOException {
+        int prefix = in.peekBits(HuffmanTree.TABLE_BITS);
+        int entry = decodeTable[prefix];
+        if (entry >= 0) {
+            in.skipBits(entry >>> 8);
+            return entry;
+        }
+        // Code longer than the table: walk the tree from the node reached after TABLE_BITS bits
+        in.skipBits(HuffmanTree.TABLE_BITS);
+        int length = HuffmanTree.TABLE_BITS;
+        Node curr = decodeNodes[prefix];
+        while (curr.getLeft() != null) {
+            curr = in.readBit() == 0 ? curr.getLeft() : curr.getRight();
+            length++;
+        }
+        return length << 8 | (curr.getCharCode() & 0xFF);
+    }
+
+    private static void get(Future<?> future) throws IOException {
+        try {
+            future.get();
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            throw new IOException("Interrupted", e);
+        } catch (ExecutionException e) {
+            if (e.getCause() instanceof IOException cause)
+                throw cause;
+            throw new IOException(e.getCause());
+        }
+    }
+
+    /**
+     * Returns the number of segments that had to be decoded again from their true entry.
+     */
+    public long getFallbacks() {
+        return fallbacks;
+    }
+
+    public long getSegmentCount() {
+        return segmentCount;
+    }
+
+    public static void main(String[] args) throws IOException {
+        if (args.length < 2) {
+            System.err.println("Usage: ParallelDecoder input.huff output [--threads n]");
+            System.exit(2);
+        }
+        int threads = args.length > 3 && args[2].equals("--threads") ? Integer.parseInt(args[3])
+                : Runtime.getRuntime().availableProcessors();
+        ParallelDecoder decoder = new ParallelDecoder(threads);
+        long start = System.nanoTime();
+        long size = decoder.decode(new File(args[0]), new File(args[1]));
+        double seconds = (System.nanoTime() - start) / 1e9;
+        System.out.printf("%d bytes in %.2f s (%.1f MB/s), %d threads, %d segments, %d decoded twice%n", size,
+                seconds, size / seconds / (1 << 20), threads, decoder.getSegmentCount(), decoder.getFallbacks());
+    }
+}
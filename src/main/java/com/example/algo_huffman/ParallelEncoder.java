@@ -0,0 +1,275 @@
+package com.example.algo_huffman;
+
+import java.io.ByteArrayOutputStream;
+import java.io.File;
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.file.StandardOpenOption;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+
+/**
+ * Writes a legacy .huff file on several cores, byte for byte the same as the sequential HuffmanEncoder.writeTo,
+ * so readers of the current layout are not affected. The input is cut into segments of SEGMENT_SIZE bytes.
+ *
+ * A first pass counts the frequencies of the segments in parallel and builds the tree. The second pass loads a
+ * window of one segment per thread and, in parallel, counts the exact number of bits each segment encodes to.
+ * A prefix sum of these lengths gives the bit of the data where each segment starts, and every thread then
+ * encodes its segment shifted to that bit and writes the bytes it alone fills straight to their place in the
+ * file. The bytes shared by two segments, at most one per boundary, are merged with an OR and written by the
+ * main thread, which also writes the header and the trailer.
+ *
+ * Usage: ParallelEncoder input output.huff [--threads n]
+ */
+public class ParallelEncoder {
+    static final int SEGMENT_SIZE = 1 << 20; // Input bytes of a segment
+
+    // The state of one segment, reused from window to window
+    static class Segment {
+        long start; // First input byte of the segment
+        byte[] input = new byte[SEGMENT_SIZE];
+        int length; // Number of input bytes
+        long[] freq = new long[256]; // Frequencies of the first pass
+        long bit; // First bit of the segment, from the start of the data
+        long bits; // Number of bits the segment encodes to
+        byte[] output = new byte[0]; // Encoded bytes, from byte bit / 8
+        int outputLength;
+    }
+
+    private final int threads; // Segments encoded at once
+    private long sharedIndex; // Data byte shared by the segments of a boundary, not yet written, or -1
+    private int sharedValue; // Bits of that byte merged so far
+
+    /**
+     * Creates an encoder using the given number of threads.
+     *
+     * @param threads Number of threads, at least 1
+     */
+    public ParallelEncoder(int threads) {
+        this.threads = threads;
+    }
+
+    /**
+     * Compresses a file into outFile.
+     *
+     * @param file    The file to compress, not empty
+     * @param outFile The .huff file to create
+     * @return The size of the .huff file
+     */
+    public long compress(File file, File outFile) throws IOException {
+        HuffmanEncoder encoder = new HuffmanEncoder(file);
+        long size = encoder.getSizeBefore();
+        if (size == 0)
+            throw new IOException("Cannot compress an empty file");
+        long segments = (size + SEGMENT_SIZE - 1) / SEGMENT_SIZE;
+
+        Segment[] window = new Segment[threads];
+        for (int i = 0; i < threads; i++)
+            window[i] = new Segment();
+        ExecutorService executor = Executors.newFixedThreadPool(threads);
+        try (FileChannel in = FileChannel.open(file.toPath());
+             FileChannel out = FileChannel.open(outFile.toPath(), StandardOpenOption.CREATE,
+                     StandardOpenOption.WRITE, StandardOpenOption.TRUNCATE_EXISTING)) {
+            // First pass: frequencies
+            long[] freq = encoder.freq;
+            for (long first = 0; first < segments; first += threads) {
+                int n = startWindow(window, first, segments, size);
+                List<Future<?>> tasks = new ArrayList<>();
+                for (int i = 0; i < n; i++) {
+                    Segment segment = window[i];
+                    tasks.add(executor.submit(() -> {
+                        load(segment, in);
+                        Arrays.fill(segment.freq, 0);
+                        HuffmanEncoder.countFrequencies(segment.input, 0, segment.length, segment.freq);
+                        return null;
+                    }));
+                }
+                for (Future<?> task : tasks)
+                    get(task);
+                for (int i = 0; i < n; i++) {
+                    for (int b = 0; b < 256; b++)
+                        freq[b] += window[i].freq[b];
+                }
+            }
+            HuffmanTree tree = encoder.buildTree();
+
+            ByteArrayOutputStream header = new ByteArrayOutputStream();
+            BitOutput bitOut = new BitOutput(header, 256);
+            HuffmanEncoder.writeHeader(bitOut, encoder.getExtString(), tree);
+            bitOut.flush();
+            write(out, header.toByteArray(), 0, header.size(), 0);
+            long dataOffset = header.size();
+
+            // Second pass: bit lengths, offsets, then the bits themselves
+            long bit = 0; // First bit of the next segment
+            sharedIndex = -1;
+            for (long first = 0; first < segments; first += threads) {
+                int n = startWindow(window, first, segments, size);
+                List<Future<?>> tasks = new ArrayList<>();
+                for (int i = 0; i < n; i++) {
+                    Segment segment = window[i];
+                    tasks.add(executor.submit(() -> {
+                        load(segment, in);
+                        segment.bits = countBits(segment, tree);
+                        return null;
+                    }));
+                }
+                for (Future<?> task : tasks)
+                    get(task);
+                for (int i = 0; i < n; i++) {
+                    window[i].bit = bit;
+                    bit += window[i].bits;
+                }
+
+                tasks.clear();
+                for (int i = 0; i < n; i++) {
+                    Segment segment = window[i];
+                    tasks.add(executor.submit(() -> {
+                        encode(segment, tree);
+                        int from = (segment.bit & 7) != 0 ? 1 : 0;
+                        int to = segment.outputLength - (((segment.bit + segment.bits) & 7) != 0 ? 1 : 0);
+                        if (to > from)
+                            write(out, segment.output, from, to - from, dataOffset + segment.bit / 8 + from);
+                        return null;
+                    }));
+                }
+                for (Future<?> task : tasks)
+                    get(task);
+
+                // Merge the partial bytes at the ends of the segments, in order
+                for (int i = 0; i < n; i++) {
+                    Segment segment = window[i];
+                    boolean headShared = (segment.bit & 7) != 0;
+                    boolean tailShared = ((segment.bit + segment.bits) & 7) != 0;
+                    if (headShared)
+                        merge(out, dataOffset, segment.bit / 8, segment.output[0]);
+                    if (tailShared && (segment.outputLength > 1 || !headShared))
+                        merge(out, dataOffset, segment.bit / 8 + segment.outputLength - 1,
+                                segment.output[segment.outputLength - 1]);
+                }
+            }
+            if (sharedIndex >= 0)
+                write(out, new byte[]{(byte) sharedValue}, 0, 1, dataOffset + sharedIndex);
+
+            // Trailer: as HuffmanEncoder.writeTrailer, the last data byte is already padded with zeros
+            long end = dataOffset + (bit + 7) / 8;
+            int padding = (int) ((8 - (bit & 7)) & 7);
+            byte[] trailer = padding != 0 ? new byte[]{(byte) padding} : new byte[2];
+            write(out, trailer, 0, trailer.length, end);
+            return end + trailer.length;
+        } finally {
+            executor.shutdown();
+        }
+    }
+
+    // Sets the input range of the segments of the window starting at segment first, and returns how many there are
+    private int startWindow(Segment[] window, long first, long segments, long size) {
+        int n = (int) Math.min(threads, segments - first);
+        for (int i = 0; i < n; i++) {
+            window[i].start = (first + i) * SEGMENT_SIZE;
+            window[i].length = (int) Math.min(SEGMENT_SIZE, size - window[i].start);
+        }
+        return n;
+    }
+
+    // Adds the bits of a segment to a shared data byte, writing the previous shared byte once it is complete
+    private void merge(FileChannel out, long dataOffset, long index, byte value) throws IOException {
+        if (index == sharedIndex) {
+            sharedValue |= value & 0xFF;
+            return;
+        }
+        if (sharedIndex >= 0)
+            write(out, new byte[]{(byte) sharedValue}, 0, 1, dataOffset + sharedIndex);
+        sharedIndex = index;
+        sharedValue = value & 0xFF;
+    }
+
+    private static void load(Segment segment, FileChannel channel) throws IOException {
+        ByteBuffer buffer = ByteBuffer.wrap(segment.input, 0, segment.length);
+        while (buffer.hasRemaining()) {
+            if (channel.read(buffer, segment.start + buffer.position()) < 0)
+                throw new IOException("File shrank while compressing");
+        }
+    }
+
+    private static void write(FileChannel channel, byte[] bytes, int offset, int length, long position) throws IOException {
+        ByteBuffer buffer = ByteBuffer.wrap(bytes, offset, length);
+        while (buffer.hasRemaining())
+            channel.write(buffer, position + buffer.position() - offset);
+    }
+
+    // Returns the exact number of bits the segment encodes to
+    static long countBits(Segment segment, HuffmanTree tree) {
+        long[] counts = segment.freq;
+        Arrays.fill(counts, 0);
+        HuffmanEncoder.countFrequencies(segment.input, 0, segment.length, counts);
+        long bits = 0;
+        for (int b = 0; b < 256; b++)
+            bits += counts[b] * tree.lengths[b];
+        return bits;
+    }
+
+    /**
+     * Encodes the segment into its output, the first code starting at bit segment.bit % 8 of the first byte. The
+     * bits before it and after the last code are zero, so the partial bytes can be merged with an OR.
+     */
+    static void encode(Segment segment, HuffmanTree tree) {
+        int capacity = (int) ((segment.bits + 7) / 8 + 1);
+        if (segment.output.length < capacity)
+            segment.output = new byte[capacity];
+        int[] codes = tree.codes;
+        byte[] lengths = tree.lengths;
+        byte[] input = segment.input;
+        byte[] output = segment.output;
+        long bitBuffer = 0;
+        int bitCount = (int) (segment.bit & 7); // Leading zero bits
+        int position = 0;
+        for (int i = 0; i < segment.length; i++) {
+            int b = input[i] & 0xFF;
+            bitBuffer = (bitBuffer << lengths[b]) | (codes[b] & 0xFFFFFFFFL);
+            bitCount += lengths[b];
+            while (bitCount >= 8) {
+                bitCount -= 8;
+                output[position++] = (byte) (bitBuffer >>> bitCount);
+            }
+        }
+        if (bitCount > 0)
+            output[position++] = (byte) (bitBuffer << (8 - bitCount));
+        segment.outputLength = position;
+    }
+
+    private static void get(Future<?> future) throws IOException {
+        try {
+            future.get();
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            throw new IOException("Interrupted", e);
+        } catch (ExecutionException e) {
+            if (e.getCause() instanceof IOException cause)
+                throw cause;
+            throw new IOException(e.getCause());
+        }
+    }
+
+    public static void main(String[] args) throws IOException {
+        if (args.length < 2) {
+            System.err.println("Usage: ParallelEncoder input output.huff [--threads n]");
+            System.exit(2);
+        }
+        int threads = args.length > 3 && args[2].equals("--threads") ? Integer.parseInt(args[3])
+                : Runtime.getRuntime().availableProcessors();
+        ParallelEncoder encoder = new ParallelEncoder(threads);
+        long start = System.nanoTime();
+        File file = new File(args[0]);
+        long size = encoder.compress(file, new File(args[1]));
+        double seconds = (System.nanoTime() - start) / 1e9;
+        System.out.printf("%d -> %d bytes in %.2f s (%.1f MB/s), %d threads%n", file.length(), size, seconds,
+                file.length() / seconds / (1 << 20), threads);
+    }
+}
@@ -0,0 +1,296 @@
+package com.example.algo_huffman;
+
+import java.io.File;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.InterruptedIOException;
+import java.io.OutputStream;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.file.StandardOpenOption;
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+
+/**
+ * Runs a compression or a decompression as three stages on their own threads: a reader filling chunks from the
+ * input file, the Huffman encoder or decoder, and a writer emptying chunks to the output file. The stages pass a
+ * fixed set of large reusable chunks through bounded queues, so the disk keeps working while the codec runs and
+ * the total time approaches the slower of the two instead of their sum.
+ */
+public class Pipeline {
+    static final int CHUNK_SIZE = 1 << 20; // Size of one chunk
+    static final int CHUNK_COUNT = 4; // Chunks in each ring: one being filled, one being emptied, two waiting
+    public static final long MIN_SIZE = 8L << 20; // Files smaller than this are not worth the extra threads
+
+    // A reusable block of bytes moving between two stages
+    static class Chunk {
+        final byte[] data;
+        int length;
+
+        Chunk(int size) {
+            this.data = new byte[size];
+        }
+    }
+
+    static final Chunk END = new Chunk(0); // Marks the end of the data in a ring
+
+    // Two bounded queues forming a ring: the producer takes free chunks and puts them full, the consumer does the opposite
+    static class Ring {
+        final ArrayBlockingQueue<Chunk> free = new ArrayBlockingQueue<>(CHUNK_COUNT);
+        final ArrayBlockingQueue<Chunk> full = new ArrayBlockingQueue<>(CHUNK_COUNT + 1); // Room for END
+
+        Ring() {
+            for (int i = 0; i < CHUNK_COUNT; i++)
+                free.add(new Chunk(CHUNK_SIZE));
+        }
+
+        Chunk takeFree() throws InterruptedIOException {
+            try {
+                return free.take();
+            } catch (InterruptedException e) {
+                throw interrupted(e);
+            }
+        }
+
+        Chunk takeFull() throws InterruptedIOException {
+            try {
+                return full.take();
+            } catch (InterruptedException e) {
+                throw interrupted(e);
+            }
+        }
+
+        void putFull(Chunk chunk) throws InterruptedIOException {
+            try {
+                full.put(chunk);
+            } catch (InterruptedException e) {
+                throw interrupted(e);
+            }
+        }
+
+        void recycle(Chunk chunk) {
+            chunk.length = 0;
+            free.add(chunk); // Never blocks, a ring only holds its own chunks
+        }
+    }
+
+    // Output stream filling the chunks of a ring; close sends the last chunk and END
+    static class RingOutputStream extends OutputStream {
+        private final Ring ring;
+        private Chunk current;
+
+        RingOutputStream(Ring ring) {
+            this.ring = ring;
+        }
+
+        @Override
+        public void write(int b) throws IOException {
+            write(new byte[]{(byte) b}, 0, 1);
+        }
+
+        @Override
+        public void write(byte[] b, int off, int len) throws IOException {
+            while (len > 0) {
+                if (current == null)
+                    current = ring.takeFree();
+                int count = Math.min(len, current.data.length - current.length);
+                System.arraycopy(b, off, current.data, current.length, count);
+                current.length += count;
+                off += count;
+                len -= count;
+                if (current.length == current.data.length) {
+                    ring.putFull(current);
+                    current = null;
+                }
+            }
+        }
+
+        @Override
+        public void close() throws IOException {
+            if (current != null && current.length > 0)
+                ring.putFull(current);
+            current = null;
+            ring.putFull(END);
+        }
+    }
+
+    // Input stream emptying the chunks of a ring
+    static class RingInputStream extends InputStream {
+        private final Ring ring;
+        private Chunk current;
+        private int position;
+        private boolean ended;
+
+        RingInputStream(Ring ring) {
+            this.ring = ring;
+        }
+
+        @Override
+        public int read() throws IOException {
+            byte[] b = new byte[1];
+            return read(b, 0, 1) == -1 ? -1 : b[0] & 0xFF;
+        }
+
+        @Override
+        public int read(byte[] b, int off, int len) throws IOException {
+            while (!ended && (current == null || position == current.length)) {
+                if (current != null)
+                    ring.recycle(current);
+                current = ring.takeFull();
+                position = 0;
+                if (current == END) {
+                    current = null;
+                    ended = true;
+                }
+            }
+            if (ended)
+                return -1;
+            int count = Math.min(len, current.length - position);
+            System.arraycopy(current.data, position, b, off, count);
+            position += count;
+            return count;
+        }
+
+        // Drops what is left up to END, so the reader stage can finish
+        void skipToEnd() throws IOException {
+            while (!ended) {
+                if (current != null)
+                    ring.recycle(current);
+                current = ring.takeFull();
+                if (current == END) {
+                    current = null;
+                    ended = true;
+                }
+            }
+        }
+    }
+
+    /**
+     * Compresses the file of the encoder into outFile. The frequencies must have been counted and the tree built.
+     *
+     * @param encoder The encoder holding the input file and the tree
+     * @param outFile The .huff file to create
+     */
+    public static void compress(HuffmanEncoder encoder, File outFile) throws IOException {
+        Ring input = new Ring();
+        Ring output = new Ring();
+        ExecutorService stages = Executors.newFixedThreadPool(2);
+        try (FileChannel in = FileChannel.open(encoder.file.toPath(), StandardOpenOption.READ);
+             FileChannel out = FileChannel.open(outFile.toPath(), StandardOpenOption.CREATE,
+                     StandardOpenOption.WRITE, StandardOpenOption.TRUNCATE_EXISTING)) {
+            Future<?> reader = stages.submit(() -> readStage(in, 0, input));
+            Future<?> writer = stages.submit(() -> writeStage(out, output));
+
+            try (RingOutputStream sink = new RingOutputStream(output)) {
+                BitOutput bitOut = encoder.context.bitOutput.reset(sink);
+                HuffmanEncoder.writeHeader(bitOut, encoder.extString, encoder.tree, encoder.getRecordedLength());
+                Chunk chunk;
+                while ((chunk = input.takeFull()) != END) {
+                    HuffmanEncoder.encode(chunk.data, 0, chunk.length, encoder.tree, bitOut);
+                    input.recycle(chunk);
+                }
+                HuffmanEncoder.writeTrailer(bitOut);
+                bitOut.flush();
+            }
+            await(reader);
+            await(writer);
+        } finally {
+            stages.shutdownNow();
+        }
+    }
+
+    /**
+     * Decompresses the file of the decoder into outFile. The header must have been read.
+     *
+     * @param decoder The decoder holding the input file and the tree
+     * @param outFile The file to create
+     */
+    public static void decompress(HuffmanDecoder decoder, File outFile) throws IOException {
+        Ring input = new Ring();
+        Ring output = new Ring();
+        ExecutorService stages = Executors.newFixedThreadPool(2);
+        try (FileChannel in = FileChannel.open(decoder.file.toPath(), StandardOpenOption.READ);
+             FileChannel out = FileChannel.open(outFile.toPath(), StandardOpenOption.CREATE,
+                     StandardOpenOption.WRITE, StandardOpenOption.TRUNCATE_EXISTING)) {
+            Future<?> reader = stages.submit(() -> readStage(in, decoder.headerBytes, input));
+            Future<?> writer = stages.submit(() -> writeStage(out, output));
+
+            try (RingOutputStream sink = new RingOutputStream(output)) {
+                RingInputStream source = new RingInputStream(input);
+                BitInput bitIn = decoder.context.bitInput.reset(source);
+                HuffmanDecoder.decode(bitIn, decoder.tree, decoder.dataBits, sink, decoder.context.buffer,
+                        decoder.budget);
+                source.skipToEnd();
+            }
+            await(reader);
+            await(writer);
+        } finally {
+            stages.shutdownNow();
+        }
+    }
+
+    // Reads the channel from position to its end into chunks, then sends END even if reading failed
+    private static Void readStage(FileChannel channel, long position, Ring ring) throws IOException {
+        try {
+            channel.position(position);
+            while (true) {
+                Chunk chunk = ring.takeFree();
+                ByteBuffer buffer = ByteBuffer.wrap(chunk.data);
+                while (buffer.hasRemaining() && channel.read(buffer) != -1) ;
+                chunk.length = buffer.position();
+                if (chunk.length == 0) {
+                    ring.recycle(chunk);
+                    return null;
+                }
+                ring.putFull(chunk);
+                if (buffer.hasRemaining())
+                    return null; // End of file reached
+            }
+        } finally {
+            ring.putFull(END);
+        }
+    }
+
+    // Writes chunks until END. After a failure it keeps recycling chunks so the producer is never blocked
+    private static Void writeStage(FileChannel channel, Ring ring) throws IOException {
+        IOException failure = null;
+        Chunk chunk;
+        while ((chunk = ring.takeFull()) != END) {
+            if (failure == null) {
+                try {
+                    ByteBuffer buffer = ByteBuffer.wrap(chunk.data, 0, chunk.length);
+                    while (buffer.hasRemaining())
+                        channel.write(buffer);
+                } catch (IOException e) {
+                    failure = e;
+                }
+            }
+            ring.recycle(chunk);
+        }
+        if (failure != null)
+            throw failure;
+        return null;
+    }
+
+    private static void await(Future<?> stage) throws IOException {
+        try {
+            stage.get();
+        } catch (InterruptedException e) {
+            throw interrupted(e);
+        } catch (ExecutionException e) {
+            if (e.getCause() instanceof IOException)
+                throw (IOException) e.getCause();
+            throw new IOException(e.getCause());
+        }
+    }
+
+    private static InterruptedIOException interrupted(InterruptedException e) {
+        Thread.currentThread().interrupt();
+        InterruptedIOException exception = new InterruptedIOException("Pipeline stage interrupted");
+        exception.initCause(e);
+        return exception;
+    }
+}
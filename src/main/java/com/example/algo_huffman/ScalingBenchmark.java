@@ -0,0 +1,152 @@
+package com.example.algo_huffman;
+
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.lang.management.GarbageCollectorMXBean;
+import java.lang.management.ManagementFactory;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Random;
+import java.util.SplittableRandom;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.ThreadFactory;
+import java.util.concurrent.atomic.LongAdder;
+
+/**
+ * Command line macro benchmark running many compress + decompress jobs at once, to show what single thread
+ * benchmarks hide: contention on shared state, memory bandwidth and garbage collection. Each job takes a payload
+ * from a mix of sizes, compresses it and decompresses it with a pooled CodecContext and checks the length.
+ *
+ * It runs with 1, 2, 4... up to the number of processors platform threads, then with virtual threads, as many as
+ * the processors and four times more. For each run it reports the aggregate throughput, the p50 and p99 job
+ * latency, the GC count and time, and the scaling efficiency: throughput divided by the thread count times the
+ * single thread throughput.
+ *
+ * Usage: ScalingBenchmark [seconds per run]
+ */
+public class ScalingBenchmark {
+    static final int[] SIZES = {4 << 10, 64 << 10, 1 << 20, 8 << 20}; // Payload sizes of the mix
+    static final int[] WEIGHTS = {60, 30, 9, 1}; // Share of the jobs of each size, in percent
+
+    public static void main(String[] args) throws Exception {
+        double seconds = args.length > 0 ? Double.parseDouble(args[0]) : 5;
+        int cores = Runtime.getRuntime().availableProcessors();
+        byte[][] payloads = new byte[SIZES.length][];
+        for (int i = 0; i < SIZES.length; i++)
+            payloads[i] = payload(SIZES[i], i);
+
+        System.out.printf("%d processors, %.0f s per run, sizes 4K/64K/1M/8M at 60/30/9/1%%%n", cores, seconds);
+        System.out.printf("%-10s %7s %10s %8s %10s %10s %6s %8s %10s%n", "threads", "count", "MB/s", "jobs/s",
+                "p50 us", "p99 us", "GCs", "GC ms", "efficiency");
+
+        worker(payloads, -1, System.nanoTime() + 1_000_000_000L, new LatencyHistogram(), new LongAdder()); // Warm up
+        double single = run("platform", 1, Executors.defaultThreadFactory(), payloads, seconds, 0);
+        List<Integer> counts = new ArrayList<>();
+        for (int n = 2; n < cores; n *= 2)
+            counts.add(n);
+        if (cores > 1)
+            counts.add(cores);
+        for (int n : counts)
+            run("platform", n, Executors.defaultThreadFactory(), payloads, seconds, single);
+        for (int n : new int[]{cores, 4 * cores})
+            run("virtual", n, Thread.ofVirtual().factory(), payloads, seconds, single);
+    }
+
+    /**
+     * Runs jobs on the given number of threads for the given time and prints a line of results.
+     *
+     * @param single The single thread throughput the efficiency is relative to, 0 if this is that run
+     * @return The aggregate throughput in MB/s
+     */
+    static double run(String kind, int threads, ThreadFactory factory, byte[][] payloads, double seconds,
+                      double single) throws Exception {
+        LatencyHistogram latency = new LatencyHistogram();
+        LongAdder bytes = new LongAdder();
+        long gcCount = gcCount();
+        long gcTime = gcTime();
+        long deadline = System.nanoTime() + (long) (seconds * 1e9);
+        long start = System.nanoTime();
+
+        ExecutorService executor = Executors.newThreadPerTaskExecutor(factory);
+        try {
+            List<Future<?>> workers = new ArrayList<>();
+            for (int t = 0; t < threads; t++) {
+                long seed = t;
+                workers.add(executor.submit(() -> {
+                    worker(payloads, seed, deadline, latency, bytes);
+                    return null;
+                }));
+            }
+            for (Future<?> worker : workers)
+                worker.get();
+        } finally {
+            executor.shutdown();
+        }
+
+        double elapsed = (System.nanoTime() - start) / 1e9;
+        double throughput = bytes.sum() / 1048576.0 / elapsed;
+        double efficiency = single == 0 ? 1 : throughput / (threads * single);
+        System.out.printf("%-10s %7d %10.1f %8.1f %10d %10d %6d %8d %9.0f%%%n", kind, threads, throughput,
+                latency.getCount() / elapsed, latency.getPercentile(50), latency.getPercentile(99),
+                gcCount() - gcCount, gcTime() - gcTime, 100 * efficiency);
+        return throughput;
+    }
+
+    // Runs jobs until the deadline, each on a payload drawn from the mix
+    static void worker(byte[][] payloads, long seed, long deadline, LatencyHistogram latency, LongAdder bytes) throws IOException {
+        SplittableRandom random = new SplittableRandom(seed);
+        ByteArrayOutputStream compressed = new ByteArrayOutputStream();
+        ByteArrayOutputStream restored = new ByteArrayOutputStream();
+        while (System.nanoTime() < deadline) {
+            byte[] payload = payloads[pick(random.nextInt(100))];
+            long jobStart = System.nanoTime();
+            compressed.reset();
+            restored.reset();
+            CodecContext context = CodecContextPool.SHARED.acquire();
+            try {
+                HuffmanEncoder.compress(payload, 0, payload.length, compressed, context);
+                HuffmanDecoder.decompress(compressed.toByteArray(), 0, compressed.size(), restored, context);
+            } finally {
+                CodecContextPool.SHARED.release(context);
+            }
+            if (restored.size() != payload.length)
+                throw new IOException("Round trip failed");
+            latency.record(System.nanoTime() - jobStart);
+            bytes.add(payload.length);
+        }
+    }
+
+    // Index of the size for a draw between 0 and 99
+    static int pick(int draw) {
+        for (int i = 0; i < WEIGHTS.length; i++) {
+            draw -= WEIGHTS[i];
+            if (draw < 0)
+                return i;
+        }
+        return WEIGHTS.length - 1;
+    }
+
+    static byte[] payload(int size, int seed) {
+        Random random = new Random(seed);
+        byte[] data = new byte[size];
+        for (int i = 0; i < size; i++)
+            data[i] = (byte) ('a' + Math.min(25, (int) Math.abs(random.nextGaussian() * 5)));
+        return data;
+    }
+
+    static long gcCount() {
+        long total = 0;
+        for (GarbageCollectorMXBean gc : ManagementFactory.getGarbageCollectorMXBeans())
+            total += Math.max(0, gc.getCollectionCount());
+        return total;
+    }
+
+    static long gcTime() {
+        long total = 0;
+        for (GarbageCollectorMXBean gc : ManagementFactory.getGarbageCollectorMXBeans())
+            total += Math.max(0, gc.getCollectionTime());
+        return total;
+    }
+}
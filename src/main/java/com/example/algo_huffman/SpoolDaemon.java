@@ -0,0 +1,352 @@
+package com.example.algo_huffman;
+
+import java.io.Closeable;
+import java.io.IOException;
+import java.nio.file.ClosedWatchServiceException;
+import java.nio.file.DirectoryStream;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardCopyOption;
+import java.nio.file.StandardWatchEventKinds;
+import java.nio.file.WatchEvent;
+import java.nio.file.WatchKey;
+import java.nio.file.WatchService;
+import java.util.Iterator;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.Semaphore;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.LongAdder;
+
+/**
+ * Watches a spool directory and compresses the files dropped into it. A WatchService only tells that a file was
+ * created or written to, not that the writer is done, so a file is taken once its size and modification time have
+ * not changed for quietMillis. Each file is compressed to a temporary name in the output directory and renamed to
+ * name.huff when complete, so whatever consumes the output never sees a partial file.
+ *
+ * The work is bounded at every step: a fixed number of worker threads, at most queueCapacity files waiting for
+ * them, and files beyond that simply stay in the spool directory until a slot is free. A burst of thousands of
+ * files costs one small map entry each, never a thread or a buffer. A failed file is retried with exponential
+ * backoff, maxAttempts times in all. An empty file is left alone, since the .huff format cannot hold one; it is
+ * taken again if it is written to later.
+ *
+ * Usage: SpoolDaemon spool-dir [--out dir] [--threads n] [--queue n] [--quiet-ms n] [--attempts n] [--delete]
+ */
+public class SpoolDaemon implements Closeable {
+    static final long SCAN_INTERVAL_MILLIS = 250; // Period of the stability checks
+    static final long RETRY_DELAY_MILLIS = 1000; // Delay before the first retry, doubled for each next one
+    static final long STATS_INTERVAL_MILLIS = 10_000; // Period of the statistics line
+
+    // A file seen in the spool directory and not compressed yet
+    static class Pending {
+        long size = -1; // Size at the last check
+        long modified = -1; // Modification time at the last check
+        long stableSince; // Time of the last change
+        int attempts; // Failed compressions so far
+        long notBefore; // No attempt before this time, for retries
+    }
+
+    private final Path spool; // Directory watched
+    private final Path output; // Directory receiving the .huff files
+    private final long quietMillis; // Time without change after which a file is complete
+    private final int maxAttempts; // Attempts before a file is given up
+    private final boolean deleteSource; // Delete a file once compressed
+
+    private final Map<Path, Pending> pending = new ConcurrentHashMap<>(); // Files waiting to be complete or for a slot
+    private final Semaphore slots; // Worker threads plus queue places
+    private final ExecutorService workers; // Fixed pool of compression threads
+    private final ScheduledExecutorService scheduler; // Stability checks and statistics
+    private final WatchService watcher;
+    private final Thread watchThread;
+    private final AtomicBoolean checkQueued = new AtomicBoolean(); // A check was asked for and has not run yet
+
+    private final AtomicInteger active = new AtomicInteger(); // Files handed to the workers, running or queued
+    private final LongAdder completed = new LongAdder();
+    private final LongAdder failed = new LongAdder(); // Files given up after maxAttempts
+    private final LongAdder skipped = new LongAdder(); // Empty files left in the spool directory
+    private final LongAdder retries = new LongAdder();
+    private final LongAdder bytesIn = new LongAdder();
+    private final LongAdder bytesOut = new LongAdder();
+    private final long startNanos = System.nanoTime();
+
+    /**
+     * Creates a daemon. It does nothing before start is called.
+     *
+     * @param spool         The directory to watch
+     * @param output        The directory receiving the .huff files, may be the spool directory
+     * @param threads       Number of compression threads
+     * @param queueCapacity Number of complete files allowed to wait for a thread
+     * @param quietMillis   Time without change after which a file is considered complete
+     * @param maxAttempts   Attempts before a failing file is given up
+     * @param deleteSource  Whether to delete a file once it is compressed
+     */
+    public SpoolDaemon(Path spool, Path output, int threads, int queueCapacity, long quietMillis, int maxAttempts,
+                       boolean deleteSource) throws IOException {
+        this.spool = spool.toAbsolutePath().normalize();
+        this.output = output.toAbsolutePath().normalize();
+        this.quietMillis = quietMillis;
+        this.maxAttempts = maxAttempts;
+        this.deleteSource = deleteSource;
+        this.slots = new Semaphore(threads + queueCapacity);
+        this.workers = Executors.newFixedThreadPool(threads, Thread.ofPlatform().name("spool-worker-", 0).factory());
+        this.scheduler = Executors.newSingleThreadScheduledExecutor(Thread.ofPlatform().name("spool-scheduler").factory());
+        Files.createDirectories(this.output);
+        this.watcher = spool.getFileSystem().newWatchService();
+        this.spool.register(watcher, StandardWatchEventKinds.ENTRY_CREATE, StandardWatchEventKinds.ENTRY_MODIFY);
+        this.watchThread = Thread.ofPlatform().name("spool-watcher").unstarted(this::watch);
+    }
+
+    /**
+     * Takes the files already in the spool directory and starts watching it.
+     */
+    public void start() throws IOException {
+        rescan();
+        watchThread.start();
+        scheduler.scheduleWithFixedDelay(this::check, SCAN_INTERVAL_MILLIS, SCAN_INTERVAL_MILLIS, TimeUnit.MILLISECONDS);
+    }
+
+    /**
+     * Starts printing a statistics line to standard output every STATS_INTERVAL_MILLIS.
+     */
+    public void printStats() {
+        scheduler.scheduleAtFixedRate(() -> System.out.println(getStats()), STATS_INTERVAL_MILLIS,
+                STATS_INTERVAL_MILLIS, TimeUnit.MILLISECONDS);
+    }
+
+    // Turns watch events into pending files
+    private void watch() {
+        try {
+            while (true) {
+                WatchKey key = watcher.take();
+                for (WatchEvent<?> event : key.pollEvents()) {
+                    if (event.kind() == StandardWatchEventKinds.OVERFLOW)
+                        rescan();
+                    else
+                        offer(spool.resolve((Path) event.context()));
+                }
+                if (!key.reset())
+                    return; // The spool directory is gone
+            }
+        } catch (InterruptedException | ClosedWatchServiceException e) {
+            // Closed
+        } catch (IOException e) {
+            System.err.println("spool: rescan failed: " + e.getMessage());
+        }
+    }
+
+    // Adds every file of the spool directory, for the start and after lost events
+    private void rescan() throws IOException {
+        try (DirectoryStream<Path> files = Files.newDirectoryStream(spool)) {
+            for (Path file : files)
+                offer(file);
+        }
+    }
+
+    private void offer(Path file) {
+        String name = file.getFileName().toString();
+        if (name.startsWith(".") || name.endsWith(".huff") || name.endsWith(".tmp") || name.endsWith(".part"))
+            return;
+        pending.computeIfAbsent(file, f -> new Pending());
+    }
+
+    // Hands the files that stopped changing to the workers, as long as there are free slots
+    private void check() {
+        long now = System.currentTimeMillis();
+        Iterator<Map.Entry<Path, Pending>> entries = pending.entrySet().iterator();
+        while (entries.hasNext()) {
+            Map.Entry<Path, Pending> entry = entries.next();
+            Path file = entry.getKey();
+            Pending state = entry.getValue();
+            if (state.notBefore > now)
+                continue;
+            try {
+                if (!Files.isRegularFile(file) || isDone(file)) {
+                    entries.remove();
+                    continue;
+                }
+                long size = Files.size(file);
+                long modified = Files.getLastModifiedTime(file).toMillis();
+                if (size != state.size || modified != state.modified) {
+                    state.size = size;
+                    state.modified = modified;
+                    state.stableSince = now;
+                    continue;
+                }
+            } catch (IOException e) {
+                continue; // Probably being renamed or deleted, look again next time
+            }
+            if (now - state.stableSince < quietMillis)
+                continue;
+            if (state.size == 0) {
+                entries.remove(); // A later write offers it again
+                skipped.increment();
+                continue;
+            }
+            if (!slots.tryAcquire())
+                return; // Backpressure: the rest waits in the directory
+            entries.remove();
+            active.incrementAndGet();
+            workers.execute(() -> compress(file, state));
+        }
+    }
+
+    // Runs a check as soon as possible, so that a freed slot is filled without waiting for the next period
+    private void requestCheck() {
+        if (!checkQueued.compareAndSet(false, true))
+            return;
+        try {
+            scheduler.execute(() -> {
+                checkQueued.set(false);
+                check();
+            });
+        } catch (RejectedExecutionException e) {
+            // Closing
+        }
+    }
+
+    // True if an output at least as recent as the file exists, so a restart does not redo finished work
+    private boolean isDone(Path file) throws IOException {
+        Path target = target(file);
+        return Files.exists(target)
+                && Files.getLastModifiedTime(target).compareTo(Files.getLastModifiedTime(file)) >= 0;
+    }
+
+    private Path target(Path file) {
+        return output.resolve(file.getFileName() + ".huff");
+    }
+
+    private void compress(Path file, Pending state) {
+        Path target = target(file);
+        Path temporary = output.resolve("." + file.getFileName() + ".huff.tmp");
+        try {
+            Files.deleteIfExists(temporary);
+            HuffmanCli.compress(file.toFile(), temporary.toFile());
+            Files.move(temporary, target, StandardCopyOption.ATOMIC_MOVE, StandardCopyOption.REPLACE_EXISTING);
+            bytesIn.add(state.size);
+            bytesOut.add(Files.size(target));
+            completed.increment();
+            if (deleteSource)
+                Files.deleteIfExists(file);
+        } catch (IOException | RuntimeException e) {
+            try {
+                Files.deleteIfExists(temporary);
+            } catch (IOException ignored) {
+                // Overwritten by the next attempt
+            }
+            state.attempts++;
+            if (state.attempts < maxAttempts) {
+                retries.increment();
+                state.notBefore = System.currentTimeMillis() + (RETRY_DELAY_MILLIS << (state.attempts - 1));
+                state.size = -1; // Check again that the file is stable
+                pending.putIfAbsent(file, state);
+            } else {
+                failed.increment();
+                System.err.println("spool: giving up on " + file + ": " + e.getMessage());
+            }
+        } finally {
+            active.decrementAndGet();
+            slots.release();
+            if (!pending.isEmpty())
+                requestCheck();
+        }
+    }
+
+    /**
+     * Returns the number of files known and not compressed yet: waiting to be complete, for a slot, or for a worker.
+     */
+    public int getQueueDepth() {
+        return pending.size() + active.get();
+    }
+
+    public long getCompleted() {
+        return completed.sum();
+    }
+
+    public long getFailed() {
+        return failed.sum();
+    }
+
+    public long getRetries() {
+        return retries.sum();
+    }
+
+    public long getSkipped() {
+        return skipped.sum();
+    }
+
+    /**
+     * Returns the input bytes compressed per second since the daemon was created.
+     */
+    public double getThroughput() {
+        return bytesIn.sum() / ((System.nanoTime() - startNanos) / 1e9);
+    }
+
+    public String getStats() {
+        long in = bytesIn.sum();
+        return String.format("queue %d (pending %d, active %d), completed %d, failed %d, retries %d, skipped %d, "
+                + "%.1f MB/s, ratio %.3f", getQueueDepth(), pending.size(), active.get(), completed.sum(),
+                failed.sum(), retries.sum(), skipped.sum(), getThroughput() / (1 << 20),
+                in == 0 ? 0.0 : (double) bytesOut.sum() / in);
+    }
+
+    /**
+     * Stops watching and waits for the running compressions. Files not compressed yet stay in the spool directory.
+     */
+    @Override
+    public void close() throws IOException {
+        watcher.close();
+        watchThread.interrupt();
+        scheduler.shutdownNow();
+        workers.shutdown();
+        try {
+            workers.awaitTermination(1, TimeUnit.MINUTES);
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        }
+    }
+
+    public static void main(String[] args) throws IOException {
+        if (args.length < 1) {
+            System.err.println("Usage: SpoolDaemon spool-dir [--out dir] [--threads n] [--queue n] [--quiet-ms n] "
+                    + "[--attempts n] [--delete]");
+            System.exit(2);
+        }
+        Path spool = Path.of(args[0]);
+        Path out = spool;
+        int threads = Math.max(1, Runtime.getRuntime().availableProcessors() - 1);
+        int queue = 64;
+        long quietMillis = 2000;
+        int attempts = 3;
+        boolean delete = false;
+        for (int i = 1; i < args.length; i++) {
+            switch (args[i]) {
+                case "--out" -> out = Path.of(args[++i]);
+                case "--threads" -> threads = Integer.parseInt(args[++i]);
+                case "--queue" -> queue = Integer.parseInt(args[++i]);
+                case "--quiet-ms" -> quietMillis = Long.parseLong(args[++i]);
+                case "--attempts" -> attempts = Integer.parseInt(args[++i]);
+                case "--delete" -> delete = true;
+                default -> throw new IllegalArgumentException("Unknown option: " + args[i]);
+            }
+        }
+        SpoolDaemon daemon = new SpoolDaemon(spool, out, threads, queue, quietMillis, attempts, delete);
+        Runtime.getRuntime().addShutdownHook(new Thread(() -> {
+            try {
+                daemon.close();
+            } catch (IOException e) {
+                System.err.println("spool: " + e.getMessage());
+            }
+            System.out.println(daemon.getStats());
+        }));
+        daemon.start();
+        daemon.printStats();
+        System.out.printf("Watching %s, writing to %s with %d threads%n", spool.toAbsolutePath(),
+                out.toAbsolutePath(), threads);
+    }
+}
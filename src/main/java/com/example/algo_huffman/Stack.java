@@ -40,6 +40,12 @@ public class Stack {
         }
     }
 
+    // Method to remove every item so the stack can be reused
+    public void clear() {
+        while (top >= 0)
+            stackArray[top--] = null;
+    }
+
     // Method to check if the stack is empty
     public boolean isEmpty() {
         return (top == -1);
@@ -0,0 +1,105 @@
+package com.example.algo_huffman;
+
+import java.io.File;
+import java.io.IOException;
+import java.io.OutputStream;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.jar.JarEntry;
+import java.util.jar.JarOutputStream;
+import java.util.stream.Stream;
+
+/**
+ * Command line benchmark of the cold start of HuffmanCli: it launches a new JVM for every compression of a small
+ * file and reports the wall clock time of the whole process, the way a shell script sees it. It compares a plain
+ * class path launch with launches using an AppCDS archive, created first by a training run, with and without
+ * stopping the JIT at C1. CDS only archives classes loaded from jar files, so a class directory on the class path
+ * is first packed into a temporary jar, used by every mode.
+ *
+ * Usage: StartupBenchmark [runs] [file size in bytes]
+ */
+public class StartupBenchmark {
+
+    public static void main(String[] args) throws IOException, InterruptedException {
+        int runs = args.length > 0 ? Integer.parseInt(args[0]) : 20;
+        int size = args.length > 1 ? Integer.parseInt(args[1]) : 16 << 10;
+        String java = ProcessHandle.current().info().command().orElse("java");
+        File dir = Files.createTempDirectory("huffman-startup").toFile();
+        File input = new File(dir, "input.txt");
+        File archive = new File(dir, "huffman.jsa");
+        try {
+            String classPath = jarClassPath(System.getProperty("java.class.path"), dir);
+            byte[] data = new byte[size];
+            for (int i = 0; i < size; i++)
+                data[i] = (byte) ("etaoin shrdlu\n".charAt((i * 7 + i / 13) % 14));
+            try (OutputStream out = Files.newOutputStream(input.toPath())) {
+                out.write(data);
+            }
+
+            long start = System.nanoTime();
+            launch(dir, List.of(java, "-XX:ArchiveClassesAtExit=" + archive, "-cp", classPath,
+                    HuffmanCli.class.getName(), "train", dir.getPath()));
+            System.out.printf("training run and archive creation: %.0f ms, archive %d KB%n",
+                    (System.nanoTime() - start) / 1e6, archive.length() >> 10);
+
+            System.out.printf("%d launches compressing %d bytes%n", runs, size);
+            System.out.printf("%-22s %10s %10s %10s%n", "mode", "min ms", "median ms", "max ms");
+            measure("class path", dir, input, runs, List.of(java, "-cp", classPath));
+            measure("AppCDS", dir, input, runs, List.of(java, "-XX:SharedArchiveFile=" + archive, "-cp", classPath));
+            measure("AppCDS + C1 only", dir, input, runs, List.of(java, "-XX:SharedArchiveFile=" + archive,
+                    "-XX:TieredStopAtLevel=1", "-cp", classPath));
+        } finally {
+            for (File file : dir.listFiles())
+                file.delete();
+            dir.delete();
+        }
+    }
+
+    static void measure(String mode, File dir, File input, int runs, List<String> jvm) throws IOException, InterruptedException {
+        File output = new File(dir, "output.huff");
+        long[] times = new long[runs];
+        for (int i = 0; i < runs; i++) {
+            output.delete();
+            List<String> command = new ArrayList<>(jvm);
+            command.addAll(List.of(HuffmanCli.class.getName(), "c", input.getPath(), output.getPath()));
+            long start = System.nanoTime();
+            launch(dir, command);
+            times[i] = System.nanoTime() - start;
+        }
+        Arrays.sort(times);
+        System.out.printf("%-22s %10.1f %10.1f %10.1f%n", mode, times[0] / 1e6, times[runs / 2] / 1e6, times[runs - 1] / 1e6);
+    }
+
+    // Replaces the directories of the class path by jars of their class files
+    static String jarClassPath(String classPath, File dir) throws IOException {
+        List<String> entries = new ArrayList<>();
+        for (String entry : classPath.split(File.pathSeparator)) {
+            Path root = Path.of(entry);
+            if (!Files.isDirectory(root)) {
+                entries.add(entry);
+                continue;
+            }
+            File jar = new File(dir, "classes" + entries.size() + ".jar");
+            try (JarOutputStream out = new JarOutputStream(Files.newOutputStream(jar.toPath()));
+                 Stream<Path> walk = Files.walk(root)) {
+                for (Path file : (Iterable<Path>) walk.filter(p -> p.toString().endsWith(".class"))::iterator) {
+                    out.putNextEntry(new JarEntry(root.relativize(file).toString().replace(File.separatorChar, '/')));
+                    Files.copy(file, out);
+                    out.closeEntry();
+                }
+            }
+            entries.add(jar.getPath());
+        }
+        return String.join(File.pathSeparator, entries);
+    }
+
+    static void launch(File dir, List<String> command) throws IOException, InterruptedException {
+        Process process = new ProcessBuilder(command).directory(dir).redirectErrorStream(true).start();
+        byte[] output = process.getInputStream().readAllBytes();
+        if (process.waitFor() != 0)
+            throw new IOException("Launch failed: " + String.join(" ", command) + "\n" + new String(output));
+    }
+}
@@ -11,6 +11,9 @@ module com.example.algo_huffman {
     requires eu.hansolo.tilesfx;
     requires com.almasb.fxgl.all;
     requires java.desktop;
+    requires jdk.management;
+    requires jdk.httpserver;
+    requires java.net.http;
 
     opens com.example.algo_huffman to javafx.fxml;
     exports com.example.algo_huffman;